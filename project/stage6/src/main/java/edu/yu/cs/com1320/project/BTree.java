@@ -7,6 +7,10 @@ import java.io.IOException;
 public interface BTree<Key extends Comparable<Key>, Value> {
     Value get(Key k);
     Value put(Key k, Value v);
+    /**
+     * get the value for the key like get does, but leave it on disk if that is where it is
+     */
+    Value peek(Key k);
     void moveToDisk(Key k) throws IOException;
     void setPersistenceManager(PersistenceManager<Key,Value> pm);
 }
\ No newline at end of file
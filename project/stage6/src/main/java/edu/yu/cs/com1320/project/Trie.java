@@ -46,6 +46,23 @@ public interface Trie<Value>
      */
     List<Value> getAllWithPrefixSorted(String prefix, Comparator<Value> comparator);
 
+    /**
+     * get every value stored at a key that starts with the given prefix, WITHOUT merging equal values found at different keys.
+     * A value stored at both "Tool" and "Tooth" appears twice in the result, so callers can aggregate per-key data across the prefix.
+     * Search is CASE SENSITIVE.
+     * @param prefix
+     * @return a List with one entry for every (key, value) pair under the prefix. Empty List if no matches.
+     */
+    List<Value> getAllWithPrefix(String prefix);
+
+    /**
+     * get every key that starts with the given prefix and has at least one value.
+     * Search is CASE SENSITIVE.
+     * @param prefix
+     * @return a List of the matching keys, in no particular order. Empty List if no matches.
+     */
+    List<String> getKeysWithPrefix(String prefix);
+
     /**
      * Delete the subtree rooted at the last character of the prefix.
      * Search is CASE SENSITIVE.
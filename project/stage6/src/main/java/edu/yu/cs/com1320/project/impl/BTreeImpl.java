@@ -6,8 +6,17 @@ import edu.yu.cs.com1320.project.stage6.PersistenceManager;
 import edu.yu.cs.com1320.project.BTree;
 
 public class BTreeImpl<Key extends Comparable<Key>, Value> implements BTree<Key, Value> {
+    /**
+     * where a value lives.
+     * DIRTY values are in memory and any copy on disk is out of date, CLEAN values are in memory with an up to date copy on
+     * disk, ON_DISK values were moved to disk.
+     */
+    public enum Residency {
+        DIRTY, CLEAN, ON_DISK
+    };
 
     private PersistenceManager<Key, Value> pm;
+    private boolean retainDiskCopies;
     private static final int MAX = 4;
     private Node root;
     private int height;
@@ -49,11 +58,13 @@ public class BTreeImpl<Key extends Comparable<Key>, Value> implements BTree<Key,
         private Comparable key;
         private Object val;
         private Node child;
+        private Residency residency;
 
         private Entry(Comparable key, Object val, Node child) {
             this.key = key;
             this.val = val;
             this.child = child;
+            this.residency = Residency.DIRTY;
         }
 
         private Object getValue() {
@@ -75,12 +86,22 @@ public class BTreeImpl<Key extends Comparable<Key>, Value> implements BTree<Key,
                 if (this.pm == null) {
                     throw new IllegalStateException();
                 }
-                Value val = this.pm.deserialize(k);
+                // A retained copy stays on disk, so the value is clean until it changes
+                Value val = this.retainDiskCopies ? this.pm.peek(k) : this.pm.deserialize(k);
                 // Handles Document non-existent in memory or disk
                 if (val == null) {
                     return null;
                 }
-                this.put(k, val);
+                // Not put(), which would delete the file a retained copy still needs from disk
+                if (entry != null) {
+                    entry.val = val;
+                    entry.residency = Residency.DIRTY;
+                } else {
+                    this.insert(k, val);
+                }
+                if (this.retainDiskCopies) {
+                    this.get(this.root, k, this.height).residency = Residency.CLEAN;
+                }
                 return val;
             } catch (IOException ignored) {
             }
@@ -88,6 +109,26 @@ public class BTreeImpl<Key extends Comparable<Key>, Value> implements BTree<Key,
         return null;
     }
 
+    @SuppressWarnings("unchecked")
+    public Value peek(Key k) {
+        if (k == null) {
+            throw new IllegalArgumentException();
+        }
+        Entry entry = this.get(this.root, k, this.height);
+        if (entry != null && entry.getValue() != null) {
+            return (Value) entry.getValue();
+        }
+        // No persistence manager sets causes Exception
+        if (this.pm == null) {
+            throw new IllegalStateException();
+        }
+        try {
+            return this.pm.peek(k);
+        } catch (IOException ignored) {
+        }
+        return null;
+    }
+
     private Entry get(Node currentNode, Key key, int height) {
         Entry[] entries = currentNode.entries;
 
@@ -134,14 +175,7 @@ public class BTreeImpl<Key extends Comparable<Key>, Value> implements BTree<Key,
         Entry alreadyThere = this.get(this.root, k, this.height);
         if (alreadyThere == null) {
             // Attempts to delete document from the disk if it is there
-            try {
-                // No persistence manager sets causes Exception
-                if (this.pm == null) {
-                    throw new IllegalStateException();
-                }
-                this.pm.delete(k);
-            } catch (IOException ignored) {
-            }
+            this.deleteFromDisk(k);
         }
         // If the key already exists in the B-tree, simply replace the value
         if (alreadyThere != null) {
@@ -152,15 +186,27 @@ public class BTreeImpl<Key extends Comparable<Key>, Value> implements BTree<Key,
             @SuppressWarnings("unchecked")
             Value tempVal = (Value) alreadyThere.val;
             alreadyThere.val = v;
+            if (v != null) {
+                alreadyThere.residency = Residency.DIRTY;
+            } else if (alreadyThere.residency != Residency.ON_DISK) {
+                // Removing a value which wasn't moved to disk, so any copy retained from an earlier read is stale
+                this.deleteFromDisk(k);
+                alreadyThere.residency = Residency.DIRTY;
+            }
             // Returns old value: either Document or null
             return tempVal;
         }
+        this.insert(k, v);
+        return null;
+    }
 
+    // Adds an entry for a key the tree doesn't have yet
+    private void insert(Key k, Value v) {
         Node newNode = this.put(this.root, k, v, this.height);
         this.n++;
-        // Entry insertion not causing a split should return null
+        // Entry insertion not causing a split is done
         if (newNode == null) {
-            return null;
+            return;
         }
 
         //split the root:
@@ -173,7 +219,6 @@ public class BTreeImpl<Key extends Comparable<Key>, Value> implements BTree<Key,
         this.root = newRoot;
         //a split at the root always increases the tree height by 1
         this.height++;
-        return null;
     }
 
     private Node put(Node currentNode, Key key, Value val, int height) {
@@ -262,6 +307,17 @@ public class BTreeImpl<Key extends Comparable<Key>, Value> implements BTree<Key,
         return newNode;
     }
 
+    private void deleteFromDisk(Key k) {
+        try {
+            // No persistence manager sets causes Exception
+            if (this.pm == null) {
+                throw new IllegalStateException();
+            }
+            this.pm.delete(k);
+        } catch (IOException ignored) {
+        }
+    }
+
     public void moveToDisk(Key k) throws IOException {
         if (k == null) {
             throw new IllegalArgumentException();
@@ -270,9 +326,51 @@ public class BTreeImpl<Key extends Comparable<Key>, Value> implements BTree<Key,
             throw new IllegalStateException();
         }
         Value val = this.get(k);
-        if (val != null) {
+        if (val == null) {
+            return;
+        }
+        Entry entry = this.get(this.root, k, this.height);
+        // A clean value already has an up to date copy on disk, so there is nothing to write
+        if (entry.residency != Residency.CLEAN) {
             this.pm.serialize(k, val);
         }
+        entry.residency = Residency.ON_DISK;
+    }
+
+    /**
+     * keep the copy on disk when a value is read back into memory, so moving it out again without changing it doesn't
+     * write it again. Changes to a value after it was read back must be reported with markDirty. Off by default
+     */
+    public void setRetainDiskCopies(boolean retainDiskCopies) {
+        this.retainDiskCopies = retainDiskCopies;
+    }
+
+    /**
+     * record that the value for the key changed in memory, so its copy on disk is out of date
+     */
+    public void markDirty(Key k) {
+        if (k == null) {
+            throw new IllegalArgumentException();
+        }
+        Entry entry = this.get(this.root, k, this.height);
+        if (entry != null && entry.residency == Residency.CLEAN) {
+            entry.residency = Residency.DIRTY;
+        }
+    }
+
+    /**
+     * @return where the value for the key lives, or null if the key isn't in the tree
+     */
+    public Residency getResidency(Key k) {
+        if (k == null) {
+            throw new IllegalArgumentException();
+        }
+        Entry entry = this.get(this.root, k, this.height);
+        // A removed key keeps its entry with a null value
+        if (entry == null || (entry.val == null && entry.residency != Residency.ON_DISK)) {
+            return null;
+        }
+        return entry.residency;
     }
 
     public void setPersistenceManager(PersistenceManager<Key, Value> pm) {
@@ -0,0 +1,446 @@
+package edu.yu.cs.com1320.project.impl;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.locks.ReentrantLock;
+
+import edu.yu.cs.com1320.project.BTree;
+import edu.yu.cs.com1320.project.impl.BTreeImpl.Residency;
+import edu.yu.cs.com1320.project.stage6.PersistenceManager;
+
+/**
+ * Thread safe BTree with the same values and residency rules as BTreeImpl, built as a B-link tree (Lehman and Yao).
+ * Every node has a high key, above which its keys have moved to the node on its right, and a link to that node, so a
+ * lookup which reaches a node just split follows the link instead of starting again.
+ *
+ * A node's entries, high key and right link are one immutable Contents, replaced whenever the node changes, so lookups
+ * read a consistent node without locking and never block. Writers lock only the leaf they change. A split locks the
+ * parent after the leaf is unlocked, and only then adds the new node to it, so locks are always taken bottom up and left
+ * to right and can't deadlock. Keys are never removed: putting null keeps the entry, as in BTreeImpl.
+ *
+ * Reading a value back from disk happens under the lock of its leaf, so two threads can't both take it off disk.
+ */
+public class ConcurrentBTreeImpl<Key extends Comparable<Key>, Value> implements BTree<Key, Value> {
+    // Wider than BTreeImpl's nodes since every change copies a node's entries, and a shallower tree means fewer splits
+    private static final int MAX = 32;
+
+    private volatile PersistenceManager<Key, Value> pm;
+    private volatile boolean retainDiskCopies;
+    private volatile Node root;
+
+    public ConcurrentBTreeImpl() {
+        this.root = new Node(0, new Contents(new Entry[0], null, null));
+    }
+
+    private static final class Node {
+        // 0 for leaves
+        private final int level;
+        private final ReentrantLock lock;
+        private volatile Contents contents;
+
+        private Node(int level, Contents contents) {
+            this.level = level;
+            this.lock = new ReentrantLock();
+            this.contents = contents;
+        }
+    }
+
+    private static final class Contents {
+        // Sorted by key. An internal node's first key is never compared, it covers everything below the second
+        private final Entry[] entries;
+        // Keys from here on are in right. Null for the last node of a level
+        private final Comparable highKey;
+        private final Node right;
+
+        private Contents(Entry[] entries, Comparable highKey, Node right) {
+            this.entries = entries;
+            this.highKey = highKey;
+            this.right = right;
+        }
+    }
+
+    //internal nodes: only use key and child
+    //external nodes: only use key and value
+    private static class Entry {
+        private final Comparable key;
+        private final Node child;
+        // Changed only under the lock of the entry's leaf
+        private volatile Object val;
+        private volatile Residency residency;
+
+        private Entry(Comparable key, Object val, Node child) {
+            this.key = key;
+            this.val = val;
+            this.child = child;
+            this.residency = Residency.DIRTY;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public Value get(Key k) {
+        if (k == null) {
+            throw new IllegalArgumentException();
+        }
+        Entry entry = this.getEntry(k);
+        Object val = entry == null ? null : entry.val;
+        if (val != null) {
+            return (Value) val;
+        }
+        // No persistence manager sets causes Exception
+        if (this.pm == null) {
+            throw new IllegalStateException();
+        }
+        return this.readBack(k);
+    }
+
+    // Reads the value off disk under its leaf's lock, unless another thread already has
+    @SuppressWarnings("unchecked")
+    private Value readBack(Key k) {
+        Deque<Node> path = new ArrayDeque<>();
+        Node leaf = this.lockRight(this.descend(k, 0, path), k);
+        int index;
+        Value val;
+        boolean inserting = false;
+        try {
+            index = search(leaf.contents.entries, k);
+            Entry entry = index >= 0 ? leaf.contents.entries[index] : null;
+            if (entry != null && entry.val != null) {
+                return (Value) entry.val;
+            }
+            try {
+                // A retained copy stays on disk, so the value is clean until it changes
+                val = this.retainDiskCopies ? this.pm.peek(k) : this.pm.deserialize(k);
+            } catch (IOException ignored) {
+                return null;
+            }
+            // Handles Document non-existent in memory or disk
+            if (val == null) {
+                return null;
+            }
+            if (entry != null) {
+                entry.residency = this.retainDiskCopies ? Residency.CLEAN : Residency.DIRTY;
+                entry.val = val;
+                return val;
+            }
+            inserting = true;
+        } finally {
+            if (!inserting) {
+                leaf.lock.unlock();
+            }
+        }
+        Entry entry = new Entry(k, val, null);
+        if (this.retainDiskCopies) {
+            entry.residency = Residency.CLEAN;
+        }
+        this.insert(leaf, -(index + 1), entry, path);
+        return val;
+    }
+
+    @SuppressWarnings("unchecked")
+    public Value peek(Key k) {
+        if (k == null) {
+            throw new IllegalArgumentException();
+        }
+        Entry entry = this.getEntry(k);
+        if (entry != null && entry.val != null) {
+            return (Value) entry.val;
+        }
+        // No persistence manager sets causes Exception
+        if (this.pm == null) {
+            throw new IllegalStateException();
+        }
+        try {
+            Value val = this.pm.peek(k);
+            if (val != null) {
+                return val;
+            }
+        } catch (IOException ignored) {
+        }
+        // Another thread may have read it back from disk meanwhile
+        entry = this.getEntry(k);
+        return entry == null ? null : (Value) entry.val;
+    }
+
+    public Value put(Key k, Value v) {
+        if (k == null) {
+            throw new IllegalArgumentException("argument k to put() is null");
+        }
+        Deque<Node> path = new ArrayDeque<>();
+        Node leaf = this.lockRight(this.descend(k, 0, path), k);
+        int index;
+        boolean inserting = false;
+        try {
+            index = search(leaf.contents.entries, k);
+            // If the key already exists in the B-tree, simply replace the value
+            if (index >= 0) {
+                return this.replace(k, leaf.contents.entries[index], v);
+            }
+            // Attempts to delete document from the disk if it is there. Under the leaf's lock so it can't delete the
+            // file of a value another thread is moving to disk
+            this.deleteFromDisk(k);
+            inserting = true;
+        } finally {
+            if (!inserting) {
+                leaf.lock.unlock();
+            }
+        }
+        this.insert(leaf, -(index + 1), new Entry(k, v, null), path);
+        return null;
+    }
+
+    // Called under the lock of the entry's leaf
+    @SuppressWarnings("unchecked")
+    private Value replace(Key k, Entry entry, Value v) {
+        Value tempVal = (Value) entry.val;
+        if (v != null) {
+            entry.residency = Residency.DIRTY;
+        } else if (entry.residency != Residency.ON_DISK) {
+            // Removing a value which wasn't moved to disk, so any copy retained from an earlier read is stale
+            this.deleteFromDisk(k);
+            entry.residency = Residency.DIRTY;
+        }
+        entry.val = v;
+        // Returns old value: either Document or null
+        return tempVal;
+    }
+
+    /**
+     * Adds the entry at the index of the node, which the caller has locked, and unlocks it. A node which overflows is
+     * split and the new node added to the level above, whose nodes the descent to this one went through are on path.
+     */
+    private void insert(Node node, int index, Entry entry, Deque<Node> path) {
+        Node right;
+        Comparable separator;
+        try {
+            Contents contents = node.contents;
+            Entry[] entries = new Entry[contents.entries.length + 1];
+            System.arraycopy(contents.entries, 0, entries, 0, index);
+            entries[index] = entry;
+            System.arraycopy(contents.entries, index, entries, index + 1, contents.entries.length - index);
+            if (entries.length <= MAX) {
+                node.contents = new Contents(entries, contents.highKey, contents.right);
+                return;
+            }
+            right = this.split(node, entries);
+            separator = entries[entries.length / 2].key;
+        } finally {
+            node.lock.unlock();
+        }
+        this.addToParent(node, separator, right, path);
+    }
+
+    /**
+     * split the entries in half between the node and a new node on its right
+     * @return new node
+     */
+    private Node split(Node node, Entry[] entries) {
+        int half = entries.length / 2;
+        Contents contents = node.contents;
+        Node right = new Node(node.level, new Contents(Arrays.copyOfRange(entries, half, entries.length),
+                contents.highKey, contents.right));
+        // Publishing the left half sends lookups of the upper keys right, before the parent knows about the new node
+        node.contents = new Contents(Arrays.copyOfRange(entries, 0, half), entries[half].key, right);
+        return right;
+    }
+
+    private void addToParent(Node left, Comparable separator, Node right, Deque<Node> path) {
+        Node parent = path.isEmpty() ? null : path.pop();
+        if (parent == null) {
+            synchronized (this) {
+                if (this.root == left) {
+                    //split the root: a new root with the two halves as its entries
+                    Entry[] entries = { new Entry(left.contents.entries[0].key, null, left),
+                            new Entry(separator, null, right) };
+                    this.root = new Node(left.level + 1, new Contents(entries, null, null));
+                    return;
+                }
+            }
+            // The root was split after the descent passed it, and the thread splitting it may not have added the new
+            // root yet
+            while (this.root.level <= left.level) {
+                Thread.yield();
+            }
+            parent = this.descend(separator, left.level + 1, null);
+        }
+        parent = this.lockRight(parent, separator);
+        this.insert(parent, childIndex(parent.contents.entries, separator) + 1, new Entry(separator, null, right), path);
+    }
+
+    // Finds the node at the level whose range holds the key, pushing the nodes above it on path if it isn't null
+    private Node descend(Comparable key, int level, Deque<Node> path) {
+        Node node = this.root;
+        while (true) {
+            Contents contents = node.contents;
+            if (contents.highKey != null && !less(key, contents.highKey)) {
+                node = contents.right;
+            } else if (node.level == level) {
+                return node;
+            } else {
+                if (path != null) {
+                    path.push(node);
+                }
+                node = contents.entries[childIndex(contents.entries, key)].child;
+            }
+        }
+    }
+
+    // Locks the node whose range holds the key, starting from the given node and moving right past any splits
+    private Node lockRight(Node node, Comparable key) {
+        node.lock.lock();
+        while (node.contents.highKey != null && !less(key, node.contents.highKey)) {
+            Node right = node.contents.right;
+            right.lock.lock();
+            node.lock.unlock();
+            node = right;
+        }
+        return node;
+    }
+
+    private Entry getEntry(Key k) {
+        Contents contents = this.descend(k, 0, null).contents;
+        // The leaf may have been split since the descent reached it
+        while (contents.highKey != null && !less(k, contents.highKey)) {
+            contents = contents.right.contents;
+        }
+        int index = search(contents.entries, k);
+        return index >= 0 ? contents.entries[index] : null;
+    }
+
+    // Called under the leaf's lock
+    private Entry getLockedEntry(Node leaf, Key k) {
+        int index = search(leaf.contents.entries, k);
+        return index >= 0 ? leaf.contents.entries[index] : null;
+    }
+
+    // Index of the key, or -(insertion point + 1) like Arrays.binarySearch
+    private static int search(Entry[] entries, Comparable key) {
+        int low = 0;
+        int high = entries.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = key.compareTo(entries[mid].key);
+            if (cmp == 0) {
+                return mid;
+            } else if (cmp < 0) {
+                high = mid - 1;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return -(low + 1);
+    }
+
+    // Index of the last entry whose key is at most the key, ignoring the first entry's key
+    private static int childIndex(Entry[] entries, Comparable key) {
+        int low = 1;
+        int high = entries.length - 1;
+        int child = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (less(key, entries[mid].key)) {
+                high = mid - 1;
+            } else {
+                child = mid;
+                low = mid + 1;
+            }
+        }
+        return child;
+    }
+
+    private static boolean less(Comparable k1, Comparable k2) {
+        return k1.compareTo(k2) < 0;
+    }
+
+    private void deleteFromDisk(Key k) {
+        try {
+            // No persistence manager sets causes Exception
+            if (this.pm == null) {
+                throw new IllegalStateException();
+            }
+            this.pm.delete(k);
+        } catch (IOException ignored) {
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public void moveToDisk(Key k) throws IOException {
+        if (k == null) {
+            throw new IllegalArgumentException();
+        }
+        if (this.pm == null) {
+            throw new IllegalStateException();
+        }
+        if (this.get(k) == null) {
+            return;
+        }
+        Node leaf = this.lockRight(this.descend(k, 0, null), k);
+        try {
+            Entry entry = this.getLockedEntry(leaf, k);
+            // Read again under the lock, another thread may have changed it since the get
+            Value val = (Value) entry.val;
+            if (val == null) {
+                return;
+            }
+            // A clean value already has an up to date copy on disk, so there is nothing to write
+            if (entry.residency != Residency.CLEAN) {
+                this.pm.serialize(k, val);
+            }
+            entry.residency = Residency.ON_DISK;
+        } finally {
+            leaf.lock.unlock();
+        }
+    }
+
+    /**
+     * keep the copy on disk when a value is read back into memory, so moving it out again without changing it doesn't
+     * write it again. Changes to a value after it was read back must be reported with markDirty. Off by default
+     */
+    public void setRetainDiskCopies(boolean retainDiskCopies) {
+        this.retainDiskCopies = retainDiskCopies;
+    }
+
+    /**
+     * record that the value for the key changed in memory, so its copy on disk is out of date
+     */
+    public void markDirty(Key k) {
+        if (k == null) {
+            throw new IllegalArgumentException();
+        }
+        Node leaf = this.lockRight(this.descend(k, 0, null), k);
+        try {
+            Entry entry = this.getLockedEntry(leaf, k);
+            if (entry != null && entry.residency == Residency.CLEAN) {
+                entry.residency = Residency.DIRTY;
+            }
+        } finally {
+            leaf.lock.unlock();
+        }
+    }
+
+    /**
+     * @return where the value for the key lives, or null if the key isn't in the tree
+     */
+    public Residency getResidency(Key k) {
+        if (k == null) {
+            throw new IllegalArgumentException();
+        }
+        Entry entry = this.getEntry(k);
+        if (entry == null) {
+            return null;
+        }
+        Residency residency = entry.residency;
+        // A removed key keeps its entry with a null value
+        if (entry.val == null && residency != Residency.ON_DISK) {
+            return null;
+        }
+        return residency;
+    }
+
+    public void setPersistenceManager(PersistenceManager<Key, Value> pm) {
+        if (pm != null) {
+            this.pm = pm;
+        }
+    }
+}
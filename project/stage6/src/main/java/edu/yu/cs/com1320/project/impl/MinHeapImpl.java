@@ -1,22 +1,47 @@
 package edu.yu.cs.com1320.project.impl;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.NoSuchElementException;
 
 import edu.yu.cs.com1320.project.MinHeap;
 
 public class MinHeapImpl<E extends Comparable<E>> extends MinHeap<E> {
+    // Slot of every element in the heap, updated on every swap so finding an element is O(1) instead of a scan
+    private Map<E, Integer> positions;
 
     @SuppressWarnings("unchecked")
     public MinHeapImpl() {
         // Needs to be Comparable and not Object to deal with casting to extended generics
         this.elements = (E[]) new Comparable[10];
+        this.positions = new HashMap<>();
     }
 
     public void reHeapify(E element) {
         if (element == null) {
             throw new IllegalArgumentException();
         }
+        this.fixHeap(this.getArrayIndex(element));
+    }
+
+    /**
+     * remove the given element from wherever it is in the heap in O(log n)
+     * @throws IllegalArgumentException if element is null
+     * @throws NoSuchElementException if the element isn't in the heap
+     */
+    public void remove(E element) {
         int idx = this.getArrayIndex(element);
+        E removed = this.elements[idx];
+        // Move the last element into the hole and fix the heap around it
+        this.swap(idx, this.count);
+        this.elements[this.count--] = null;
+        this.positions.remove(removed);
+        if (idx <= this.count) {
+            this.fixHeap(idx);
+        }
+    }
+
+    private void fixHeap(int idx) {
         boolean isLeftChild = idx * 2 < this.elements.length && this.elements[idx * 2] != null;
         boolean isRightChild = idx * 2 + 1 < this.elements.length && this.elements[idx * 2 + 1] != null;
         // Handle updated element is less than parent in MinHeap and needs to be shifted up
@@ -33,13 +58,14 @@ public class MinHeapImpl<E extends Comparable<E>> extends MinHeap<E> {
         if (element == null) {
             throw new IllegalArgumentException();
         }
+        Integer position = this.positions.get(element);
+        if (position != null && position <= this.count && this.elements[position].equals(element)) {
+            return position;
+        }
+        // Equal elements share one map entry, so fall back to a scan for any duplicate the map lost track of
         int idx = 0;
-        for (int i = 1; i < this.elements.length; i++) {
-            E curElement = this.elements[i];
-            if (curElement == null) {
-                break;
-            }
-            if (curElement.equals(element)) {
+        for (int i = 1; i <= this.count; i++) {
+            if (this.elements[i].equals(element)) {
                 idx = i;
                 break;
             }
@@ -50,6 +76,26 @@ public class MinHeapImpl<E extends Comparable<E>> extends MinHeap<E> {
         return idx;
     }
 
+    @Override
+    public void insert(E x) {
+        this.positions.put(x, this.count + 1);
+        super.insert(x);
+    }
+
+    @Override
+    public E remove() {
+        E min = super.remove();
+        this.positions.remove(min);
+        return min;
+    }
+
+    @Override
+    protected void swap(int i, int j) {
+        super.swap(i, j);
+        this.positions.put(this.elements[i], i);
+        this.positions.put(this.elements[j], j);
+    }
+
     @SuppressWarnings("unchecked")
     protected void doubleArraySize() {
         E[] oldElements = this.elements;
@@ -0,0 +1,527 @@
+package edu.yu.cs.com1320.project.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import edu.yu.cs.com1320.project.Trie;
+
+/**
+ * Path-compressed (radix) trie. Every node stores the whole run of characters leading into it, so a chain of
+ * single-child nodes collapses into one node. Children are kept in a tiny sorted char array while the fan-out is
+ * low and only switch to a dense array indexed by character once a node has many children.
+ */
+public class RadixTrieImpl<Value> implements Trie<Value> {
+    private static final int DENSE_SIZE = 128;
+    private static final int DENSE_THRESHOLD = 16;
+    private Node<Value> root;
+
+    public RadixTrieImpl() {
+        this.root = new Node<>(new char[0]);
+    }
+
+    @SuppressWarnings("hiding")
+    private static final class Node<Value> {
+        private char[] label;
+        // A node holding one value (the common case for a word index) doesn't pay for a whole HashSet
+        private Value single;
+        private Set<Value> many;
+        // Sparse mode: keys is sorted and parallel to children. Dense mode: keys is null and children is indexed by char
+        private char[] keys;
+        private Node<Value>[] children;
+        private int childCount;
+
+        private Node(char[] label) {
+            this.label = label;
+        }
+
+        // Java can't create an array of a generic type, so the one unchecked cast lives here
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        private static <Value> Node<Value>[] newChildArray(int size) {
+            return (Node<Value>[]) new Node[size];
+        }
+
+        private boolean isDense() {
+            return this.children != null && this.keys == null;
+        }
+
+        private Node<Value> getChild(char c) {
+            if (this.children == null) {
+                return null;
+            }
+            if (this.isDense()) {
+                return c < DENSE_SIZE ? this.children[c] : null;
+            }
+            int idx = Arrays.binarySearch(this.keys, 0, this.childCount, c);
+            return idx >= 0 ? this.children[idx] : null;
+        }
+
+        private void setChild(char c, Node<Value> child) {
+            if (child == null) {
+                this.removeChild(c);
+                return;
+            }
+            if (this.children == null) {
+                this.keys = new char[] { c };
+                this.children = newChildArray(1);
+                this.children[0] = child;
+                this.childCount = 1;
+                return;
+            }
+            if (this.isDense()) {
+                if (c < DENSE_SIZE) {
+                    if (this.children[c] == null) {
+                        this.childCount++;
+                    }
+                    this.children[c] = child;
+                    return;
+                }
+                // Characters outside the dense range force the node back to the sorted representation
+                this.toSparse();
+            }
+            int idx = Arrays.binarySearch(this.keys, 0, this.childCount, c);
+            if (idx >= 0) {
+                this.children[idx] = child;
+                return;
+            }
+            int insertAt = -(idx + 1);
+            char[] newKeys = new char[this.childCount + 1];
+            Node<Value>[] newChildren = newChildArray(this.childCount + 1);
+            System.arraycopy(this.keys, 0, newKeys, 0, insertAt);
+            System.arraycopy(this.children, 0, newChildren, 0, insertAt);
+            newKeys[insertAt] = c;
+            newChildren[insertAt] = child;
+            System.arraycopy(this.keys, insertAt, newKeys, insertAt + 1, this.childCount - insertAt);
+            System.arraycopy(this.children, insertAt, newChildren, insertAt + 1, this.childCount - insertAt);
+            this.keys = newKeys;
+            this.children = newChildren;
+            this.childCount++;
+            if (this.childCount > DENSE_THRESHOLD && this.keys[this.childCount - 1] < DENSE_SIZE) {
+                this.toDense();
+            }
+        }
+
+        private void removeChild(char c) {
+            if (this.getChild(c) == null) {
+                return;
+            }
+            if (this.isDense()) {
+                this.children[c] = null;
+                this.childCount--;
+                if (this.childCount <= DENSE_THRESHOLD / 2) {
+                    this.toSparse();
+                }
+            } else {
+                int idx = Arrays.binarySearch(this.keys, 0, this.childCount, c);
+                char[] newKeys = new char[this.childCount - 1];
+                Node<Value>[] newChildren = newChildArray(this.childCount - 1);
+                System.arraycopy(this.keys, 0, newKeys, 0, idx);
+                System.arraycopy(this.children, 0, newChildren, 0, idx);
+                System.arraycopy(this.keys, idx + 1, newKeys, idx, this.childCount - idx - 1);
+                System.arraycopy(this.children, idx + 1, newChildren, idx, this.childCount - idx - 1);
+                this.keys = newKeys;
+                this.children = newChildren;
+                this.childCount--;
+            }
+            if (this.childCount == 0) {
+                this.keys = null;
+                this.children = null;
+            }
+        }
+
+        private void toDense() {
+            Node<Value>[] dense = newChildArray(DENSE_SIZE);
+            for (int i = 0; i < this.childCount; i++) {
+                dense[this.keys[i]] = this.children[i];
+            }
+            this.keys = null;
+            this.children = dense;
+        }
+
+        private void toSparse() {
+            char[] newKeys = new char[this.childCount];
+            Node<Value>[] newChildren = newChildArray(this.childCount);
+            int j = 0;
+            for (int i = 0; i < DENSE_SIZE; i++) {
+                if (this.children[i] != null) {
+                    newKeys[j] = (char) i;
+                    newChildren[j++] = this.children[i];
+                }
+            }
+            this.keys = newKeys;
+            this.children = newChildren;
+        }
+
+        // Children in character order, so traversals visit keys lexicographically in both representations
+        private List<Node<Value>> childList() {
+            List<Node<Value>> list = new ArrayList<>(this.childCount);
+            if (this.children == null) {
+                return list;
+            }
+            if (this.isDense()) {
+                for (Node<Value> child : this.children) {
+                    if (child != null) {
+                        list.add(child);
+                    }
+                }
+            } else {
+                for (int i = 0; i < this.childCount; i++) {
+                    list.add(this.children[i]);
+                }
+            }
+            return list;
+        }
+
+        private Node<Value> onlyChild() {
+            return this.childList().get(0);
+        }
+
+        private boolean hasValues() {
+            return this.single != null || this.many != null;
+        }
+
+        private boolean containsValue(Value val) {
+            if (this.single != null) {
+                return this.single.equals(val);
+            }
+            return this.many != null && this.many.contains(val);
+        }
+
+        private void addValue(Value val) {
+            if (this.single == null && this.many == null) {
+                this.single = val;
+            } else if (this.single != null) {
+                if (!this.single.equals(val)) {
+                    this.many = new HashSet<>();
+                    this.many.add(this.single);
+                    this.many.add(val);
+                    this.single = null;
+                }
+            } else {
+                this.many.add(val);
+            }
+        }
+
+        private void removeValue(Value val) {
+            if (this.single != null) {
+                if (this.single.equals(val)) {
+                    this.single = null;
+                }
+                return;
+            }
+            if (this.many != null) {
+                this.many.remove(val);
+                if (this.many.size() == 1) {
+                    this.single = this.many.iterator().next();
+                    this.many = null;
+                } else if (this.many.isEmpty()) {
+                    this.many = null;
+                }
+            }
+        }
+
+        private void copyValues(Set<Value> results) {
+            if (this.single != null) {
+                results.add(this.single);
+            } else if (this.many != null) {
+                results.addAll(this.many);
+            }
+        }
+
+        private void copyValues(List<Value> results) {
+            if (this.single != null) {
+                results.add(this.single);
+            } else if (this.many != null) {
+                results.addAll(this.many);
+            }
+        }
+
+        private void clearValues() {
+            this.single = null;
+            this.many = null;
+        }
+    }
+
+    /**
+     * @return how many characters of label match key starting at index d
+     */
+    private static int matchLength(char[] label, String key, int d) {
+        int max = Math.min(label.length, key.length() - d);
+        int i = 0;
+        while (i < max && label[i] == key.charAt(d + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    public void put(String key, Value val) {
+        if (key == null) {
+            throw new IllegalArgumentException();
+        }
+        if (val == null) {
+            return;
+        }
+        Node<Value> x = this.root;
+        int d = 0;
+        while (d < key.length()) {
+            char c = key.charAt(d);
+            Node<Value> child = x.getChild(c);
+            if (child == null) {
+                // No edge starts with this character, so the rest of the key becomes a single leaf
+                Node<Value> leaf = new Node<>(key.substring(d).toCharArray());
+                leaf.addValue(val);
+                x.setChild(c, leaf);
+                return;
+            }
+            int match = matchLength(child.label, key, d);
+            if (match < child.label.length) {
+                // The key diverges inside the edge, so split it and hang the old child below the shared part
+                Node<Value> mid = new Node<>(Arrays.copyOfRange(child.label, 0, match));
+                child.label = Arrays.copyOfRange(child.label, match, child.label.length);
+                mid.setChild(child.label[0], child);
+                x.setChild(c, mid);
+                child = mid;
+            }
+            x = child;
+            d += match;
+        }
+        x.addValue(val);
+    }
+
+    /**
+     * @return the node whose path spells exactly the key, or null
+     */
+    private Node<Value> getNode(String key) {
+        Node<Value> x = this.root;
+        int d = 0;
+        while (d < key.length()) {
+            x = x.getChild(key.charAt(d));
+            if (x == null || matchLength(x.label, key, d) < x.label.length) {
+                return null;
+            }
+            d += x.label.length;
+        }
+        return x;
+    }
+
+    /**
+     * @return the root of the subtree holding every key with the given prefix, or null. The prefix may end in the
+     * middle of that node's label.
+     */
+    private Node<Value> getPrefixNode(String prefix) {
+        Node<Value> x = this.root;
+        int d = 0;
+        while (d < prefix.length()) {
+            x = x.getChild(prefix.charAt(d));
+            if (x == null) {
+                return null;
+            }
+            int match = matchLength(x.label, prefix, d);
+            if (d + match == prefix.length()) {
+                return x;
+            }
+            if (match < x.label.length) {
+                return null;
+            }
+            d += match;
+        }
+        return x;
+    }
+
+    public List<Value> getSorted(String key, Comparator<Value> comparator) {
+        if (key == null || comparator == null) {
+            throw new IllegalArgumentException();
+        }
+        List<Value> valueList = new ArrayList<>(this.get(key));
+        Collections.sort(valueList, comparator);
+        return valueList;
+    }
+
+    public Set<Value> get(String key) {
+        if (key == null) {
+            throw new IllegalArgumentException();
+        }
+        Set<Value> valueSet = new HashSet<>();
+        Node<Value> node = this.getNode(key);
+        if (node != null) {
+            node.copyValues(valueSet);
+        }
+        return valueSet;
+    }
+
+    public List<Value> getAllWithPrefixSorted(String prefix, Comparator<Value> comparator) {
+        if (prefix == null || comparator == null) {
+            throw new IllegalArgumentException();
+        }
+        Set<Value> results = new HashSet<>();
+        Node<Value> prefixNode = this.getPrefixNode(prefix);
+        if (prefixNode != null) {
+            this.collect(prefixNode, results);
+        }
+        List<Value> prefixWords = new ArrayList<>(results);
+        Collections.sort(prefixWords, comparator);
+        return prefixWords;
+    }
+
+    public List<Value> getAllWithPrefix(String prefix) {
+        if (prefix == null) {
+            throw new IllegalArgumentException();
+        }
+        List<Value> results = new ArrayList<>();
+        Node<Value> prefixNode = this.getPrefixNode(prefix);
+        if (prefixNode != null) {
+            this.collect(prefixNode, results);
+        }
+        return results;
+    }
+
+    public List<String> getKeysWithPrefix(String prefix) {
+        if (prefix == null) {
+            throw new IllegalArgumentException();
+        }
+        List<String> keys = new ArrayList<>();
+        // Same walk as getPrefixNode, also spelling out the key of the node it ends at
+        Node<Value> x = this.root;
+        StringBuilder key = new StringBuilder();
+        while (key.length() < prefix.length()) {
+            x = x.getChild(prefix.charAt(key.length()));
+            if (x == null) {
+                return keys;
+            }
+            int match = matchLength(x.label, prefix, key.length());
+            if (key.length() + match < prefix.length() && match < x.label.length) {
+                return keys;
+            }
+            key.append(x.label);
+        }
+        this.collectKeys(x, key, keys);
+        return keys;
+    }
+
+    private void collectKeys(Node<Value> x, StringBuilder key, List<String> results) {
+        if (x.hasValues()) {
+            results.add(key.toString());
+        }
+        for (Node<Value> child : x.childList()) {
+            key.append(child.label);
+            this.collectKeys(child, key, results);
+            key.setLength(key.length() - child.label.length);
+        }
+    }
+
+    private void collect(Node<Value> x, Set<Value> results) {
+        x.copyValues(results);
+        for (Node<Value> child : x.childList()) {
+            this.collect(child, results);
+        }
+    }
+
+    private void collect(Node<Value> x, List<Value> results) {
+        x.copyValues(results);
+        for (Node<Value> child : x.childList()) {
+            this.collect(child, results);
+        }
+    }
+
+    public Set<Value> deleteAllWithPrefix(String prefix) {
+        if (prefix == null) {
+            throw new IllegalArgumentException();
+        }
+        Set<Value> values = new HashSet<>();
+        if (prefix.isEmpty()) {
+            this.collect(this.root, values);
+            this.root = new Node<>(new char[0]);
+            return values;
+        }
+        this.root = this.deletePrefix(this.root, prefix, 0, values);
+        return values;
+    }
+
+    private Node<Value> deletePrefix(Node<Value> x, String prefix, int d, Set<Value> values) {
+        char c = prefix.charAt(d);
+        Node<Value> child = x.getChild(c);
+        if (child == null) {
+            return x;
+        }
+        int match = matchLength(child.label, prefix, d);
+        if (d + match == prefix.length()) {
+            // The whole subtree below this edge starts with the prefix
+            this.collect(child, values);
+            x.removeChild(c);
+        } else if (match == child.label.length) {
+            x.setChild(c, this.deletePrefix(child, prefix, d + match, values));
+        }
+        return this.compact(x);
+    }
+
+    public Set<Value> deleteAll(String key) {
+        if (key == null) {
+            throw new IllegalArgumentException();
+        }
+        Set<Value> deletedValues = new HashSet<>();
+        this.root = this.deleteAll(this.root, key, 0, deletedValues, null);
+        return deletedValues;
+    }
+
+    public Value delete(String key, Value val) {
+        if (key == null) {
+            throw new IllegalArgumentException();
+        }
+        Node<Value> node = this.getNode(key);
+        if (node == null || !node.containsValue(val)) {
+            return null;
+        }
+        Set<Value> deletedValues = new HashSet<>();
+        this.root = this.deleteAll(this.root, key, 0, deletedValues, val);
+        return val;
+    }
+
+    /**
+     * Removes either every value (val == null) or only val from the node for key, then compacts the path on the way back up
+     */
+    private Node<Value> deleteAll(Node<Value> x, String key, int d, Set<Value> deletedValues, Value val) {
+        if (d == key.length()) {
+            if (val == null) {
+                x.copyValues(deletedValues);
+                x.clearValues();
+            } else {
+                x.removeValue(val);
+                deletedValues.add(val);
+            }
+        } else {
+            char c = key.charAt(d);
+            Node<Value> child = x.getChild(c);
+            if (child == null || matchLength(child.label, key, d) < child.label.length) {
+                return x;
+            }
+            x.setChild(c, this.deleteAll(child, key, d + child.label.length, deletedValues, val));
+        }
+        return this.compact(x);
+    }
+
+    /**
+     * Restores the radix invariant after a removal: an empty leaf disappears and a value-less node with a single
+     * child is merged into that child. The root is never removed or merged.
+     */
+    private Node<Value> compact(Node<Value> x) {
+        if (x == this.root || x.hasValues()) {
+            return x;
+        }
+        if (x.childCount == 0) {
+            return null;
+        }
+        if (x.childCount == 1) {
+            Node<Value> child = x.onlyChild();
+            char[] merged = new char[x.label.length + child.label.length];
+            System.arraycopy(x.label, 0, merged, 0, x.label.length);
+            System.arraycopy(child.label, 0, merged, x.label.length, child.label.length);
+            child.label = merged;
+            return child;
+        }
+        return x;
+    }
+}
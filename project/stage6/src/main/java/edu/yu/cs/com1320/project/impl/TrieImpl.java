@@ -123,6 +123,72 @@ public class TrieImpl<Value> implements Trie<Value> {
         return prefixWords;
     }
 
+    public List<Value> getAllWithPrefix(String prefix) {
+        if (prefix == null) {
+            throw new IllegalArgumentException();
+        }
+        List<Value> prefixValues = new ArrayList<>();
+        if (prefix.matches(".*[^A-Za-z0-9 ].*")) {
+            return prefixValues;
+        }
+        Node<Value> prefixNode = this.get(this.root, prefix, 0);
+        if (prefixNode != null) {
+            this.getPrefixValues(prefixNode, prefixValues);
+        }
+        return prefixValues;
+    }
+
+    private void getPrefixValues(Node<Value> rootNode, List<Value> results) {
+        if (rootNode.val != null) {
+            results.addAll(rootNode.val);
+        }
+        for (int i = 0; i < ALPHABET_SIZE; i++) {
+            if (rootNode.links[i] != null) {
+                this.getPrefixValues(rootNode.links[i], results);
+            }
+        }
+    }
+
+    public List<String> getKeysWithPrefix(String prefix) {
+        if (prefix == null) {
+            throw new IllegalArgumentException();
+        }
+        List<String> keys = new ArrayList<>();
+        if (prefix.matches(".*[^A-Za-z0-9 ].*")) {
+            return keys;
+        }
+        Node<Value> prefixNode = this.get(this.root, prefix, 0);
+        if (prefixNode != null) {
+            this.getPrefixKeys(prefixNode, new StringBuilder(prefix), keys);
+        }
+        return keys;
+    }
+
+    private void getPrefixKeys(Node<Value> node, StringBuilder key, List<String> results) {
+        if (node.val != null && !node.val.isEmpty()) {
+            results.add(key.toString());
+        }
+        for (int i = 0; i < ALPHABET_SIZE; i++) {
+            if (node.links[i] != null) {
+                key.append(getNodeChar(i));
+                this.getPrefixKeys(node.links[i], key, results);
+                key.setLength(key.length() - 1);
+            }
+        }
+    }
+
+    // Inverse of getNodeIdx
+    private char getNodeChar(int idx) {
+        if (idx < 10) {
+            return (char) ('0' + idx);
+        } else if (idx < 36) {
+            return (char) (idx + 55);
+        } else if (idx < 62) {
+            return (char) (idx + 61);
+        }
+        return ' ';
+    }
+
     private Set<Value> getPrefixWords(Node<Value> rootNode, int d, Set<Value> results) {
         if (rootNode.val != null) {
             results.addAll(rootNode.val);
@@ -0,0 +1,20 @@
+package edu.yu.cs.com1320.project.stage6;
+
+import java.io.IOException;
+
+/**
+ * Turns a document into the bytes a persistence manager stores, and back.
+ * Decoding gives an equal document with the same word counts and metadata.
+ */
+public interface DocumentCodec {
+    /**
+     * @return the stored form of the document
+     */
+    byte[] encode(Document doc);
+
+    /**
+     * @return the document the bytes were encoded from
+     * @throws IOException if the bytes aren't a document in this codec's format
+     */
+    Document decode(byte[] bytes) throws IOException;
+}
@@ -77,21 +77,41 @@ public interface DocumentStore
     /**
      * Retrieve all documents whose text contains the given keyword.
      * Documents are returned in sorted, descending order, sorted by the number of times the keyword appears in the document.
+     * Documents with the same count are returned in ascending URI order.
      * Search is CASE SENSITIVE.
      * @param keyword
      * @return a List of the matches. If there are no matches, return an empty list.
      */
     List<Document> search(String keyword) throws IOException;
 
+    /**
+     * Same as search(keyword), but only the limit documents with the most occurrences of the keyword are returned
+     * @param keyword
+     * @param limit maximum number of documents to return
+     * @return a List of at most limit matches. If there are no matches, return an empty list.
+     * @throws IllegalArgumentException if limit < 1
+     */
+    List<Document> search(String keyword, int limit) throws IOException;
+
     /**
      * Retrieve all documents containing a word that starts with the given prefix
      * Documents are returned in sorted, descending order, sorted by the number of times the prefix appears in the document.
+     * Documents with the same count are returned in ascending URI order.
      * Search is CASE SENSITIVE.
      * @param keywordPrefix
      * @return a List of the matches. If there are no matches, return an empty list.
      */
     List<Document> searchByPrefix(String keywordPrefix) throws IOException;
 
+    /**
+     * Same as searchByPrefix(keywordPrefix), but only the limit documents with the most occurrences of the prefix are returned
+     * @param keywordPrefix
+     * @param limit maximum number of documents to return
+     * @return a List of at most limit matches. If there are no matches, return an empty list.
+     * @throws IllegalArgumentException if limit < 1
+     */
+    List<Document> searchByPrefix(String keywordPrefix, int limit) throws IOException;
+
     /**
      * Completely remove any trace of any document which contains the given keyword
      * Search is CASE SENSITIVE.
@@ -117,6 +137,7 @@ public interface DocumentStore
     /**
      * Retrieve all documents whose text contains the given keyword AND which has the given key-value pairs in its metadata
      * Documents are returned in sorted, descending order, sorted by the number of times the keyword appears in the document.
+     * Documents with the same count are returned in ascending URI order.
      * Search is CASE SENSITIVE.
      * @param keyword
      * @param keysValues
@@ -124,15 +145,30 @@ public interface DocumentStore
      */
     List<Document> searchByKeywordAndMetadata(String keyword, Map<String,String> keysValues) throws IOException;
 
+    /**
+     * Same as searchByKeywordAndMetadata(keyword, keysValues), but only the limit best matches are returned
+     * @param limit maximum number of documents to return
+     * @throws IllegalArgumentException if limit < 1
+     */
+    List<Document> searchByKeywordAndMetadata(String keyword, Map<String,String> keysValues, int limit) throws IOException;
+
     /**
      * Retrieve all documents that contain text which starts with the given prefix AND which has the given key-value pairs in its metadata
      * Documents are returned in sorted, descending order, sorted by the number of times the prefix appears in the document.
+     * Documents with the same count are returned in ascending URI order.
      * Search is CASE SENSITIVE.
      * @param keywordPrefix
      * @return a List of the matches. If there are no matches, return an empty list.
      */
     List<Document> searchByPrefixAndMetadata(String keywordPrefix, Map<String,String> keysValues) throws IOException;
 
+    /**
+     * Same as searchByPrefixAndMetadata(keywordPrefix, keysValues), but only the limit best matches are returned
+     * @param limit maximum number of documents to return
+     * @throws IllegalArgumentException if limit < 1
+     */
+    List<Document> searchByPrefixAndMetadata(String keywordPrefix, Map<String,String> keysValues, int limit) throws IOException;
+
     /**
      * Completely remove any trace of any document which has the given key-value pairs in its metadata
      * Search is CASE SENSITIVE.
@@ -0,0 +1,46 @@
+package edu.yu.cs.com1320.project.stage6;
+
+/**
+ * Decides which of the keys held in memory is moved to disk next when the store is over its limits.
+ * The store reports every key entering memory, every use of a key in memory, and every key leaving memory for any
+ * reason other than eviction. It calls evict() when it needs room.
+ * @param <Key>
+ */
+public interface EvictionPolicy<Key> {
+    /**
+     * the key was just brought into memory
+     * @param lastUseTime the document's last use time
+     * @param bytes the document's size
+     */
+    void add(Key key, long lastUseTime, int bytes);
+
+    /**
+     * the key, which is in memory, was used
+     * @param lastUseTime the document's new last use time
+     */
+    void touch(Key key, long lastUseTime);
+
+    /**
+     * the document of the key, which is in memory, was replaced by one of a different size.
+     * Policies which don't weigh sizes can ignore this
+     */
+    default void resize(Key key, int bytes) {
+    }
+
+    /**
+     * the key left memory without being evicted, e.g. it was deleted. Does nothing if the key isn't tracked
+     */
+    void remove(Key key);
+
+    /**
+     * choose a key to move to disk and stop tracking it
+     * @return the evicted key
+     * @throws java.util.NoSuchElementException if no keys are tracked
+     */
+    Key evict();
+
+    /**
+     * @return the number of keys in memory being tracked
+     */
+    int size();
+}
@@ -12,4 +12,25 @@ public interface PersistenceManager<Key,Value> {
      * @throws IOException
      */
     boolean delete(Key key) throws IOException;
+
+    /**
+     * read the value stored on disk for the given key without removing it from disk
+     * @param key
+     * @return the value, or null if nothing is stored for the key
+     * @throws IOException
+     */
+    default Value peek(Key key) throws IOException {
+        Value val = this.deserialize(key);
+        if (val != null) {
+            this.serialize(key, val);
+        }
+        return val;
+    }
+
+    /**
+     * make every value serialized so far survive the machine losing power, waiting for any still being written
+     * @throws IOException
+     */
+    default void force() throws IOException {
+    }
 }
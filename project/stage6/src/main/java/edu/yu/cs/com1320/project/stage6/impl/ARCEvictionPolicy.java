@@ -0,0 +1,95 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+
+import edu.yu.cs.com1320.project.stage6.EvictionPolicy;
+
+/**
+ * Adaptive Replacement Cache. Keys used once live in t1 and keys used again move to t2, both in LRU order. b1 and b2
+ * remember the keys recently evicted from each. When an evicted key comes back, the target size p of t1 moves toward
+ * the list it was evicted from, so the policy leans to recency or frequency depending on the workload.
+ * The store's capacity changes with document sizes, so the cache size c is taken to be the number of keys in memory.
+ */
+public class ARCEvictionPolicy<Key> implements EvictionPolicy<Key> {
+    private LinkedHashSet<Key> t1;
+    private LinkedHashSet<Key> t2;
+    private LinkedHashSet<Key> b1;
+    private LinkedHashSet<Key> b2;
+    private int p;
+
+    public ARCEvictionPolicy() {
+        this.t1 = new LinkedHashSet<>();
+        this.t2 = new LinkedHashSet<>();
+        this.b1 = new LinkedHashSet<>();
+        this.b2 = new LinkedHashSet<>();
+        this.p = 0;
+    }
+
+    public void add(Key key, long lastUseTime, int bytes) {
+        int c = this.size() + 1;
+        if (this.b1.remove(key)) {
+            // Evicted from t1 too early, give t1 more room
+            this.p = Math.min(c, this.p + Math.max(this.b2.size() / Math.max(this.b1.size(), 1), 1));
+            this.t2.add(key);
+        } else if (this.b2.remove(key)) {
+            // Evicted from t2 too early, give t2 more room
+            this.p = Math.max(0, this.p - Math.max(this.b1.size() / Math.max(this.b2.size(), 1), 1));
+            this.t2.add(key);
+        } else {
+            this.t1.add(key);
+        }
+    }
+
+    public void touch(Key key, long lastUseTime) {
+        if (!this.t1.remove(key) && !this.t2.remove(key)) {
+            throw new NoSuchElementException();
+        }
+        this.t2.add(key);
+    }
+
+    public void remove(Key key) {
+        if (!this.t1.remove(key)) {
+            this.t2.remove(key);
+        }
+        // A removed key coming back is a new key, not one evicted too early
+        this.b1.remove(key);
+        this.b2.remove(key);
+    }
+
+    public Key evict() {
+        if (this.size() == 0) {
+            throw new NoSuchElementException();
+        }
+        Key key;
+        if (!this.t1.isEmpty() && (this.t1.size() > this.p || this.t2.isEmpty())) {
+            key = removeEldest(this.t1);
+            this.b1.add(key);
+        } else {
+            key = removeEldest(this.t2);
+            this.b2.add(key);
+        }
+        // Each ghost list remembers at most as many keys as are in memory
+        int c = Math.max(this.size(), 1);
+        while (this.b1.size() > c) {
+            removeEldest(this.b1);
+        }
+        while (this.b2.size() > c) {
+            removeEldest(this.b2);
+        }
+        this.p = Math.min(this.p, c);
+        return key;
+    }
+
+    public int size() {
+        return this.t1.size() + this.t2.size();
+    }
+
+    private static <Key> Key removeEldest(LinkedHashSet<Key> keys) {
+        Iterator<Key> iterator = keys.iterator();
+        Key key = iterator.next();
+        iterator.remove();
+        return key;
+    }
+}
@@ -0,0 +1,211 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentCodec;
+
+/**
+ * Compact binary format for documents. Lengths and counts are unsigned varints (7 bits per byte, low bits first) and
+ * strings are UTF-8.
+ *
+ * magic byte 0xD0, version byte, flags byte (1 for binary documents), uri length and uri, content length and content
+ * (the text, or the raw binary data without Base64), number of metadata pairs, each pair as key length, key, value
+ * length + 1 (0 for a null value) and value, then for text documents the number of words, and each word in sorted
+ * order as the number of leading bytes it shares with the previous word, length and bytes of the rest of the word,
+ * and its count. Sorting puts words with common prefixes next to each other, so most words store only a short suffix.
+ *
+ * The encode buffer and the buffer words are rebuilt in are kept between calls, so encoding and decoding are
+ * synchronized on the codec.
+ */
+public class BinaryDocumentCodec implements DocumentCodec {
+    public static final byte MAGIC = (byte) 0xD0;
+    private static final byte VERSION = 1;
+    private static final int BINARY_FLAG = 1;
+    private static final byte[] EMPTY = new byte[0];
+
+    private byte[] buffer;
+    private int size;
+    private byte[] word;
+
+    public BinaryDocumentCodec() {
+        this.buffer = new byte[1024];
+        this.word = new byte[64];
+    }
+
+    public synchronized byte[] encode(Document doc) {
+        this.size = 0;
+        boolean binary = doc.getDocumentTxt() == null;
+        this.writeByte(MAGIC);
+        this.writeByte(VERSION);
+        this.writeByte(binary ? BINARY_FLAG : 0);
+        this.writeBytes(doc.getKey().toString().getBytes(StandardCharsets.UTF_8));
+        this.writeBytes(binary ? doc.getDocumentBinaryData() : doc.getDocumentTxt().getBytes(StandardCharsets.UTF_8));
+        Map<String, String> metadata = doc.getMetadata();
+        this.writeVarint(metadata.size());
+        for (Map.Entry<String, String> entry : metadata.entrySet()) {
+            this.writeBytes(entry.getKey().getBytes(StandardCharsets.UTF_8));
+            if (entry.getValue() == null) {
+                this.writeVarint(0);
+            } else {
+                byte[] value = entry.getValue().getBytes(StandardCharsets.UTF_8);
+                this.writeVarint(value.length + 1);
+                this.write(value, 0, value.length);
+            }
+        }
+        if (!binary) {
+            Map<String, Integer> words = doc.getWordMap();
+            String[] terms = words.keySet().toArray(new String[0]);
+            Arrays.sort(terms);
+            this.writeVarint(terms.length);
+            byte[] previous = EMPTY;
+            for (String term : terms) {
+                byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+                int shared = 0;
+                while (shared < previous.length && shared < bytes.length && previous[shared] == bytes[shared]) {
+                    shared++;
+                }
+                this.writeVarint(shared);
+                this.writeVarint(bytes.length - shared);
+                this.write(bytes, shared, bytes.length - shared);
+                this.writeVarint(words.get(term));
+                previous = bytes;
+            }
+        }
+        return Arrays.copyOf(this.buffer, this.size);
+    }
+
+    public synchronized Document decode(byte[] bytes) throws IOException {
+        if (bytes.length < 3 || bytes[0] != MAGIC) {
+            throw new IOException("Not a binary document");
+        }
+        if (bytes[1] != VERSION) {
+            throw new IOException("Unsupported binary document version " + bytes[1]);
+        }
+        try {
+            Cursor cursor = new Cursor(bytes, 3);
+            boolean binary = (bytes[2] & BINARY_FLAG) != 0;
+            URI uri = URI.create(cursor.readString(cursor.readVarint()));
+            int contentLength = cursor.readVarint();
+            byte[] binaryData = null;
+            String text = null;
+            if (binary) {
+                int start = cursor.position;
+                binaryData = Arrays.copyOfRange(bytes, start, cursor.skip(contentLength));
+            } else {
+                text = cursor.readString(contentLength);
+            }
+            int pairs = cursor.readVarint();
+            HashMap<String, String> metadata = new HashMap<>();
+            for (int i = 0; i < pairs; i++) {
+                String key = cursor.readString(cursor.readVarint());
+                int valueLength = cursor.readVarint();
+                metadata.put(key, valueLength == 0 ? null : cursor.readString(valueLength - 1));
+            }
+            Document doc;
+            if (binary) {
+                doc = new DocumentImpl(uri, binaryData);
+            } else {
+                int terms = cursor.readVarint();
+                HashMap<String, Integer> words = new HashMap<>((int) (terms / 0.75f) + 1);
+                int wordLength = 0;
+                for (int i = 0; i < terms; i++) {
+                    int shared = cursor.readVarint();
+                    int suffix = cursor.readVarint();
+                    if (shared > wordLength) {
+                        throw new IOException("Corrupt binary document");
+                    }
+                    wordLength = shared + suffix;
+                    if (wordLength > this.word.length) {
+                        this.word = Arrays.copyOf(this.word, Math.max(wordLength, this.word.length * 2));
+                    }
+                    System.arraycopy(bytes, cursor.position, this.word, shared, suffix);
+                    cursor.skip(suffix);
+                    words.put(new String(this.word, 0, wordLength, StandardCharsets.UTF_8), cursor.readVarint());
+                }
+                doc = new DocumentImpl(uri, text, words);
+            }
+            doc.setMetadata(metadata);
+            return doc;
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Corrupt binary document", e);
+        }
+    }
+
+    private void writeByte(int b) {
+        this.ensureCapacity(1);
+        this.buffer[this.size++] = (byte) b;
+    }
+
+    private void writeVarint(int value) {
+        this.ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            this.buffer[this.size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        this.buffer[this.size++] = (byte) value;
+    }
+
+    // Length prefixed
+    private void writeBytes(byte[] bytes) {
+        this.writeVarint(bytes.length);
+        this.write(bytes, 0, bytes.length);
+    }
+
+    private void write(byte[] bytes, int offset, int length) {
+        this.ensureCapacity(length);
+        System.arraycopy(bytes, offset, this.buffer, this.size, length);
+        this.size += length;
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (this.size + bytes > this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(this.size + bytes, this.buffer.length * 2));
+        }
+    }
+
+    private static class Cursor {
+        private byte[] bytes;
+        private int position;
+
+        private Cursor(byte[] bytes, int position) {
+            this.bytes = bytes;
+            this.position = position;
+        }
+
+        private int readVarint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                byte b = this.bytes[this.position++];
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    if (value < 0) {
+                        throw new IOException("Corrupt binary document");
+                    }
+                    return value;
+                }
+            }
+            throw new IOException("Corrupt binary document");
+        }
+
+        private String readString(int length) {
+            String s = new String(this.bytes, this.position, length, StandardCharsets.UTF_8);
+            this.skip(length);
+            return s;
+        }
+
+        // Moves past length bytes and returns the new position
+        private int skip(int length) {
+            if (length < 0 || this.position + length > this.bytes.length) {
+                throw new IndexOutOfBoundsException();
+            }
+            this.position += length;
+            return this.position;
+        }
+    }
+}
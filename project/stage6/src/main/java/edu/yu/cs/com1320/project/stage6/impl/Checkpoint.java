@@ -0,0 +1,273 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import edu.yu.cs.com1320.project.stage6.Document;
+
+/**
+ * Snapshot of a DocumentStoreImpl's indexes, so a store restarted from its write ahead log loads them instead of
+ * tokenizing every document again. The documents in memory are kept in the snapshot, the documents on disk only by
+ * URI since they are still in the persistence manager.
+ *
+ * Layout, with every number an unsigned varint and every string a length and UTF-8 bytes: magic, version, the URI of
+ * every document id in id order, the documents in memory from least to most recently used encoded by
+ * BinaryDocumentCodec, the ids of the documents on disk, the words of the word index in sorted order (front coded like
+ * BinaryDocumentCodec's words) each with its postings, the keys of the metadata index each with its values and their
+ * postings, and a CRC32 of everything before it. Postings are a size followed by each id as the gap from the previous
+ * one and, for words, its frequency.
+ *
+ * A checkpoint is written to a temporary file which replaces the old one once it is on disk, so a crash while
+ * writing leaves the old checkpoint in place. It is read through a memory mapping.
+ */
+public class Checkpoint {
+    private static final int MAGIC = 0x43484B50;
+    private static final int VERSION = 1;
+
+    private List<Document> resident;
+    private List<URI> onDisk;
+
+    private Checkpoint() {
+        this.resident = new ArrayList<>();
+        this.onDisk = new ArrayList<>();
+    }
+
+    /**
+     * @return the documents which were in memory, from least to most recently used
+     */
+    public List<Document> getResident() {
+        return this.resident;
+    }
+
+    /**
+     * @return the documents which were on disk
+     */
+    public List<URI> getOnDisk() {
+        return this.onDisk;
+    }
+
+    /**
+     * write the indexes and documents to the file, replacing it once everything is on disk
+     * @param resident documents in memory, from least to most recently used
+     */
+    public static void write(File file, DocumentIdTable documentIds, List<Document> resident, Collection<URI> onDisk,
+            WordIndex wordIndex, MetadataIndex metadataIndex) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        CRC32 crc = new CRC32();
+        try (FileOutputStream fileOut = new FileOutputStream(temp)) {
+            Writer out = new Writer(new CheckedOutputStream(new BufferedOutputStream(fileOut), crc));
+            out.writeVarint(MAGIC);
+            out.writeVarint(VERSION);
+            out.writeVarint(documentIds.size());
+            for (int id = 0; id < documentIds.size(); id++) {
+                out.writeString(documentIds.getURI(id).toString());
+            }
+            BinaryDocumentCodec codec = new BinaryDocumentCodec();
+            out.writeVarint(resident.size());
+            for (Document doc : resident) {
+                out.writeBytes(codec.encode(doc));
+            }
+            out.writeVarint(onDisk.size());
+            for (URI uri : onDisk) {
+                out.writeVarint(documentIds.getId(uri));
+            }
+            String[] words = wordIndex.getWords().toArray(new String[0]);
+            Arrays.sort(words);
+            out.writeVarint(words.length);
+            byte[] previous = new byte[0];
+            for (String word : words) {
+                byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+                int shared = 0;
+                while (shared < previous.length && shared < bytes.length && previous[shared] == bytes[shared]) {
+                    shared++;
+                }
+                out.writeVarint(shared);
+                out.writeVarint(bytes.length - shared);
+                out.write(bytes, shared, bytes.length - shared);
+                out.writePostings(wordIndex.get(word), true);
+                previous = bytes;
+            }
+            Map<String, Map<String, PostingList>> metadata = metadataIndex.getEntries();
+            out.writeVarint(metadata.size());
+            for (Map.Entry<String, Map<String, PostingList>> key : metadata.entrySet()) {
+                out.writeString(key.getKey());
+                out.writeVarint(key.getValue().size());
+                for (Map.Entry<String, PostingList> value : key.getValue().entrySet()) {
+                    out.writeString(value.getKey());
+                    out.writePostings(value.getValue(), false);
+                }
+            }
+            out.flush();
+            // The CRC isn't part of what it checks
+            new DataOutputStream(fileOut).writeInt((int) crc.getValue());
+            fileOut.getFD().sync();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // The rename is only on the disk once the directory is
+        FileSync.forceDirectory(file.getAbsoluteFile().getParentFile());
+    }
+
+    /**
+     * read the file into the given indexes and id table, which must be empty
+     * @return the documents the checkpoint holds, which aren't in the store yet
+     * @throws IOException if the file isn't a whole checkpoint
+     */
+    public static Checkpoint read(File file, DocumentIdTable documentIds, WordIndex wordIndex,
+            MetadataIndex metadataIndex) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < 4 || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Corrupt checkpoint " + file);
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int end = mapped.capacity() - 4;
+        CRC32 crc = new CRC32();
+        crc.update(mapped.duplicate().limit(end));
+        if ((int) crc.getValue() != mapped.getInt(end)) {
+            throw new IOException("Corrupt checkpoint " + file);
+        }
+        Reader in = new Reader(mapped.limit(end));
+        try {
+            if (in.readVarint() != MAGIC || in.readVarint() != VERSION) {
+                throw new IOException("Not a checkpoint " + file);
+            }
+            int ids = in.readVarint();
+            for (int id = 0; id < ids; id++) {
+                documentIds.getOrAssign(URI.create(in.readString()));
+            }
+            Checkpoint checkpoint = new Checkpoint();
+            BinaryDocumentCodec codec = new BinaryDocumentCodec();
+            int resident = in.readVarint();
+            for (int i = 0; i < resident; i++) {
+                checkpoint.resident.add(codec.decode(in.readBytes()));
+            }
+            int onDisk = in.readVarint();
+            for (int i = 0; i < onDisk; i++) {
+                checkpoint.onDisk.add(documentIds.getURI(in.readVarint()));
+            }
+            int words = in.readVarint();
+            byte[] word = new byte[64];
+            int wordLength = 0;
+            for (int i = 0; i < words; i++) {
+                int shared = in.readVarint();
+                int suffix = in.readVarint();
+                if (shared > wordLength) {
+                    throw new IOException("Corrupt checkpoint " + file);
+                }
+                wordLength = shared + suffix;
+                if (wordLength > word.length) {
+                    word = Arrays.copyOf(word, Math.max(wordLength, word.length * 2));
+                }
+                in.buffer.get(word, shared, suffix);
+                wordIndex.putPostings(new String(word, 0, wordLength, StandardCharsets.UTF_8), in.readPostings(true));
+            }
+            int keys = in.readVarint();
+            for (int i = 0; i < keys; i++) {
+                String key = in.readString();
+                int values = in.readVarint();
+                for (int j = 0; j < values; j++) {
+                    String value = in.readString();
+                    metadataIndex.putPostings(key, value, in.readPostings(false));
+                }
+            }
+            return checkpoint;
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt checkpoint " + file, e);
+        }
+    }
+
+    private static class Writer extends DataOutputStream {
+        private Writer(CheckedOutputStream out) {
+            super(out);
+        }
+
+        private void writeVarint(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                this.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            this.write(value);
+        }
+
+        private void writeBytes(byte[] bytes) throws IOException {
+            this.writeVarint(bytes.length);
+            this.write(bytes);
+        }
+
+        private void writeString(String s) throws IOException {
+            this.writeBytes(s.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private void writePostings(PostingList postings, boolean frequencies) throws IOException {
+            this.writeVarint(postings.size());
+            int previous = 0;
+            for (int i = 0; i < postings.size(); i++) {
+                this.writeVarint(postings.getId(i) - previous);
+                previous = postings.getId(i);
+                if (frequencies) {
+                    this.writeVarint(postings.getFrequencyAt(i));
+                }
+            }
+        }
+    }
+
+    private static class Reader {
+        private ByteBuffer buffer;
+
+        private Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        private int readVarint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                byte b = this.buffer.get();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Corrupt checkpoint");
+        }
+
+        private byte[] readBytes() throws IOException {
+            byte[] bytes = new byte[this.readVarint()];
+            this.buffer.get(bytes);
+            return bytes;
+        }
+
+        private String readString() throws IOException {
+            return new String(this.readBytes(), StandardCharsets.UTF_8);
+        }
+
+        private PostingList readPostings(boolean frequencies) throws IOException {
+            int size = this.readVarint();
+            PostingList postings = new PostingList(Math.max(1, size));
+            int id = 0;
+            for (int i = 0; i < size; i++) {
+                id += this.readVarint();
+                postings.append(id, frequencies ? this.readVarint() : 1);
+            }
+            return postings;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import edu.yu.cs.com1320.project.stage6.EvictionPolicy;
+
+/**
+ * CLOCK (second chance): keys sit on a ring with a referenced bit which every use sets. The hand clears set bits as
+ * it passes and evicts the first key whose bit is already clear, so any key used since the hand last came around
+ * survives one more lap. The ring is a LinkedHashMap in insertion order, with the hand at its head.
+ */
+public class ClockEvictionPolicy<Key> implements EvictionPolicy<Key> {
+    private LinkedHashMap<Key, Boolean> ring;
+
+    public ClockEvictionPolicy() {
+        this.ring = new LinkedHashMap<>();
+    }
+
+    public void add(Key key, long lastUseTime, int bytes) {
+        this.ring.put(key, false);
+    }
+
+    public void touch(Key key, long lastUseTime) {
+        if (this.ring.replace(key, true) == null) {
+            throw new NoSuchElementException();
+        }
+    }
+
+    public void remove(Key key) {
+        this.ring.remove(key);
+    }
+
+    public Key evict() {
+        while (true) {
+            Iterator<Map.Entry<Key, Boolean>> hand = this.ring.entrySet().iterator();
+            Map.Entry<Key, Boolean> entry = hand.next();
+            Key key = entry.getKey();
+            boolean referenced = entry.getValue();
+            hand.remove();
+            if (!referenced) {
+                return key;
+            }
+            // Second chance: clear the bit and move the key behind the hand
+            this.ring.put(key, false);
+        }
+    }
+
+    public int size() {
+        return this.ring.size();
+    }
+}
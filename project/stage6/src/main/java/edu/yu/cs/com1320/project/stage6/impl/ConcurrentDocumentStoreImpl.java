@@ -0,0 +1,391 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentStore;
+
+/**
+ * Thread safe DocumentStore around a DocumentStoreImpl. Gets and searches whose documents are all in memory run
+ * together under the read lock of a ReentrantReadWriteLock. Everything else runs alone under its write lock: changes,
+ * undo, and reads which bring documents back from disk.
+ *
+ * A read under the read lock doesn't tell the eviction policy about the use, since the policy isn't thread safe. The
+ * use goes into a striped buffer instead, one queue per group of threads so readers rarely contend. The buffered uses
+ * are applied by the next thread to take the write lock, before it changes anything, or by a reader which fills a
+ * stripe past half way while the write lock is free. A use that finds its stripe full is dropped, so under heavy
+ * reading the eviction order is approximate.
+ *
+ * put reads and tokenizes its document before taking the write lock, so writers only wait for each other while the
+ * indexes change.
+ */
+public class ConcurrentDocumentStoreImpl implements DocumentStore, Closeable {
+    private static final int STRIPE_CAPACITY = 128;
+
+    private DocumentStoreImpl store;
+    private ReentrantReadWriteLock lock;
+    private List<ArrayBlockingQueue<Use>> uses;
+
+    public ConcurrentDocumentStoreImpl() {
+        this(new DocumentStoreImpl());
+    }
+
+    public ConcurrentDocumentStoreImpl(File baseDir) {
+        this(new DocumentStoreImpl(baseDir));
+    }
+
+    /**
+     * @param store the store to make thread safe, set up as wanted. It must not be used directly afterwards
+     * @throws IllegalArgumentException if store is null
+     */
+    public ConcurrentDocumentStoreImpl(DocumentStoreImpl store) {
+        if (store == null) {
+            throw new IllegalArgumentException();
+        }
+        this.store = store;
+        this.lock = new ReentrantReadWriteLock();
+        // A power of two at least four times the processors, so a thread's stripe is picked with a mask
+        int stripes = 1;
+        while (stripes < 4 * Runtime.getRuntime().availableProcessors()) {
+            stripes <<= 1;
+        }
+        this.uses = new ArrayList<>(stripes);
+        for (int i = 0; i < stripes; i++) {
+            this.uses.add(new ArrayBlockingQueue<>(STRIPE_CAPACITY));
+        }
+    }
+
+    public int put(InputStream input, URI uri, DocumentFormat format) throws IOException {
+        if (input == null || uri == null || uri.getPath().isBlank() || format == null) {
+            // Rejected, or a delete, by the store
+            this.lockForWrite();
+            try {
+                return this.store.put(input, uri, format);
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        }
+        byte[] bytes = input.readAllBytes();
+        Document doc = DocumentStoreImpl.createDocument(uri, format, bytes);
+        this.lockForWrite();
+        try {
+            return this.store.put(uri, format, bytes, doc);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public Document get(URI url) throws IOException {
+        this.lock.readLock().lock();
+        Document doc;
+        try {
+            doc = this.store.getResident(url);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        if (doc != null) {
+            this.recordUse(doc);
+            return doc;
+        }
+        this.lockForWrite();
+        try {
+            return this.store.get(url);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public String setMetadata(URI uri, String key, String value) throws IOException {
+        this.lockForWrite();
+        try {
+            return this.store.setMetadata(uri, key, value);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public String getMetadata(URI uri, String key) throws IOException {
+        if (key != null && !key.isBlank()) {
+            this.lock.readLock().lock();
+            Document doc;
+            String value = null;
+            try {
+                doc = this.store.getResident(uri);
+                if (doc != null) {
+                    value = doc.getMetadataValue(key);
+                }
+            } finally {
+                this.lock.readLock().unlock();
+            }
+            if (doc != null) {
+                this.recordUse(doc);
+                return value;
+            }
+        }
+        this.lockForWrite();
+        try {
+            return this.store.getMetadata(uri, key);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public List<Document> search(String keyword) throws IOException {
+        return this.search(keyword, Integer.MAX_VALUE);
+    }
+
+    public List<Document> search(String keyword, int limit) throws IOException {
+        DocumentStoreImpl.checkLimit(limit);
+        List<Document> documents = this.readResident(() -> this.store.searchURIs(keyword, limit));
+        if (documents != null) {
+            return documents;
+        }
+        this.lockForWrite();
+        try {
+            return this.store.search(keyword, limit);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public List<Document> searchByPrefix(String keywordPrefix) throws IOException {
+        return this.searchByPrefix(keywordPrefix, Integer.MAX_VALUE);
+    }
+
+    public List<Document> searchByPrefix(String keywordPrefix, int limit) throws IOException {
+        DocumentStoreImpl.checkLimit(limit);
+        List<Document> documents = this.readResident(() -> this.store.searchByPrefixURIs(keywordPrefix, limit));
+        if (documents != null) {
+            return documents;
+        }
+        this.lockForWrite();
+        try {
+            return this.store.searchByPrefix(keywordPrefix, limit);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public List<Document> searchByMetadata(Map<String, String> keysValues) throws IOException {
+        List<Document> documents = this.readResident(() -> new ArrayList<>(this.store.searchByMetadataURIs(keysValues)));
+        if (documents != null) {
+            return documents;
+        }
+        this.lockForWrite();
+        try {
+            return this.store.searchByMetadata(keysValues);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public List<Document> searchByKeywordAndMetadata(String keyword, Map<String, String> keysValues)
+            throws IOException {
+        return this.searchByKeywordAndMetadata(keyword, keysValues, Integer.MAX_VALUE);
+    }
+
+    public List<Document> searchByKeywordAndMetadata(String keyword, Map<String, String> keysValues, int limit)
+            throws IOException {
+        DocumentStoreImpl.checkLimit(limit);
+        List<Document> documents = this.readResident(
+                () -> this.store.searchByKeywordAndMetadataURIs(keyword, keysValues, limit));
+        if (documents != null) {
+            return documents;
+        }
+        this.lockForWrite();
+        try {
+            return this.store.searchByKeywordAndMetadata(keyword, keysValues, limit);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public List<Document> searchByPrefixAndMetadata(String keywordPrefix, Map<String, String> keysValues)
+            throws IOException {
+        return this.searchByPrefixAndMetadata(keywordPrefix, keysValues, Integer.MAX_VALUE);
+    }
+
+    public List<Document> searchByPrefixAndMetadata(String keywordPrefix, Map<String, String> keysValues, int limit)
+            throws IOException {
+        DocumentStoreImpl.checkLimit(limit);
+        List<Document> documents = this.readResident(
+                () -> this.store.searchByPrefixAndMetadataURIs(keywordPrefix, keysValues, limit));
+        if (documents != null) {
+            return documents;
+        }
+        this.lockForWrite();
+        try {
+            return this.store.searchByPrefixAndMetadata(keywordPrefix, keysValues, limit);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public boolean delete(URI url) {
+        this.lockForWrite();
+        try {
+            return this.store.delete(url);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public Set<URI> deleteAll(String keyword) {
+        this.lockForWrite();
+        try {
+            return this.store.deleteAll(keyword);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public Set<URI> deleteAllWithPrefix(String keywordPrefix) {
+        this.lockForWrite();
+        try {
+            return this.store.deleteAllWithPrefix(keywordPrefix);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public Set<URI> deleteAllWithMetadata(Map<String, String> keysValues) throws IOException {
+        this.lockForWrite();
+        try {
+            return this.store.deleteAllWithMetadata(keysValues);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public Set<URI> deleteAllWithKeywordAndMetadata(String keyword, Map<String, String> keysValues) throws IOException {
+        this.lockForWrite();
+        try {
+            return this.store.deleteAllWithKeywordAndMetadata(keyword, keysValues);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public Set<URI> deleteAllWithPrefixAndMetadata(String keywordPrefix, Map<String, String> keysValues)
+            throws IOException {
+        this.lockForWrite();
+        try {
+            return this.store.deleteAllWithPrefixAndMetadata(keywordPrefix, keysValues);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public void undo() throws IllegalStateException {
+        this.lockForWrite();
+        try {
+            this.store.undo();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public void undo(URI url) throws IllegalStateException {
+        this.lockForWrite();
+        try {
+            this.store.undo(url);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public void setMaxDocumentCount(int limit) {
+        this.lockForWrite();
+        try {
+            this.store.setMaxDocumentCount(limit);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public void setMaxDocumentBytes(int limit) {
+        this.lockForWrite();
+        try {
+            this.store.setMaxDocumentBytes(limit);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    public void close() throws IOException {
+        this.lockForWrite();
+        try {
+            this.store.close();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    // The documents of the search under the read lock, or null if any of them is on disk
+    private List<Document> readResident(Supplier<List<URI>> search) {
+        List<Document> documents;
+        this.lock.readLock().lock();
+        try {
+            documents = this.store.getResident(search.get());
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        if (documents != null) {
+            for (Document doc : documents) {
+                this.recordUse(doc);
+            }
+        }
+        return documents;
+    }
+
+    // Called without any lock held, since a reader can't take the write lock to drain
+    private void recordUse(Document doc) {
+        ArrayBlockingQueue<Use> stripe = this.uses.get((int) Thread.currentThread().getId() & (this.uses.size() - 1));
+        stripe.offer(new Use(doc.getKey(), System.nanoTime()));
+        if (stripe.size() >= STRIPE_CAPACITY / 2 && this.lock.writeLock().tryLock()) {
+            try {
+                this.drainUses();
+                // Gets under the read lock don't check for memory pressure
+                this.store.relieveMemoryPressure();
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    // Applies the buffered uses before anything is changed, so evictions see them
+    private void lockForWrite() {
+        this.lock.writeLock().lock();
+        this.drainUses();
+    }
+
+    private void drainUses() {
+        for (ArrayBlockingQueue<Use> stripe : this.uses) {
+            Use use;
+            while ((use = stripe.poll()) != null) {
+                this.store.touch(use.uri, use.time);
+            }
+        }
+    }
+
+    private static class Use {
+        private URI uri;
+        private long time;
+
+        private Use(URI uri, long time) {
+            this.uri = uri;
+            this.time = time;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns every URI the store has seen a dense int id, so indexes can hold primitive ids instead of URI objects.
+ * Ids are never reused: a deleted document keeps its id, which lets undo restore it without touching any index order.
+ */
+public class DocumentIdTable {
+    private Map<URI, Integer> ids;
+    private List<URI> uris;
+
+    public DocumentIdTable() {
+        this.ids = new HashMap<>();
+        this.uris = new ArrayList<>();
+    }
+
+    /**
+     * @return the id of the uri, assigning the next free id if the uri has never been seen
+     */
+    public int getOrAssign(URI uri) {
+        Integer id = this.ids.get(uri);
+        if (id != null) {
+            return id;
+        }
+        int newId = this.uris.size();
+        this.ids.put(uri, newId);
+        this.uris.add(uri);
+        return newId;
+    }
+
+    /**
+     * @return the id of the uri, or -1 if it has never been assigned one
+     */
+    public int getId(URI uri) {
+        Integer id = this.ids.get(uri);
+        return id == null ? -1 : id;
+    }
+
+    public URI getURI(int id) {
+        return this.uris.get(id);
+    }
+
+    /**
+     * @return how many ids have been assigned, i.e. one more than the largest id
+     */
+    public int size() {
+        return this.uris.size();
+    }
+}
@@ -11,12 +11,25 @@ import java.util.Objects;
 import edu.yu.cs.com1320.project.stage6.Document;
 
 public class DocumentImpl implements Document {
+    // Rough 64-bit JVM sizes with compressed references, used to estimate how much heap a document holds on to
+    private static final int OBJECT_BYTES = 16;
+    private static final int STRING_BYTES = 40;
+    private static final int MAP_BYTES = 48;
+    private static final int MAP_ENTRY_BYTES = 36;
+    private static final int INTEGER_BYTES = 16;
+    // One id and one frequency in the PostingList of each word and metadata pair the document is indexed under
+    private static final int POSTING_BYTES = 8;
+
     private URI uri;
     private String txt;
     private byte[] binaryData;
     private HashMap<String, String> metaData;
     private Map<String, Integer> words;
     private long lastUsedTime;
+    // Size of the text (in the platform charset) or binary data, measured once
+    private int contentBytes;
+    // Estimated heap held by this document and its index entries, -1 until measured after the last change
+    private int footprint;
 
     public DocumentImpl(URI uri, String text, Map<String, Integer> wordCountMap) {
         commonConstructor(uri);
@@ -24,18 +37,9 @@ public class DocumentImpl implements Document {
             throw new IllegalArgumentException();
         }
         this.txt = text;
+        this.contentBytes = text.getBytes().length;
         if (wordCountMap == null) {
-            this.words = new HashMap<>();
-            String formattedTxt = txt.replaceAll("[^A-Za-z0-9\s]", "");
-            String[] wordsFromTxt = formattedTxt.split(" ");
-            for (String word : wordsFromTxt) {
-                if (this.words.get(word) == null) {
-                    this.words.put(word, 1);
-                } else {
-                    int curVal = this.words.get(word);
-                    this.words.put(word, ++curVal);
-                }
-            }
+            this.words = Tokenizer.countWords(txt);
         } else {
             this.words = wordCountMap;
         }
@@ -47,6 +51,7 @@ public class DocumentImpl implements Document {
             throw new IllegalArgumentException();
         }
         this.binaryData = binaryData;
+        this.contentBytes = binaryData.length;
         this.words = null;
     }
 
@@ -57,6 +62,7 @@ public class DocumentImpl implements Document {
         this.uri = uri;
         this.metaData = new HashMap<>();
         this.lastUsedTime = System.nanoTime();
+        this.footprint = -1;
     }
 
     private boolean nullOrEmptyString(String str) {
@@ -70,6 +76,7 @@ public class DocumentImpl implements Document {
         if (nullOrEmptyString(key)) {
             throw new IllegalArgumentException();
         }
+        this.footprint = -1;
         return this.metaData.put(key, value);
     }
 
@@ -78,6 +85,7 @@ public class DocumentImpl implements Document {
             return;
         }
         this.metaData = metadata;
+        this.footprint = -1;
     }
 
     public String getMetadataValue(String key) {
@@ -138,6 +146,52 @@ public class DocumentImpl implements Document {
             return;
         }
         this.words = wordMap;
+        this.footprint = -1;
+    }
+
+    /**
+     * @return number of bytes in the document's text or binary data
+     */
+    public int getContentBytes() {
+        return this.contentBytes;
+    }
+
+    /**
+     * @return estimate of the heap this document keeps alive: the document itself, its text or binary data, word map
+     * and metadata, plus its entries in the word and metadata indexes. Trie nodes are shared between documents and
+     * aren't counted
+     */
+    public int getMemoryFootprint() {
+        if (this.footprint < 0) {
+            // The document object and its URI
+            long bytes = OBJECT_BYTES * 3 + STRING_BYTES + this.uri.toString().length();
+            if (this.txt != null) {
+                bytes += STRING_BYTES + this.txt.length();
+            } else {
+                bytes += OBJECT_BYTES + this.binaryData.length;
+            }
+            if (this.words != null) {
+                bytes += mapBytes(this.words.size());
+                for (String word : this.words.keySet()) {
+                    bytes += STRING_BYTES + word.length() + INTEGER_BYTES + POSTING_BYTES;
+                }
+            }
+            bytes += mapBytes(this.metaData.size());
+            for (Map.Entry<String, String> entry : this.metaData.entrySet()) {
+                bytes += STRING_BYTES + entry.getKey().length() + POSTING_BYTES;
+                if (entry.getValue() != null) {
+                    bytes += STRING_BYTES + entry.getValue().length();
+                }
+            }
+            this.footprint = (int) Math.min(Integer.MAX_VALUE, bytes);
+        }
+        return this.footprint;
+    }
+
+    // HashMap with its table sized for the default load factor, not counting keys and values
+    private static long mapBytes(int entries) {
+        int capacity = Integer.highestOneBit(Math.max(1, (int) (entries / 0.75f)) * 2 - 1);
+        return MAP_BYTES + OBJECT_BYTES + 4L * Math.max(16, capacity) + (long) MAP_ENTRY_BYTES * entries;
     }
 
     @Override
@@ -0,0 +1,95 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonDeserializationContext;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSerializationContext;
+import com.google.gson.JsonSerializer;
+import com.google.gson.reflect.TypeToken;
+
+import edu.yu.cs.com1320.project.stage6.Document;
+
+/**
+ * The JSON form documents are stored on disk in: uri, isBinary, content (Base64 for binary documents), metaData and
+ * wordsMap. Gson instances are thread safe, so one is built and shared instead of one per document.
+ */
+public class DocumentJson {
+    private static final Type WORDS_MAP_TYPE = new TypeToken<HashMap<String, Integer>>() {
+    }.getType();
+    private static final Type METADATA_MAP_TYPE = new TypeToken<HashMap<String, String>>() {
+    }.getType();
+    private static final Gson MAPS = new Gson();
+    private static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(Document.class, new DocumentAdapter())
+            .create();
+
+    private DocumentJson() {
+    }
+
+    public static String toJson(Document doc) {
+        return GSON.toJson(doc, Document.class);
+    }
+
+    public static Document fromJson(String json) {
+        return GSON.fromJson(json, Document.class);
+    }
+
+    public static Document fromJson(Reader reader) {
+        return GSON.fromJson(reader, Document.class);
+    }
+
+    // Reads and writes documents, registered once for Document so both directions use it
+    private static class DocumentAdapter implements JsonSerializer<Document>, JsonDeserializer<Document> {
+        @Override
+        public JsonElement serialize(Document doc, Type type, JsonSerializationContext context) {
+            JsonObject jsonObject = new JsonObject();
+            jsonObject.addProperty("uri", doc.getKey().toString());
+
+            if (doc.getDocumentTxt() != null) {
+                jsonObject.addProperty("isBinary", false);
+                jsonObject.addProperty("content", doc.getDocumentTxt());
+            } else {
+                jsonObject.addProperty("isBinary", true);
+                jsonObject.addProperty("content", Base64.getEncoder().encodeToString(doc.getDocumentBinaryData()));
+            }
+
+            jsonObject.add("metaData", MAPS.toJsonTree(doc.getMetadata(), new TypeToken<Map<String, String>>() {
+            }.getType()));
+            jsonObject.add("wordsMap", MAPS.toJsonTree(doc.getWordMap(), new TypeToken<Map<String, Integer>>() {
+            }.getType()));
+            return jsonObject;
+        }
+
+        @Override
+        public Document deserialize(JsonElement json, Type type, JsonDeserializationContext context) {
+            JsonObject jobject = json.getAsJsonObject();
+
+            HashMap<String, Integer> wordsMap = MAPS.fromJson(jobject.get("wordsMap"), WORDS_MAP_TYPE);
+            HashMap<String, String> metaDataMap = MAPS.fromJson(jobject.get("metaData"), METADATA_MAP_TYPE);
+
+            URI uri = URI.create(jobject.get("uri").getAsString());
+            String content = jobject.get("content").getAsString();
+
+            Document doc;
+            if (jobject.get("isBinary").getAsBoolean() == false) {
+                doc = new DocumentImpl(uri, content, wordsMap);
+            } else {
+                byte[] binaryData = Base64.getDecoder().decode(content);
+                doc = new DocumentImpl(uri, binaryData);
+            }
+
+            doc.setMetadata(metaDataMap);
+            return doc;
+        }
+    }
+}
@@ -4,91 +4,46 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.Base64;
-import java.util.HashMap;
-import java.util.Map;
-import java.lang.reflect.Type;
 import java.net.URI;
-
-import com.google.gson.JsonSerializer;
-import com.google.gson.reflect.TypeToken;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonSerializationContext;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
 
 import edu.yu.cs.com1320.project.stage6.PersistenceManager;
 import edu.yu.cs.com1320.project.stage6.Document;
 
 public class DocumentPersistenceManager implements PersistenceManager<URI, Document> {
+    // Files a task decodes itself instead of splitting them between two
+    private static final int FILES_PER_TASK = 32;
+    // Assumed cost of reading a document back until enough reads have been measured: a file open plus a per byte rate
+    private static final double DEFAULT_FIXED_NANOS = 100_000;
+    private static final double DEFAULT_NANOS_PER_BYTE = 20;
+
     private File baseDir;
+    // How a document read back is sized for the fit. null sizes it by its file
+    private ToIntFunction<Document> readSize;
+    // Running sums for a least squares fit of deserialization time against document size
+    private long reads;
+    private double sumBytes;
+    private double sumNanos;
+    private double sumBytesSquared;
+    private double sumBytesTimesNanos;
+    // Files written since the last force. Guarded by itself, since a SpillingPersistenceManager writes from its thread
+    private Set<File> unforced;
 
     public DocumentPersistenceManager(File baseDir) {
         if (baseDir != null)
             this.baseDir = baseDir;
         else
             this.baseDir = new File(System.getProperty("user.dir"));
-    }
-
-    private class DocumentSerializer implements JsonSerializer<Document> {
-        @Override
-        public JsonElement serialize(Document doc, Type type, JsonSerializationContext context) {
-            JsonObject jsonObject = new JsonObject();
-            jsonObject.addProperty("uri", doc.getKey().toString());
-
-            if (doc.getDocumentTxt() != null) {
-                jsonObject.addProperty("isBinary", false);
-                jsonObject.addProperty("content", doc.getDocumentTxt());
-            } else {
-                jsonObject.addProperty("isBinary", true);
-                jsonObject.addProperty("content", Base64.getEncoder().encodeToString(doc.getDocumentBinaryData()));
-            }
-
-            Gson gson = new Gson();
-
-            JsonElement metaDataJson = gson.toJsonTree(doc.getMetadata(), new TypeToken<Map<String, String>>() {
-            }.getType());
-            jsonObject.add("metaData", metaDataJson);
-
-            JsonElement wordsMapJson = gson.toJsonTree(doc.getWordMap(), new TypeToken<Map<String, Integer>>() {
-            }.getType());
-            jsonObject.add("wordsMap", wordsMapJson);
-
-            return jsonObject;
-        }
-    };
-
-    private class DocumentDeserializer implements JsonDeserializer<Document> {
-        @Override
-        public Document deserialize(JsonElement json, Type type, JsonDeserializationContext context) {
-            JsonObject jobject = json.getAsJsonObject();
-
-            Gson gson = new Gson();
-            Type wordsMapType = new TypeToken<HashMap<String, Integer>>() {
-            }.getType();
-            Type metaDataMapType = new TypeToken<HashMap<String, String>>() {
-            }.getType();
-
-            HashMap<String, Integer> wordsMap = gson.fromJson(jobject.get("wordsMap"), wordsMapType);
-            HashMap<String, String> metaDataMap = gson.fromJson(jobject.get("metaData"), metaDataMapType);
-
-            URI uri = URI.create(jobject.get("uri").getAsString());
-            String content = jobject.get("content").getAsString();
-
-            Document doc;
-            if (jobject.get("isBinary").getAsBoolean() == false) {
-                doc = new DocumentImpl(uri, content, wordsMap);
-            } else {
-                byte[] binaryData = Base64.getDecoder().decode(content);
-                doc = new DocumentImpl(uri, binaryData);
-            }
-
-            doc.setMetadata(metaDataMap);
-            return doc;
-        }
+        this.unforced = new HashSet<>();
     }
 
     private String getDirectory(URI uri) {
@@ -102,11 +57,7 @@ public class DocumentPersistenceManager implements PersistenceManager<URI, Docum
         if (key == null || val == null) {
             return;
         }
-        Gson gson = new GsonBuilder()
-                .registerTypeAdapter(Document.class, new DocumentSerializer())
-                .create();
-
-        String json = gson.toJson(val, Document.class);
+        String json = DocumentJson.toJson(val);
         File file = new File(getDirectory((URI) key));
         try {
             File directory = new File(file.getParentFile().getAbsolutePath());
@@ -114,6 +65,9 @@ public class DocumentPersistenceManager implements PersistenceManager<URI, Docum
             FileWriter writer = new FileWriter(file);
             writer.write(json);
             writer.close();
+            synchronized (this.unforced) {
+                this.unforced.add(file);
+            }
         } catch (IOException ignored) {
         }
     }
@@ -122,20 +76,81 @@ public class DocumentPersistenceManager implements PersistenceManager<URI, Docum
         if (key == null) {
             return null;
         }
-        Gson gson = new GsonBuilder()
-                .registerTypeAdapter(Document.class, new DocumentDeserializer())
-                .create();
+        Document doc = this.read(key);
+        File file = new File(getDirectory((URI) key));
+        this.delete(key);
+        deleteEmptyFolders(file.getParentFile());
+        return doc;
+    }
 
+    /**
+     * read the document stored on disk for the given key, leaving the file in place
+     */
+    public Document peek(URI key) throws IOException {
+        if (key == null) {
+            return null;
+        }
+        return this.read(key);
+    }
+
+    private Document read(URI key) throws IOException {
         File file = new File(getDirectory((URI) key));
         if (!file.exists()) {
             throw new IOException();
         }
+        long start = System.nanoTime();
+        long bytes = file.length();
         FileReader reader = new FileReader(file);
-        Document doc = gson.fromJson(reader, Document.class);
+        Document doc = DocumentJson.fromJson(reader);
         reader.close();
-        this.delete(key);
-        deleteEmptyFolders(file.getParentFile());
-        return (Document) doc;
+        long nanos = System.nanoTime() - start;
+        if (this.readSize != null) {
+            bytes = this.readSize.applyAsInt(doc);
+        }
+        this.recordRead(bytes, nanos);
+        return doc;
+    }
+
+    /**
+     * size the documents read back with the given function instead of by their files, so that
+     * estimateDeserializationNanos is asked in the same units. DocumentStoreImpl sets it to the bytes it counts each
+     * document as using
+     * @throws IllegalArgumentException if readSize is null
+     */
+    public void setReadSize(ToIntFunction<Document> readSize) {
+        if (readSize == null) {
+            throw new IllegalArgumentException();
+        }
+        this.readSize = readSize;
+    }
+
+    private void recordRead(long bytes, long nanos) {
+        this.reads++;
+        this.sumBytes += bytes;
+        this.sumNanos += nanos;
+        this.sumBytesSquared += (double) bytes * bytes;
+        this.sumBytesTimesNanos += (double) bytes * nanos;
+    }
+
+    /**
+     * Estimates how long reading a document of the given size back from disk takes, as a fixed cost plus a cost per
+     * byte fitted to the deserializations measured so far. Sizes are those of the serialized files, or whatever
+     * setReadSize measures documents with.
+     * @return the expected deserialization time in nanoseconds, at least 1
+     */
+    public long estimateDeserializationNanos(int bytes) {
+        double fixed = DEFAULT_FIXED_NANOS;
+        double perByte = DEFAULT_NANOS_PER_BYTE;
+        double variance = this.reads * this.sumBytesSquared - this.sumBytes * this.sumBytes;
+        if (this.reads >= 2 && variance > 0) {
+            perByte = Math.max(0, (this.reads * this.sumBytesTimesNanos - this.sumBytes * this.sumNanos) / variance);
+            fixed = Math.max(0, (this.sumNanos - perByte * this.sumBytes) / this.reads);
+        } else if (this.reads > 0) {
+            // All reads so far were the same size, so only the average can be known
+            fixed = this.sumNanos / this.reads;
+            perByte = 0;
+        }
+        return Math.max(1, Math.round(fixed + perByte * bytes));
     }
 
     private void deleteEmptyFolders(File folder) {
@@ -166,4 +181,117 @@ public class DocumentPersistenceManager implements PersistenceManager<URI, Docum
         deleteEmptyFolders(file.getParentFile());
         return deleted;
     }
+
+    /**
+     * force every file written since the last force, and the directories holding them up to the base directory, to
+     * the disk
+     */
+    public void force() throws IOException {
+        Set<File> files;
+        synchronized (this.unforced) {
+            files = new HashSet<>(this.unforced);
+            this.unforced.clear();
+        }
+        File base = this.baseDir.getAbsoluteFile();
+        Set<File> directories = new HashSet<>();
+        for (File file : files) {
+            try {
+                FileSync.force(file);
+            } catch (NoSuchFileException e) {
+                // Deleted since it was written, so there is nothing to keep
+                continue;
+            }
+            File directory = file.getAbsoluteFile().getParentFile();
+            while (directory != null && directories.add(directory) && !directory.equals(base)) {
+                directory = directory.getParentFile();
+            }
+        }
+        for (File directory : directories) {
+            FileSync.forceDirectory(directory);
+        }
+    }
+
+    /**
+     * read every document stored under the base directory and hand each one to action. Directories are walked and
+     * files decoded on the pool's threads, so action may be called from several threads at once. Files which aren't a
+     * document stored where this manager would look for it are skipped. The files are left in place
+     * @return how many documents were read
+     */
+    public int readAll(ForkJoinPool pool, Consumer<Document> action) {
+        AtomicInteger count = new AtomicInteger();
+        pool.invoke(new ReadDirectory(this.baseDir, action, count));
+        return count.get();
+    }
+
+    // Forks a task for every subdirectory and for the directory's own files
+    private class ReadDirectory extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private File directory;
+        private Consumer<Document> action;
+        private AtomicInteger count;
+
+        private ReadDirectory(File directory, Consumer<Document> action, AtomicInteger count) {
+            this.directory = directory;
+            this.action = action;
+            this.count = count;
+        }
+
+        protected void compute() {
+            File[] files = this.directory.listFiles();
+            if (files == null) {
+                return;
+            }
+            List<RecursiveAction> tasks = new ArrayList<>();
+            List<File> documents = new ArrayList<>();
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    tasks.add(new ReadDirectory(file, this.action, this.count));
+                } else if (file.getName().endsWith(".json")) {
+                    documents.add(file);
+                }
+            }
+            if (!documents.isEmpty()) {
+                tasks.add(new ReadFiles(documents, this.action, this.count));
+            }
+            invokeAll(tasks);
+        }
+    }
+
+    // Splits its files in half until few enough are left to decode them itself
+    private class ReadFiles extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private List<File> files;
+        private Consumer<Document> action;
+        private AtomicInteger count;
+
+        private ReadFiles(List<File> files, Consumer<Document> action, AtomicInteger count) {
+            this.files = files;
+            this.action = action;
+            this.count = count;
+        }
+
+        protected void compute() {
+            if (this.files.size() > FILES_PER_TASK) {
+                int half = this.files.size() / 2;
+                invokeAll(new ReadFiles(this.files.subList(0, half), this.action, this.count),
+                        new ReadFiles(this.files.subList(half, this.files.size()), this.action, this.count));
+                return;
+            }
+            for (File file : this.files) {
+                Document doc;
+                try (FileReader reader = new FileReader(file)) {
+                    doc = DocumentJson.fromJson(reader);
+                } catch (IOException | RuntimeException e) {
+                    // Not a document, or one this manager didn't write
+                    continue;
+                }
+                if (doc != null && file.getAbsoluteFile().equals(new File(getDirectory(doc.getKey())).getAbsoluteFile())) {
+                    this.count.incrementAndGet();
+                    this.action.accept(doc);
+                }
+            }
+        }
+    }
 }
@@ -1,65 +1,146 @@
 package edu.yu.cs.com1320.project.stage6.impl;
 
 import edu.yu.cs.com1320.project.stage6.DocumentStore;
+import edu.yu.cs.com1320.project.stage6.EvictionPolicy;
+import edu.yu.cs.com1320.project.stage6.PersistenceManager;
 import edu.yu.cs.com1320.project.undo.CommandSet;
 import edu.yu.cs.com1320.project.undo.GenericCommand;
 import edu.yu.cs.com1320.project.undo.Undoable;
-import edu.yu.cs.com1320.project.BTree;
 import edu.yu.cs.com1320.project.MinHeap;
 import edu.yu.cs.com1320.project.Stack;
 import edu.yu.cs.com1320.project.Trie;
 import edu.yu.cs.com1320.project.impl.BTreeImpl;
 import edu.yu.cs.com1320.project.impl.MinHeapImpl;
+import edu.yu.cs.com1320.project.impl.RadixTrieImpl;
 import edu.yu.cs.com1320.project.impl.StackImpl;
 import edu.yu.cs.com1320.project.impl.TrieImpl;
 import edu.yu.cs.com1320.project.stage6.Document;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Consumer;
 
-public class DocumentStoreImpl implements DocumentStore {
-    private BTree<URI, Document> store;
+public class DocumentStoreImpl implements DocumentStore, Closeable {
+    /**
+     * which Trie implementation backs the word index.
+     * ARRAY is the original 63-way array trie, RADIX is the path-compressed trie which uses far less memory for large vocabularies.
+     */
+    public enum TrieType {
+        ARRAY, RADIX
+    };
+
+    /**
+     * what maxDocumentBytes is measured against.
+     * CONTENT counts only the bytes of each document's text or binary data, FOOTPRINT counts an estimate of the heap
+     * each document holds on to, including its word map, metadata and index entries.
+     */
+    public enum ByteAccounting {
+        CONTENT, FOOTPRINT
+    };
+
+    /**
+     * which search results on disk are brought back into memory.
+     * ALWAYS brings every one back, NEVER reads them from disk without bringing them back, TOP_N brings back only
+     * those among the first n results, SECOND_ACCESS brings one back the second time a search returns it.
+     */
+    public enum SearchPromotion {
+        ALWAYS, NEVER, TOP_N, SECOND_ACCESS
+    };
+
+    private BTreeImpl<URI, Document> store;
     private Stack<Undoable> commandStack;
-    private Trie<URI> documentTrie;
-    private Trie<TrieNode> metaDataTrie;
-    private MinHeap<MinHeapNode> minHeap;
+    private DocumentIdTable documentIds;
+    private WordIndex wordIndex;
+    private MetadataIndex metadataIndex;
+    private EvictionPolicy<URI> evictionPolicy;
+    // Size of every document in memory, so evicting one doesn't have to measure it again
+    private Map<URI, Integer> residentBytes;
     private Set<URI> uriSet;
     private Set<URI> uriOnDiskSet;
     private int maxDocumentCount;
     private int maxDocumentBytes;
     private int totalDocumentBytes;
     private int totalDocCount;
+    // Fraction of the limits to evict down to once one of them is exceeded
+    private double lowWatermark;
+    private ByteAccounting byteAccounting;
+    private MemoryPressureMonitor memoryPressureMonitor;
+    private SearchPromotion searchPromotion;
+    private int searchPromotionLimit;
+    // Documents on disk returned by a search once, for SECOND_ACCESS
+    private Set<URI> searchedOnDisk;
+    private WriteAheadLog writeAheadLog;
+    private PersistenceManager<URI, Document> persistenceManager;
 
     public DocumentStoreImpl() {
         this(null);
     }
 
     public DocumentStoreImpl(File baseDir) {
+        this(baseDir, TrieType.ARRAY);
+    }
+
+    /**
+     * a store which logs its changes to a "wal.log" file in baseDir, or user.dir if baseDir is null, and starts with
+     * the documents a store using the same file had before it stopped
+     * @see #setWriteAheadLog(WriteAheadLog)
+     */
+    public DocumentStoreImpl(File baseDir, WriteAheadLog.FsyncPolicy fsyncPolicy) throws IOException {
+        this(baseDir, TrieType.ARRAY);
+        File directory = baseDir != null ? baseDir : new File(System.getProperty("user.dir"));
+        this.setWriteAheadLog(new WriteAheadLog(new File(directory, "wal.log"), fsyncPolicy));
+    }
+
+    public DocumentStoreImpl(File baseDir, TrieType trieType) {
+        if (trieType == null) {
+            throw new IllegalArgumentException();
+        }
         this.store = new BTreeImpl<>();
-        this.store.setPersistenceManager(new DocumentPersistenceManager(baseDir));
+        this.persistenceManager = new DocumentPersistenceManager(baseDir);
+        this.measureReadsInStoreBytes(this.persistenceManager);
+        this.store.setPersistenceManager(this.persistenceManager);
         this.commandStack = new StackImpl<>();
-        this.documentTrie = new TrieImpl<>();
-        this.metaDataTrie = new TrieImpl<>();
-        this.minHeap = new MinHeapImpl<>();
+        this.documentIds = new DocumentIdTable();
+        this.wordIndex = new WordIndex(createTrie(trieType));
+        this.metadataIndex = new MetadataIndex();
+        this.evictionPolicy = new LRUEvictionPolicy<>();
+        this.residentBytes = new HashMap<>();
         this.uriSet = new HashSet<>();
         this.uriOnDiskSet = new HashSet<>();
         // Default them to Max Integer because primitive types can't be null
         this.maxDocumentCount = Integer.MAX_VALUE;
         this.maxDocumentBytes = Integer.MAX_VALUE;
+        this.lowWatermark = 1.0;
+        this.byteAccounting = ByteAccounting.CONTENT;
+        this.searchPromotion = SearchPromotion.ALWAYS;
+        this.searchPromotionLimit = 10;
+        this.searchedOnDisk = new HashSet<>();
 
         this.totalDocCount = 0;
         this.totalDocumentBytes = 0;
     }
 
+    private static <Value> Trie<Value> createTrie(TrieType trieType) {
+        if (trieType == TrieType.RADIX) {
+            return new RadixTrieImpl<>();
+        }
+        return new TrieImpl<>();
+    }
+
     public int put(InputStream input, URI uri, DocumentFormat format) throws IOException {
         if (uri == null || uri.getPath().isBlank() || format == null) {
             throw new IllegalArgumentException();
@@ -78,41 +159,55 @@ public class DocumentStoreImpl implements DocumentStore {
         if (bytes.length > this.maxDocumentBytes) {
             throw new IllegalArgumentException();
         }
+        return this.put(uri, format, bytes, createDocument(uri, format, bytes));
+    }
+
+    // The rest of put, once the document is made. ConcurrentDocumentStoreImpl makes it before taking its lock
+    int put(URI uri, DocumentFormat format, byte[] bytes, Document doc) throws IOException {
+        this.relieveMemoryPressure();
+        if (bytes.length > this.maxDocumentBytes) {
+            throw new IllegalArgumentException();
+        }
+        if (this.getDocumentByteAmount(doc) > this.maxDocumentBytes) {
+            throw new IllegalArgumentException();
+        }
+        // Logged before anything changes, so a put the log couldn't record fails without having happened
+        if (this.writeAheadLog != null) {
+            this.writeAheadLog.logPut(uri, format == DocumentFormat.BINARY, bytes);
+        }
         boolean onDisk = this.uriOnDiskSet.contains(uri);
         // Document storage is adjusted in addDoc method
-        Document doc = addDoc(uri, format, bytes);
+        addDoc(uri, doc);
         if (getDoc(uri) != null) {
             removeWordsFromTrie(uri);
-            removeMetadataFromTrie(uri);
+            removeMetadataFromIndex(uri);
         }
         Document oldDoc = this.store.put(uri, doc);
         addWordsToTrie(uri);
-        addMetadataToTrie(uri);
-        handleOldDoc(uri, oldDoc, onDisk);
-        Document docMovedToDisk = null;
-        while (this.isOverStorageLimit()) {
-            docMovedToDisk = this.storageOverflowDelete();
-        }
+        addMetadataToIndex(uri);
+        handleOldDoc(uri, doc, oldDoc, onDisk);
+        Document docMovedToDisk = this.makeRoom();
         addPutUndoCommand(uri, oldDoc, docMovedToDisk, onDisk);
         return oldDoc == null ? 0 : oldDoc.hashCode();
     }
 
-    private void handleOldDoc(URI uri, Document oldDoc, boolean onDisk) {
+    private void handleOldDoc(URI uri, Document doc, Document oldDoc, boolean onDisk) {
         // If oldDoc exists then remove the document count just added from addDoc
         this.uriOnDiskSet.remove(uri);
+        this.searchedOnDisk.remove(uri);
+        int bytes = this.getDocumentByteAmount(doc);
+        this.residentBytes.put(uri, bytes);
         if (oldDoc != null && onDisk == false) {
             this.totalDocCount -= 1;
             this.totalDocumentBytes -= this.getDocumentByteAmount(oldDoc);
-            // In case it was on disk, it shouldn't be anymore
-
+            // oldDoc has the same uri so it is already tracked by the eviction policy
+            // Don't need to set the lastUsedTime again since it is set in constructor of document
+            this.evictionPolicy.resize(uri, bytes);
+            this.evictionPolicy.touch(uri, doc.getLastUseTime());
         } else {
-            // New document and needs to be added to MinHeap
-            // oldDoc will have same uri so no change to MinHeap
-            this.minHeap.insert(new MinHeapNode(uri));
+            // New document in memory, or it replaced one on disk, so it needs to be tracked
+            this.evictionPolicy.add(uri, doc.getLastUseTime(), bytes);
         }
-        // If oldDoc is null, the ByteAmount is 0
-        // Don't need to set the lastUsedTime again since it is set in constructor of document
-        this.minHeap.reHeapify(new MinHeapNode(uri));
     }
 
     private void addPutUndoCommand(URI uri, Document oldDoc, Document docMovedToDisk, boolean onDisk) {
@@ -121,7 +216,7 @@ public class DocumentStoreImpl implements DocumentStore {
                 return; //TODO: Make sure Exception shouldn't be thrown
             }
             removeWordsFromTrie(uri);
-            removeMetadataFromTrie(uri);
+            removeMetadataFromIndex(uri);
             // Must come before put because, method calls B-Tree get
             if (oldDoc == null) {
                 deleteURIFromHeap(uri);
@@ -131,23 +226,30 @@ public class DocumentStoreImpl implements DocumentStore {
             this.totalDocCount -= 1;
             if (oldDoc != null) {
                 addWordsToTrie(uri);
-                addMetadataToTrie(uri);
+                addMetadataToIndex(uri);
                 if (onDisk) {
+                    // The document being undone was in memory, the one it replaced goes back to disk
+                    this.deleteURIFromHeap(uri);
                     try {
                         this.store.moveToDisk(uri);
                         this.uriOnDiskSet.add(uri);
                     } catch (IOException e) {
-                        e.printStackTrace(System.out);
+                        throw new UncheckedIOException(e);
                     }
                 } else {
                     this.uriOnDiskSet.remove(uri);
                     this.totalDocCount += 1;
                     this.totalDocumentBytes += this.getDocumentByteAmount(oldDoc);
-                    this.setNanoTimeAndReheapify(oldDoc);
-                }
-                while (this.isOverStorageLimit()) {
-                    this.storageOverflowDelete();
+                    if (this.residentBytes.containsKey(uri)) {
+                        this.residentBytes.put(uri, this.getDocumentByteAmount(oldDoc));
+                        this.evictionPolicy.resize(uri, this.getDocumentByteAmount(oldDoc));
+                        this.setNanoTimeAndReheapify(oldDoc);
+                    } else {
+                        // The document being undone was moved to disk since the put
+                        this.addToEvictionPolicy(oldDoc);
+                    }
                 }
+                this.makeRoom();
             } else {
                 this.uriSet.remove(uri);
             }
@@ -157,21 +259,25 @@ public class DocumentStoreImpl implements DocumentStore {
         });
     }
 
-    private Document addDoc(URI uri, DocumentFormat format, byte[] bytes) {
-        Document doc;
+    static Document createDocument(URI uri, DocumentFormat format, byte[] bytes) {
         if (format == DocumentFormat.TXT) {
-            String txt = new String(bytes);
-            doc = new DocumentImpl(uri, txt, null);
-        } else {
-            doc = new DocumentImpl(uri, bytes);
+            String txt = new String(bytes, StandardCharsets.UTF_8);
+            return new DocumentImpl(uri, txt, null);
+        }
+        return new DocumentImpl(uri, bytes);
+    }
+
+    private void addDoc(URI uri, Document doc) {
+        if (this.getDocumentByteAmount(doc) > this.maxDocumentBytes) {
+            throw new IllegalArgumentException();
         }
         this.totalDocumentBytes += this.getDocumentByteAmount(doc);
         this.totalDocCount += 1;
         this.uriSet.add(uri);
-        return doc;
     }
 
     public Document get(URI url) throws IOException {
+        this.relieveMemoryPressure();
         Document doc = getDoc(url);
         if (getDocumentByteAmount(doc) > this.maxDocumentBytes) {
             return null; //TODO: Not sure how to handle this case
@@ -191,11 +297,22 @@ public class DocumentStoreImpl implements DocumentStore {
         boolean onDisk = this.uriOnDiskSet.contains(uri);
         // Has to be before getDocument bc that will bring back to disk
         Document doc = getDocument(uri, key);
+        if (this.writeAheadLog != null) {
+            this.writeAheadLog.logMetadata(uri, key, value);
+        }
         String oldVal = doc.setMetadataValue(key, value);
-        this.metaDataTrie.put(key, new TrieNode(uri, value));
+        this.store.markDirty(uri);
+        int id = this.documentIds.getOrAssign(uri);
+        this.metadataIndex.remove(id, key, oldVal);
+        this.metadataIndex.add(id, key, value);
+        this.resizeResident(doc);
         Document docMovedToDisk = checkAndAddDocumentBackToStorage(doc);
-        setMetaDataUndoCommand(uri, doc, docMovedToDisk, key, oldVal, onDisk);
         this.setNanoTimeAndReheapify(doc);
+        if (docMovedToDisk == null) {
+            // The new metadata can make the document's footprint bigger
+            docMovedToDisk = this.makeRoom();
+        }
+        setMetaDataUndoCommand(uri, doc, docMovedToDisk, key, oldVal, onDisk);
         return oldVal;
     }
 
@@ -203,19 +320,21 @@ public class DocumentStoreImpl implements DocumentStore {
             boolean onDisk) {
         addGenericCommand(uri, (ignoredVal) -> {
             String originalVal = doc.setMetadataValue(key, oldVal);
-            this.metaDataTrie.delete(key, new TrieNode(uri, originalVal));
-            if (oldVal != null) {
-                this.metaDataTrie.put(key, new TrieNode(uri, oldVal));
-            }
+            this.store.markDirty(uri);
+            int id = this.documentIds.getOrAssign(uri);
+            this.metadataIndex.remove(id, key, originalVal);
+            this.metadataIndex.add(id, key, oldVal);
+            this.resizeResident(doc);
             if (onDisk) {
                 try {
                     this.store.moveToDisk(uri);
                 } catch (IOException e) {
-                    e.printStackTrace(System.out);
+                    throw new UncheckedIOException(e);
                 }
             } else {
                 checkAndAddDocumentBackToStorage(doc);
                 this.setNanoTimeAndReheapify(doc);
+                this.makeRoom();
             }
             if (docMovedToDisk != null) {
                 checkAndAddDocumentBackToStorage(docMovedToDisk);
@@ -234,142 +353,238 @@ public class DocumentStoreImpl implements DocumentStore {
     }
 
     public List<Document> search(String keyword) throws IOException {
-        List<Document> documents = this.searchHelper(keyword);
-        for (Document doc : documents) {
-            checkAndAddDocumentBackToStorage(doc);
-        }
-        List<Document> documentsForReheapify = new ArrayList<>(documents);
-        documentsForReheapify.removeIf(d -> (this.uriOnDiskSet.contains(d.getKey())));
-        this.setNanoTimeAndReheapify(documentsForReheapify);
-        return documents;
+        return this.search(keyword, Integer.MAX_VALUE);
     }
 
-    private List<Document> searchHelper(String keyword) {
-        List<Document> documents = new ArrayList<>();
-        List<URI> uris = this.documentTrie.getSorted(keyword, new Comparator<URI>() {
-            @Override
-            public int compare(URI u1, URI u2) {
-                return (store.get(u2).wordCount(keyword) - store.get(u1).wordCount(keyword));
-            }
-        });
-        for (URI uri : uris) {
-            documents.add(this.store.get(uri));
+    public List<Document> search(String keyword, int limit) throws IOException {
+        checkLimit(limit);
+        return this.useSearchResults(this.searchURIs(keyword, limit));
+    }
+
+    // Ranks purely off the term frequencies stored in the index, so no document is loaded to sort
+    List<URI> searchURIs(String keyword, int limit) {
+        if (keyword == null) {
+            throw new IllegalArgumentException();
         }
-        return documents;
+        PostingList postings = this.wordIndex.get(keyword);
+        if (postings == null) {
+            return new ArrayList<>();
+        }
+        return this.rank(postings, limit);
     }
 
     public List<Document> searchByPrefix(String keywordPrefix) throws IOException {
-        List<Document> documents = this.searchByPrefixHelper(keywordPrefix);
-        for (Document doc : documents) {
-            checkAndAddDocumentBackToStorage(doc);
+        return this.searchByPrefix(keywordPrefix, Integer.MAX_VALUE);
+    }
+
+    public List<Document> searchByPrefix(String keywordPrefix, int limit) throws IOException {
+        checkLimit(limit);
+        return this.useSearchResults(this.searchByPrefixURIs(keywordPrefix, limit));
+    }
+
+    List<URI> searchByPrefixURIs(String keywordPrefix, int limit) {
+        if (keywordPrefix == null) {
+            throw new IllegalArgumentException();
         }
-        List<Document> documentsForReheapify = new ArrayList<>(documents);
-        documentsForReheapify.removeIf(d -> (this.uriOnDiskSet.contains(d.getKey())));
-        this.setNanoTimeAndReheapify(documentsForReheapify);
-        return documents;
+        // Merging the sorted postings of every word under the prefix sums each document's frequencies in one pass
+        PostingList postings = this.wordIndex.getWithPrefix(keywordPrefix);
+        return this.rank(postings, limit);
     }
 
-    private List<Document> searchByPrefixHelper(String keywordPrefix) {
-        List<Document> documents = new ArrayList<>();
-        List<URI> uris = this.documentTrie.getAllWithPrefixSorted(keywordPrefix, new Comparator<URI>() {
-            @Override
-            public int compare(URI u1, URI u2) {
-                return (prefixWordCount(u2, keywordPrefix) - prefixWordCount(u1, keywordPrefix));
+    /**
+     * Orders the postings by descending frequency without loading any document. When fewer than all of the postings
+     * are wanted, a MinHeap bounded to limit entries keeps the best ones seen so far, so the work is O(n log limit)
+     * and only limit entries are ever allocated. Documents with the same frequency are in ascending URI order, so the
+     * order doesn't depend on document ids, which differ between runs.
+     */
+    private List<URI> rank(PostingList postings, int limit) {
+        if (limit >= postings.size()) {
+            return this.rank(postings);
+        }
+        MinHeap<RankedHit> topHits = new MinHeapImpl<>();
+        int heapSize = 0;
+        for (int i = 0; i < postings.size(); i++) {
+            RankedHit hit = new RankedHit(postings.getFrequencyAt(i), this.documentIds.getURI(postings.getId(i)));
+            if (heapSize < limit) {
+                topHits.insert(hit);
+                heapSize++;
+            } else if (hit.compareTo(topHits.peek()) > 0) {
+                topHits.remove();
+                topHits.insert(hit);
             }
-        });
-        for (URI uri : uris) {
-            documents.add(this.store.get(uri));
         }
-        return documents;
+        URI[] ranked = new URI[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            ranked[i] = topHits.remove().uri;
+        }
+        return new ArrayList<>(Arrays.asList(ranked));
     }
 
-    public List<Document> searchByMetadata(Map<String, String> keysValues) throws IOException {
-        List<Document> searchDocuments = this.searchByMetadataHelper(keysValues);
-        for (Document doc : searchDocuments) {
-            checkAndAddDocumentBackToStorage(doc);
+    private List<URI> rank(PostingList postings) {
+        List<Integer> order = new ArrayList<>(postings.size());
+        for (int i = 0; i < postings.size(); i++) {
+            order.add(i);
         }
-        List<Document> documentsForReheapify = new ArrayList<>(searchDocuments);
-        documentsForReheapify.removeIf(d -> (this.uriOnDiskSet.contains(d.getKey())));
-        this.setNanoTimeAndReheapify(documentsForReheapify);
-        return searchDocuments;
-    }
-
-    private List<Document> searchByMetadataHelper(Map<String, String> keysValues) {
-        List<Document> searchDocuments = new ArrayList<>();
-        Set<URI> searchURIs = new HashSet<>();
-        if (keysValues == null || keysValues.isEmpty()) {
-            return searchDocuments;
-        }
-        for (String key : keysValues.keySet()) {
-            Set<TrieNode> nodes = this.metaDataTrie.get(key);
-            for (TrieNode node : nodes) {
-                boolean contains = true;
-                String docValue = node.getValue();
-                String keyValue = keysValues.get(key);
-                if (docValue == null || keyValue == null || !docValue.equals(keyValue)) {
-                    contains = false;
-                    searchURIs.remove(node.getURI());
-                    break;
-                }
-                if (contains) {
-                    searchURIs.add(node.getURI());
+        order.sort(new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                if (postings.getFrequencyAt(i1) != postings.getFrequencyAt(i2)) {
+                    return postings.getFrequencyAt(i2) - postings.getFrequencyAt(i1);
                 }
+                URI u1 = documentIds.getURI(postings.getId(i1));
+                URI u2 = documentIds.getURI(postings.getId(i2));
+                return u1.compareTo(u2);
             }
+        });
+        List<URI> uris = new ArrayList<>(postings.size());
+        for (int i : order) {
+            uris.add(this.documentIds.getURI(postings.getId(i)));
         }
-        for (URI uri : searchURIs) {
-            searchDocuments.add(this.store.get(uri));
+        return uris;
+    }
+
+    static void checkLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException();
         }
-        return searchDocuments;
+    }
+
+    public List<Document> searchByMetadata(Map<String, String> keysValues) throws IOException {
+        return this.useSearchResults(new ArrayList<>(this.searchByMetadataURIs(keysValues)));
+    }
+
+    Set<URI> searchByMetadataURIs(Map<String, String> keysValues) {
+        return this.getUriFromPostings(this.metadataIndex.search(keysValues));
     }
 
     public List<Document> searchByKeywordAndMetadata(String keyword, Map<String, String> keysValues)
             throws IOException {
-        List<Document> searchDocuments = searchByKeywordAndMetadataHelper(keyword, keysValues);
-        for (Document doc : searchDocuments) {
-            checkAndAddDocumentBackToStorage(doc);
-        }
-        List<Document> documentsForReheapify = new ArrayList<>(searchDocuments);
-        documentsForReheapify.removeIf(d -> (this.uriOnDiskSet.contains(d.getKey())));
-        this.setNanoTimeAndReheapify(documentsForReheapify);
-        return searchDocuments;
+        return this.searchByKeywordAndMetadata(keyword, keysValues, Integer.MAX_VALUE);
     }
 
-    private List<Document> searchByKeywordAndMetadataHelper(String keyword, Map<String, String> keysValues)
+    public List<Document> searchByKeywordAndMetadata(String keyword, Map<String, String> keysValues, int limit)
             throws IOException {
-        List<Document> searchDocuments = new ArrayList<>();
-        List<Document> keywordDocuments = this.searchHelper(keyword);
-        List<Document> metadataDocuments = this.searchByMetadataHelper(keysValues);
-        for (Document doc : keywordDocuments) {
-            if (keywordDocuments.contains(doc) && metadataDocuments.contains(doc)) {
-                searchDocuments.add(doc);
-            }
+        checkLimit(limit);
+        return this.useSearchResults(this.searchByKeywordAndMetadataURIs(keyword, keysValues, limit));
+    }
+
+    List<URI> searchByKeywordAndMetadataURIs(String keyword, Map<String, String> keysValues, int limit) {
+        QueryPlan plan = this.planKeywordAndMetadata(keyword, keysValues);
+        return this.rank(plan.execute(), limit);
+    }
+
+    private QueryPlan planKeywordAndMetadata(String keyword, Map<String, String> keysValues) {
+        if (keyword == null) {
+            throw new IllegalArgumentException();
         }
-        return searchDocuments;
+        return QueryPlan.create("keyword " + keyword, this.wordIndex.get(keyword), this.metadataIndex, keysValues);
+    }
+
+    /**
+     * @return the order searchByKeywordAndMetadata would evaluate its sides in, with the size of each
+     */
+    public String explainKeywordAndMetadata(String keyword, Map<String, String> keysValues) {
+        return this.planKeywordAndMetadata(keyword, keysValues).explain();
     }
 
     public List<Document> searchByPrefixAndMetadata(String keywordPrefix, Map<String, String> keysValues)
             throws IOException {
-        List<Document> searchDocuments = searchByPrefixAndMetadataHelper(keywordPrefix, keysValues);
-        for (Document doc : searchDocuments) {
-            checkAndAddDocumentBackToStorage(doc);
+        return this.searchByPrefixAndMetadata(keywordPrefix, keysValues, Integer.MAX_VALUE);
+    }
+
+    public List<Document> searchByPrefixAndMetadata(String keywordPrefix, Map<String, String> keysValues, int limit)
+            throws IOException {
+        checkLimit(limit);
+        return this.useSearchResults(this.searchByPrefixAndMetadataURIs(keywordPrefix, keysValues, limit));
+    }
+
+    List<URI> searchByPrefixAndMetadataURIs(String keywordPrefix, Map<String, String> keysValues, int limit) {
+        QueryPlan plan = this.planPrefixAndMetadata(keywordPrefix, keysValues);
+        return this.rank(plan.execute(), limit);
+    }
+
+    private QueryPlan planPrefixAndMetadata(String keywordPrefix, Map<String, String> keysValues) {
+        if (keywordPrefix == null) {
+            throw new IllegalArgumentException();
+        }
+        return QueryPlan.create("prefix " + keywordPrefix + "*", this.wordIndex.getWithPrefix(keywordPrefix),
+                this.metadataIndex, keysValues);
+    }
+
+    /**
+     * @return the order searchByPrefixAndMetadata would evaluate its sides in, with the size of each
+     */
+    public String explainPrefixAndMetadata(String keywordPrefix, Map<String, String> keysValues) {
+        return this.planPrefixAndMetadata(keywordPrefix, keysValues).explain();
+    }
+
+    // Search results count as a use: bring them back from disk if the search promotion allows it and update their
+    // last use time. Only the documents actually being returned are read from the BTree
+    private List<Document> useSearchResults(List<URI> uris) {
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < uris.size(); i++) {
+            URI uri = uris.get(i);
+            if (!this.uriOnDiskSet.contains(uri) || this.promoteSearchResult(uri, i)) {
+                Document doc = this.store.get(uri);
+                checkAndAddDocumentBackToStorage(doc);
+                documents.add(doc);
+            } else {
+                documents.add(this.store.peek(uri));
+            }
         }
-        List<Document> documentsForReheapify = new ArrayList<>(searchDocuments);
+        List<Document> documentsForReheapify = new ArrayList<>(documents);
         documentsForReheapify.removeIf(d -> (this.uriOnDiskSet.contains(d.getKey())));
         this.setNanoTimeAndReheapify(documentsForReheapify);
-        return searchDocuments;
+        return documents;
     }
 
-    private List<Document> searchByPrefixAndMetadataHelper(String keywordPrefix, Map<String, String> keysValues)
-            throws IOException {
-        List<Document> searchDocuments = new ArrayList<>();
-        List<Document> keywordDocuments = this.searchByPrefixHelper(keywordPrefix);
-        List<Document> metadataDocuments = this.searchByMetadataHelper(keysValues);
-        for (Document doc : keywordDocuments) {
-            if (keywordDocuments.contains(doc) && metadataDocuments.contains(doc)) {
-                searchDocuments.add(doc);
+    // Reads for ConcurrentDocumentStoreImpl which change nothing, not even the eviction policy, so they can run
+    // together. The use is recorded by the caller and applied later with touch()
+    Document getResident(URI uri) {
+        Integer bytes = this.residentBytes.get(uri);
+        if (bytes == null || bytes > this.maxDocumentBytes) {
+            return null;
+        }
+        return this.store.peek(uri);
+    }
+
+    // Null unless every one of them is in memory
+    List<Document> getResident(List<URI> uris) {
+        List<Document> documents = new ArrayList<>(uris.size());
+        for (URI uri : uris) {
+            Document doc = this.getResident(uri);
+            if (doc == null) {
+                return null;
             }
+            documents.add(doc);
+        }
+        return documents;
+    }
+
+    // A use recorded by getResident's caller. Dropped if the document has left memory since
+    void touch(URI uri, long lastUseTime) {
+        if (!this.residentBytes.containsKey(uri)) {
+            return;
+        }
+        Document doc = this.store.peek(uri);
+        if (doc != null && doc.getLastUseTime() < lastUseTime) {
+            doc.setLastUseTime(lastUseTime);
+            this.touchInEvictionPolicy(doc);
+        }
+    }
+
+    private boolean promoteSearchResult(URI uri, int rank) {
+        switch (this.searchPromotion) {
+            case NEVER:
+                return false;
+            case TOP_N:
+                return rank < this.searchPromotionLimit;
+            case SECOND_ACCESS:
+                // add returns false if the document was already returned by a search
+                return !this.searchedOnDisk.add(uri);
+            default:
+                return true;
         }
-        return searchDocuments;
     }
 
     public boolean delete(URI url) {
@@ -377,8 +592,10 @@ public class DocumentStoreImpl implements DocumentStore {
         if (!this.uriOnDiskSet.contains(url) && this.store.get(url) == null) {
             return false;
         }
+        this.logDelete(url);
+        this.searchedOnDisk.remove(url);
         removeWordsFromTrie(url);
-        removeMetadataFromTrie(url);
+        removeMetadataFromIndex(url);
         this.uriSet.remove(url);
         this.deleteURIFromHeap(url);
         Document doc = this.store.put(url, null);
@@ -410,61 +627,50 @@ public class DocumentStoreImpl implements DocumentStore {
             // First put document in store and then move to disk if needed
             this.store.put(url, doc);
             addWordsToTrie(url);
-            addMetadataToTrie(url);
+            addMetadataToIndex(url);
             if (onDisk) {
                 try {
                     this.store.moveToDisk(url);
                     this.uriOnDiskSet.add(url);
                 } catch (IOException e) {
-                    e.printStackTrace(System.out);
+                    throw new UncheckedIOException(e);
                 }
             } else {
                 this.totalDocumentBytes += this.getDocumentByteAmount(doc);
                 this.totalDocCount += 1;
-                while (this.isOverStorageLimit()) {
-                    this.storageOverflowDelete();
-                }
-                this.minHeap.insert(new MinHeapNode(url));
-                this.setNanoTimeAndReheapify(doc);
+                this.makeRoom();
+                this.addToEvictionPolicy(doc);
             }
         });
     }
 
+    // The words leave the index with the last document containing them, so they are only looked up here
     public Set<URI> deleteAll(String keyword) {
-        Set<URI> uriSet = this.documentTrie.deleteAll(keyword);
-        if (uriSet.isEmpty()) {
-            return uriSet;
+        PostingList postings = this.wordIndex.get(keyword);
+        if (postings == null) {
+            return new HashSet<>();
         }
-        return deleteAllCommanSet(uriSet);
+        return deleteAllCommanSet(getUriFromPostings(postings));
     }
 
     public Set<URI> deleteAllWithPrefix(String keywordPrefix) {
-        Set<URI> uriSet = this.documentTrie.deleteAllWithPrefix(keywordPrefix);
+        Set<URI> uriSet = getUriFromPostings(this.wordIndex.getWithPrefix(keywordPrefix));
         return deleteAllCommanSet(uriSet);
     }
 
     public Set<URI> deleteAllWithMetadata(Map<String, String> keysValues) throws IOException {
-        List<Document> documents = this.searchByMetadataHelper(keysValues);
-        Set<Document> documentSet = new HashSet<>();
-        documentSet.addAll(documents);
-        Set<URI> uriSet = getUriFromDocuments(documentSet);
+        Set<URI> uriSet = this.searchByMetadataURIs(keysValues);
         return deleteAllCommanSet(uriSet);
     }
 
     public Set<URI> deleteAllWithKeywordAndMetadata(String keyword, Map<String, String> keysValues) throws IOException {
-        List<Document> documents = this.searchByKeywordAndMetadataHelper(keyword, keysValues);
-        Set<Document> documentSet = new HashSet<>();
-        documentSet.addAll(documents);
-        Set<URI> uriSet = getUriFromDocuments(documentSet);
+        Set<URI> uriSet = new HashSet<>(this.searchByKeywordAndMetadataURIs(keyword, keysValues, Integer.MAX_VALUE));
         return deleteAllCommanSet(uriSet);
     }
 
     public Set<URI> deleteAllWithPrefixAndMetadata(String keywordPrefix, Map<String, String> keysValues)
             throws IOException {
-        List<Document> documents = this.searchByPrefixAndMetadataHelper(keywordPrefix, keysValues);
-        Set<Document> documentSet = new HashSet<>();
-        documentSet.addAll(documents);
-        Set<URI> uriSet = getUriFromDocuments(documentSet);
+        Set<URI> uriSet = new HashSet<>(this.searchByPrefixAndMetadataURIs(keywordPrefix, keysValues, Integer.MAX_VALUE));
         return deleteAllCommanSet(uriSet);
     }
 
@@ -520,11 +726,7 @@ public class DocumentStoreImpl implements DocumentStore {
             throw new IllegalArgumentException();
         }
         this.maxDocumentCount = limit;
-        if (this.maxDocumentCount < this.totalDocCount) {
-            while (this.maxDocumentCount < this.totalDocCount) {
-                storageOverflowDelete();
-            }
-        }
+        this.makeRoom();
     }
 
     public void setMaxDocumentBytes(int limit) {
@@ -532,25 +734,328 @@ public class DocumentStoreImpl implements DocumentStore {
             throw new IllegalArgumentException();
         }
         this.maxDocumentBytes = limit;
-        if (this.maxDocumentBytes < this.totalDocumentBytes) {
-            while (this.maxDocumentBytes < this.totalDocumentBytes) {
-                storageOverflowDelete();
+        this.makeRoom();
+    }
+
+    /**
+     * once the document count or bytes go over their limit, keep moving documents to disk until both are at or below
+     * this fraction of their limit instead of stopping just under it. Evicting a batch at a time means the puts that
+     * follow have room without each one moving a document out. The default of 1 evicts only down to the limits.
+     * Pair it with a SpillingPersistenceManager to write the batch to disk in the background
+     * @throws IllegalArgumentException if fraction isn't greater than 0 and at most 1
+     */
+    public void setLowWatermark(double fraction) {
+        if (!(fraction > 0 && fraction <= 1)) {
+            throw new IllegalArgumentException();
+        }
+        this.lowWatermark = fraction;
+    }
+
+    /**
+     * choose what maxDocumentBytes is measured against. The bytes of every document in memory are measured again,
+     * and documents are moved to disk if that puts the store over its limit. The default is CONTENT
+     * @throws IllegalArgumentException if byteAccounting is null
+     */
+    public void setByteAccounting(ByteAccounting byteAccounting) {
+        if (byteAccounting == null) {
+            throw new IllegalArgumentException();
+        }
+        this.byteAccounting = byteAccounting;
+        for (URI uri : new ArrayList<>(this.residentBytes.keySet())) {
+            this.resizeResident(this.store.get(uri));
+        }
+        this.makeRoom();
+    }
+
+    /**
+     * choose which search results on disk are brought back into memory. Results left on disk are read without
+     * bringing them back, so changes made to them aren't kept. The default is ALWAYS
+     * @throws IllegalArgumentException if promotion is null
+     */
+    public void setSearchPromotion(SearchPromotion promotion) {
+        if (promotion == null) {
+            throw new IllegalArgumentException();
+        }
+        this.searchPromotion = promotion;
+        this.searchedOnDisk.clear();
+    }
+
+    /**
+     * set how many of the first results of a search TOP_N brings back from disk. The default is 10
+     * @throws IllegalArgumentException if n is less than 0
+     */
+    public void setSearchPromotionLimit(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.searchPromotionLimit = n;
+    }
+
+    /**
+     * move documents to disk when the JVM is short on memory, on top of the document count and byte limits. Each time
+     * the monitor reports pressure, the next put or get moves a quarter of the documents in memory to disk, chosen by
+     * the eviction policy. The store doesn't close the monitor. null turns this off, which is the default
+     */
+    public void setMemoryPressureMonitor(MemoryPressureMonitor monitor) {
+        this.memoryPressureMonitor = monitor;
+    }
+
+    /**
+     * keep a document's file on disk when it is read back into memory, so moving it out again skips writing it unless
+     * it changed in the meantime. Off by default, in which case reading a document back deletes its file
+     */
+    public void setRetainDiskCopies(boolean retainDiskCopies) {
+        this.store.setRetainDiskCopies(retainDiskCopies);
+    }
+
+    /**
+     * log every put, delete, metadata change and undo to log before it returns, and add the documents log already
+     * holds, so a store given the same log after the process stops starts with the documents this one had. If the log
+     * has a checkpoint it is loaded first and only the records after it are replayed. Recovered documents can't be
+     * undone
+     * @throws IllegalArgumentException if log is null
+     * @throws IllegalStateException if a log is already set or a document was ever put in the store
+     */
+    public void setWriteAheadLog(WriteAheadLog log) throws IOException {
+        if (log == null) {
+            throw new IllegalArgumentException();
+        }
+        if (this.writeAheadLog != null || this.documentIds.size() > 0) {
+            throw new IllegalStateException();
+        }
+        File checkpointFile = getCheckpointFile(log);
+        Set<URI> checkpointOnDisk = new HashSet<>();
+        if (checkpointFile.exists()) {
+            // The checkpoint only names the documents on disk, so their copies there have to stay
+            this.store.setRetainDiskCopies(true);
+            Checkpoint checkpoint = Checkpoint.read(checkpointFile, this.documentIds, this.wordIndex,
+                    this.metadataIndex);
+            checkpointOnDisk.addAll(checkpoint.getOnDisk());
+            this.uriSet.addAll(checkpointOnDisk);
+            this.uriOnDiskSet.addAll(checkpointOnDisk);
+            for (Document doc : checkpoint.getResident()) {
+                this.restore(doc, true);
+            }
+        }
+        Map<URI, Document> logged = log.replay(uri -> this.isStored(uri) ? this.store.peek(uri) : null);
+        // A document on disk may have been written again since the checkpoint, so the words and metadata it was
+        // indexed under are only known to the indexes
+        Set<Integer> rewritten = new HashSet<>();
+        for (URI uri : logged.keySet()) {
+            if (checkpointOnDisk.contains(uri)) {
+                rewritten.add(this.documentIds.getId(uri));
+                this.uriSet.remove(uri);
+                this.uriOnDiskSet.remove(uri);
+                this.store.put(uri, null);
+            }
+        }
+        if (!rewritten.isEmpty()) {
+            this.wordIndex.removeAll(rewritten);
+            this.metadataIndex.removeAll(rewritten);
+        }
+        for (Map.Entry<URI, Document> entry : logged.entrySet()) {
+            if (this.isStored(entry.getKey())) {
+                // Drops the version from the checkpoint along with its index entries
+                this.deleteDocAndGetCommand(entry.getKey());
+            }
+            if (entry.getValue() != null) {
+                this.restore(entry.getValue(), false);
+            }
+        }
+        this.writeAheadLog = log;
+    }
+
+    /**
+     * write the word index, metadata index and documents in memory to a checkpoint next to the write ahead log, and
+     * empty the log. A store given the same log loads the checkpoint instead of indexing every document again, and
+     * replays only the records written after it. The documents on disk stay in the persistence manager, so from the
+     * first checkpoint on documents read back from disk keep their copy there, as with setRetainDiskCopies(true).
+     * The persistence manager and the checkpoint are forced to the disk before the log is emptied
+     * @throws IllegalStateException if no write ahead log is set
+     */
+    public void checkpoint() throws IOException {
+        if (this.writeAheadLog == null) {
+            throw new IllegalStateException();
+        }
+        this.store.setRetainDiskCopies(true);
+        List<Document> resident = new ArrayList<>();
+        for (URI uri : this.residentBytes.keySet()) {
+            resident.add(this.store.get(uri));
+        }
+        resident.sort((d1, d2) -> Long.compare(d1.getLastUseTime(), d2.getLastUseTime()));
+        // The checkpoint only names the documents on disk, so they have to be there for good before the log, which
+        // could bring them back, is emptied
+        this.persistenceManager.force();
+        Checkpoint.write(getCheckpointFile(this.writeAheadLog), this.documentIds, resident, this.uriOnDiskSet,
+                this.wordIndex, this.metadataIndex);
+        this.writeAheadLog.truncate();
+    }
+
+    /**
+     * add every document a DocumentPersistenceManager has stored in its base directory, such as one left by a store
+     * which stopped, as documents on disk. Files are decoded in parallel on a fork join pool, and each document is
+     * indexed by the word counts and metadata stored with it, so its text isn't tokenized and it isn't kept in memory.
+     * A store with a write ahead log recovers its documents from the log instead
+     * @return the URIs of the documents added
+     * @throws IllegalStateException if the persistence manager isn't a DocumentPersistenceManager, a write ahead log is
+     * set or a document was ever put in the store
+     */
+    public Set<URI> adoptPersistedDocuments() {
+        if (!(this.persistenceManager instanceof DocumentPersistenceManager) || this.writeAheadLog != null
+                || this.documentIds.size() > 0) {
+            throw new IllegalStateException();
+        }
+        Set<URI> adopted = new HashSet<>();
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            ((DocumentPersistenceManager) this.persistenceManager).readAll(pool, doc -> {
+                // The indexes aren't thread safe, only decoding runs in parallel
+                synchronized (adopted) {
+                    URI uri = doc.getKey();
+                    adopted.add(uri);
+                    int id = this.documentIds.getOrAssign(uri);
+                    if (doc.getWordMap() != null) {
+                        this.wordIndex.add(id, doc.getWordMap());
+                    }
+                    this.metadataIndex.add(id, doc.getMetadata());
+                    this.uriSet.add(uri);
+                    this.uriOnDiskSet.add(uri);
+                }
+            });
+        } finally {
+            pool.shutdown();
+        }
+        return adopted;
+    }
+
+    /**
+     * force the write ahead log to the disk, including records still waiting for a group commit, and close it. Changes
+     * made after the store is closed fail. Does nothing for a store without a write ahead log
+     */
+    public void close() throws IOException {
+        if (this.writeAheadLog != null) {
+            this.writeAheadLog.close();
+        }
+    }
+
+    private static File getCheckpointFile(WriteAheadLog log) {
+        return new File(log.getFile().getPath() + ".checkpoint");
+    }
+
+    /**
+     * replace the persistence manager documents are moved to disk with. Documents already on disk are read back through
+     * the current one, so it can only be replaced while no document is on disk
+     * @throws IllegalArgumentException if pm is null
+     * @throws IllegalStateException if any document is on disk
+     */
+    public void setPersistenceManager(PersistenceManager<URI, Document> pm) {
+        if (pm == null) {
+            throw new IllegalArgumentException();
+        }
+        if (!this.uriOnDiskSet.isEmpty()) {
+            throw new IllegalStateException();
+        }
+        this.measureReadsInStoreBytes(pm);
+        this.persistenceManager = pm;
+        this.store.setPersistenceManager(pm);
+    }
+
+    // GDSF is given document sizes as the store counts them, so deserialization times have to be fitted in them too
+    private void measureReadsInStoreBytes(PersistenceManager<URI, Document> pm) {
+        if (pm instanceof DocumentPersistenceManager) {
+            ((DocumentPersistenceManager) pm).setReadSize(this::getDocumentByteAmount);
+        }
+    }
+
+    /**
+     * replace the policy choosing which document to move to disk when the store is over its limits. Documents already
+     * in memory are handed to the new policy from least to most recently used. The default is LRUEvictionPolicy
+     * @throws IllegalArgumentException if evictionPolicy is null
+     */
+    public void setEvictionPolicy(EvictionPolicy<URI> evictionPolicy) {
+        if (evictionPolicy == null) {
+            throw new IllegalArgumentException();
+        }
+        List<Document> inMemory = new ArrayList<>();
+        for (URI uri : this.residentBytes.keySet()) {
+            inMemory.add(this.store.get(uri));
+        }
+        inMemory.sort((d1, d2) -> Long.compare(d1.getLastUseTime(), d2.getLastUseTime()));
+        for (Document doc : inMemory) {
+            evictionPolicy.add(doc.getKey(), doc.getLastUseTime(), this.residentBytes.get(doc.getKey()));
+        }
+        this.evictionPolicy = evictionPolicy;
+    }
+
+    // Adds a recovered document the way put does, without an undo command or a log record. A document from a
+    // checkpoint is already in the indexes, and is kept even if it is over the byte limit since they refer to it
+    private void restore(Document doc, boolean indexed) {
+        URI uri = doc.getKey();
+        if (!indexed && this.getDocumentByteAmount(doc) > this.maxDocumentBytes) {
+            return;
+        }
+        this.totalDocumentBytes += this.getDocumentByteAmount(doc);
+        this.totalDocCount += 1;
+        this.uriSet.add(uri);
+        this.store.put(uri, doc);
+        if (!indexed) {
+            addWordsToTrie(uri);
+            addMetadataToIndex(uri);
+        }
+        handleOldDoc(uri, doc, null, false);
+        this.makeRoom();
+    }
+
+    private boolean isStored(URI uri) {
+        return this.residentBytes.containsKey(uri) || this.uriOnDiskSet.contains(uri);
+    }
+
+    // delete and deleteAll can't throw IOException, so a delete the log couldn't record fails unchecked
+    private void logDelete(URI uri) {
+        if (this.writeAheadLog == null) {
+            return;
+        }
+        try {
+            this.writeAheadLog.logDelete(uri);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Consumer<URI> logged(Consumer<URI> undo) {
+        return undo.andThen(this::logUndone);
+    }
+
+    // An undo can put back a whole document with its metadata, so the state it leaves is logged instead of the steps
+    private void logUndone(URI uri) {
+        if (this.writeAheadLog == null) {
+            return;
+        }
+        // peek reads a document on disk without bringing it back into memory
+        Document doc = this.store.peek(uri);
+        try {
+            if (doc == null) {
+                this.writeAheadLog.logDelete(uri);
+            } else {
+                this.writeAheadLog.logDocument(doc);
             }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
     private Document storageOverflowDelete() {
-        MinHeapNode node = this.minHeap.remove();
-        Document doc = node.getDocument();
-        URI url = doc.getKey();
+        URI url = this.evictionPolicy.evict();
+        int bytes = this.residentBytes.remove(url);
+        Document doc = this.store.get(url);
         try {
             this.store.moveToDisk(url);
             this.uriOnDiskSet.add(url);
         } catch (IOException e) {
-            e.printStackTrace(System.out);
+            throw new UncheckedIOException(e);
         }
         this.store.put(url, null);
-        this.totalDocumentBytes -= getDocumentByteAmount(doc);
+        this.totalDocumentBytes -= bytes;
         this.totalDocCount -= 1;
         return doc;
     }
@@ -581,55 +1086,35 @@ public class DocumentStoreImpl implements DocumentStore {
         return doc;
     }
 
-    private Set<URI> getUriFromDocuments(Set<Document> documents) {
+    private Set<URI> getUriFromPostings(PostingList postings) {
         Set<URI> uris = new HashSet<>();
-        if (documents.isEmpty()) {
-            return uris;
-        }
-        for (Document doc : documents) {
-            uris.add(doc.getKey());
+        for (int i = 0; i < postings.size(); i++) {
+            uris.add(this.documentIds.getURI(postings.getId(i)));
         }
         return uris;
     }
 
-    private int prefixWordCount(URI uri, String prefix) {
-        int count = 0;
-        for (String word : this.store.get(uri).getWords()) {
-            if (word.startsWith(prefix)) {
-                count++;
-            }
-        }
-        return count;
-    }
-
     private void removeWordsFromTrie(URI uri) {
-        for (String word : this.store.get(uri).getWords()) {
-            this.documentTrie.delete(word, uri);
-        }
+        this.wordIndex.remove(this.documentIds.getId(uri), this.store.get(uri).getWords());
     }
 
-    private void removeMetadataFromTrie(URI uri) {
-        Document doc = this.store.get(uri);
-        for (String word : doc.getMetadata().keySet()) {
-            this.metaDataTrie.delete(word, new TrieNode(uri, doc.getMetadataValue(word)));
-        }
+    private void removeMetadataFromIndex(URI uri) {
+        this.metadataIndex.remove(this.documentIds.getId(uri), this.store.get(uri).getMetadata());
     }
 
     private void addWordsToTrie(URI uri) {
-        for (String word : this.store.get(uri).getWords()) {
-            this.documentTrie.put(word, uri);
+        Document doc = this.store.get(uri);
+        if (doc.getWordMap() != null) {
+            this.wordIndex.add(this.documentIds.getOrAssign(uri), doc.getWordMap());
         }
     }
 
-    private void addMetadataToTrie(URI uri) {
-        Document doc = this.store.get(uri);
-        for (String key : doc.getMetadata().keySet()) {
-            this.metaDataTrie.put(key, new TrieNode(uri, doc.getMetadataValue(key)));
-        }
+    private void addMetadataToIndex(URI uri) {
+        this.metadataIndex.add(this.documentIds.getOrAssign(uri), this.store.get(uri).getMetadata());
     }
 
     private void addGenericCommand(URI uri, Consumer<URI> undo) {
-        GenericCommand<URI> command = new GenericCommand<URI>(uri, undo);
+        GenericCommand<URI> command = new GenericCommand<URI>(uri, this.logged(undo));
         commandStack.push(command);
     }
 
@@ -637,6 +1122,9 @@ public class DocumentStoreImpl implements DocumentStore {
         if (uriSet.size() == 0) {
             return uriSet;
         }
+        for (URI uri : uriSet) {
+            this.logDelete(uri);
+        }
         if (uriSet.size() == 1) {
             for (URI uri : uriSet) {
                 GenericCommand<URI> command = deleteDocAndGetCommand(uri);
@@ -655,7 +1143,7 @@ public class DocumentStoreImpl implements DocumentStore {
 
     private GenericCommand<URI> deleteDocAndGetCommand(URI uri) {
         removeWordsFromTrie(uri);
-        removeMetadataFromTrie(uri);
+        removeMetadataFromIndex(uri);
         this.uriSet.remove(uri);
         this.deleteURIFromHeap(uri);
         Document oldDoc = this.store.put(uri, null);
@@ -666,48 +1154,59 @@ public class DocumentStoreImpl implements DocumentStore {
             this.totalDocumentBytes -= this.getDocumentByteAmount(oldDoc);
             this.totalDocCount -= 1;
         }
-        GenericCommand<URI> command = commandsetDeleteUndo(uri, oldDoc, onDisk);
-        return command;
+        return commandsetDeleteUndo(uri, oldDoc, onDisk);
     }
 
     private GenericCommand<URI> commandsetDeleteUndo(URI uri, Document oldDoc, boolean onDisk) {
-        GenericCommand<URI> command = new GenericCommand<URI>(uri, (ignoredDoc) -> {
+        GenericCommand<URI> command = new GenericCommand<URI>(uri, this.logged((ignoredDoc) -> {
             if (getDocumentByteAmount(oldDoc) > this.maxDocumentBytes) {
                 return;
             }
             this.store.put(uri, oldDoc);
             addWordsToTrie(uri);
-            addMetadataToTrie(uri);
+            addMetadataToIndex(uri);
             if (onDisk) {
                 try {
                     this.store.moveToDisk(uri);
                     this.uriOnDiskSet.add(uri);
                 } catch (IOException e) {
-                    e.printStackTrace(System.out);
+                    throw new UncheckedIOException(e);
                 }
             } else {
                 this.totalDocumentBytes += this.getDocumentByteAmount(oldDoc);
                 this.totalDocCount += 1;
-                while (this.isOverStorageLimit()) {
-                    this.storageOverflowDelete();
-                }
-                this.minHeap.insert(new MinHeapNode(uri));
-                this.setNanoTimeAndReheapify(oldDoc);
+                this.makeRoom();
+                this.addToEvictionPolicy(oldDoc);
             }
-        });
+        }));
         return command;
     }
 
     private void setNanoTimeAndReheapify(Document doc) {
         doc.setLastUseTime(System.nanoTime());
-        this.minHeap.reHeapify(new MinHeapNode(doc.getKey()));
+        this.touchInEvictionPolicy(doc);
     }
 
     private void setNanoTimeAndReheapify(List<Document> documents) {
         long time = System.nanoTime();
         for (Document doc : documents) {
             doc.setLastUseTime(time);
-            this.minHeap.reHeapify(new MinHeapNode(doc.getKey()));
+            this.touchInEvictionPolicy(doc);
+        }
+    }
+
+    // Hands a document which was just brought into memory to the eviction policy as the most recently used
+    private void addToEvictionPolicy(Document doc) {
+        doc.setLastUseTime(System.nanoTime());
+        int bytes = this.getDocumentByteAmount(doc);
+        this.residentBytes.put(doc.getKey(), bytes);
+        this.evictionPolicy.add(doc.getKey(), doc.getLastUseTime(), bytes);
+    }
+
+    private void touchInEvictionPolicy(Document doc) {
+        // Bringing a document back from disk can send it straight back, as W-TinyLFU and GDSF may pick it to evict
+        if (this.residentBytes.containsKey(doc.getKey())) {
+            this.evictionPolicy.touch(doc.getKey(), doc.getLastUseTime());
         }
     }
 
@@ -715,6 +1214,10 @@ public class DocumentStoreImpl implements DocumentStore {
         if (doc == null) {
             return 0;
         }
+        if (doc instanceof DocumentImpl) {
+            DocumentImpl impl = (DocumentImpl) doc;
+            return this.byteAccounting == ByteAccounting.FOOTPRINT ? impl.getMemoryFootprint() : impl.getContentBytes();
+        }
         String documentText = doc.getDocumentTxt();
         int documentBytes = 0;
         if (documentText != null) {
@@ -725,6 +1228,37 @@ public class DocumentStoreImpl implements DocumentStore {
         return documentBytes;
     }
 
+    void relieveMemoryPressure() {
+        if (this.memoryPressureMonitor == null || !this.memoryPressureMonitor.takePressure()) {
+            return;
+        }
+        int batch = Math.max(1, this.evictionPolicy.size() / 4);
+        for (int i = 0; i < batch && this.evictionPolicy.size() > 0; i++) {
+            this.storageOverflowDelete();
+        }
+    }
+
+    // Evicts down to the low watermark if over a limit. Returns the last document moved to disk, if any
+    private Document makeRoom() {
+        Document docMovedToDisk = null;
+        while (this.isOverStorageLimit()) {
+            docMovedToDisk = this.storageOverflowDelete();
+        }
+        if (docMovedToDisk == null) {
+            return null;
+        }
+        // Never empty memory for the watermark, the document left may be the one just put
+        while (this.isOverLowWatermark() && this.evictionPolicy.size() > 1) {
+            docMovedToDisk = this.storageOverflowDelete();
+        }
+        return docMovedToDisk;
+    }
+
+    private boolean isOverLowWatermark() {
+        return this.totalDocumentBytes > (long) (this.maxDocumentBytes * this.lowWatermark)
+                || this.totalDocCount > (long) (this.maxDocumentCount * this.lowWatermark);
+    }
+
     private boolean isOverStorageLimit() {
         boolean isByteOverflow = this.totalDocumentBytes > this.maxDocumentBytes;
         boolean isCountOverflow = this.totalDocCount > this.maxDocumentCount;
@@ -734,15 +1268,26 @@ public class DocumentStoreImpl implements DocumentStore {
         return false;
     }
 
-    private void deleteURIFromHeap(URI url) {
-        if (this.uriOnDiskSet.contains(url)) {
+    // Measures a document in memory again after a change, like new metadata, which can change its footprint
+    private void resizeResident(Document doc) {
+        URI uri = doc.getKey();
+        Integer oldBytes = this.residentBytes.get(uri);
+        if (oldBytes == null) {
             return;
         }
-        MinHeapNode node = this.minHeap.peek();
-        long time = node.getDocument().getLastUseTime();
-        this.store.get(url).setLastUseTime(time - 1000);
-        this.minHeap.reHeapify(new MinHeapNode(url));
-        this.minHeap.remove();
+        int bytes = this.getDocumentByteAmount(doc);
+        if (bytes != oldBytes) {
+            this.residentBytes.put(uri, bytes);
+            this.totalDocumentBytes += bytes - oldBytes;
+            this.evictionPolicy.resize(uri, bytes);
+        }
+    }
+
+    private void deleteURIFromHeap(URI url) {
+        // Documents on disk aren't tracked by the eviction policy
+        if (this.residentBytes.remove(url) != null) {
+            this.evictionPolicy.remove(url);
+        }
     }
 
     private Document checkAndAddDocumentBackToStorage(Document doc) {
@@ -752,86 +1297,31 @@ public class DocumentStoreImpl implements DocumentStore {
             // getDoc is used to make sure it's deserialized if being added back from disk
             this.getDoc(url);
             this.uriOnDiskSet.remove(url);
+            this.searchedOnDisk.remove(url);
             this.totalDocCount += 1;
             this.totalDocumentBytes += getDocumentByteAmount(doc);
-            this.minHeap.insert(new MinHeapNode(url));
-            setNanoTimeAndReheapify(doc);
-            while (this.isOverStorageLimit()) {
-                pushedDoc = this.storageOverflowDelete();
-            }
+            this.addToEvictionPolicy(doc);
+            pushedDoc = this.makeRoom();
         }
         return pushedDoc;
     }
 
-    private class MinHeapNode implements Comparable<MinHeapNode> {
+    // Candidate in a top-k selection. Compares "worse" hits as smaller so the MinHeap root is the next one to drop
+    private class RankedHit implements Comparable<RankedHit> {
+        int frequency;
         URI uri;
 
-        private MinHeapNode(URI uri) {
+        private RankedHit(int frequency, URI uri) {
+            this.frequency = frequency;
             this.uri = uri;
         }
 
-        private Document getDocument() {
-            return store.get(uri);
-        }
-
-        @Override
-        public int compareTo(MinHeapNode node) {
-            return this.getDocument().compareTo(node.getDocument());
-        }
-
         @Override
-        public boolean equals(Object obj) {
-            if (this == obj) {
-                return true;
-            }
-            if (obj == null || obj.getClass() != this.getClass()) {
-                return false;
-            }
-            MinHeapNode compNode = (MinHeapNode) obj;
-            if (this.uri.equals(compNode.uri)) {
-                return true;
+        public int compareTo(RankedHit hit) {
+            if (this.frequency != hit.frequency) {
+                return Integer.compare(this.frequency, hit.frequency);
             }
-            return false;
-        }
-    }
-
-    private class TrieNode implements Comparable<TrieNode> {
-        URI uri;
-        String value;
-
-        private TrieNode(URI uri, String value) {
-            this.uri = uri;
-            this.value = value;
-        }
-
-        private URI getURI() {
-            return this.uri;
-        }
-
-        private String getValue() {
-            return this.value;
-        }
-
-        @Override
-        public int compareTo(TrieNode node) {
-            return this.getURI().compareTo(node.getURI());
-        }
-
-        @Override
-        public boolean equals(Object obj) {
-            if (this == obj) {
-                return true;
-            }
-            if (obj == null || obj.getClass() != this.getClass()) {
-                return false;
-            }
-            TrieNode compNode = (TrieNode) obj;
-            return uri.equals(compNode.uri);
-        }
-
-        @Override
-        public int hashCode() {
-            return uri.hashCode();
+            return hit.uri.compareTo(this.uri);
         }
     }
 }
@@ -0,0 +1,35 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Forces files and directories to the disk, for the persistence managers and checkpoints which have to know what is
+ * there before the write ahead log is emptied.
+ */
+final class FileSync {
+    private FileSync() {
+    }
+
+    /**
+     * force the contents of the file to the disk
+     */
+    static void force(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Makes files created in or renamed into the directory since the last force part of it on the disk. Not every
+     * platform can open a directory, and there the file system has to be trusted to keep them
+     */
+    static void forceDirectory(File directory) {
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+        }
+    }
+}
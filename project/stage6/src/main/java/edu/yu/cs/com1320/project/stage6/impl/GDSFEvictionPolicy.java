@@ -0,0 +1,112 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.IntToLongFunction;
+
+import edu.yu.cs.com1320.project.impl.MinHeapImpl;
+import edu.yu.cs.com1320.project.stage6.EvictionPolicy;
+
+/**
+ * GreedyDual-Size-Frequency. Every key has the priority L + frequency * cost / size, where cost is the expected time to
+ * read the document back from disk and L is the priority of the last evicted key. The lowest priority is evicted,
+ * which favours moving out large, rarely used documents that are cheap to read back: those free the most memory per
+ * expected future disk read. Raising L on every eviction ages out keys that were popular long ago.
+ */
+public class GDSFEvictionPolicy<Key> implements EvictionPolicy<Key> {
+    private IntToLongFunction cost;
+    private MinHeapImpl<Node<Key>> minHeap;
+    private Map<Key, Node<Key>> nodes;
+    private double inflation;
+
+    /**
+     * every document costs the same to read back, so only frequency and size matter
+     */
+    public GDSFEvictionPolicy() {
+        this(bytes -> 1);
+    }
+
+    /**
+     * @param cost expected cost of reading back a document of the given size in the store's bytes, e.g.
+     * DocumentPersistenceManager::estimateDeserializationNanos of the manager the store uses
+     */
+    public GDSFEvictionPolicy(IntToLongFunction cost) {
+        if (cost == null) {
+            throw new IllegalArgumentException();
+        }
+        this.cost = cost;
+        this.minHeap = new MinHeapImpl<>();
+        this.nodes = new HashMap<>();
+        this.inflation = 0;
+    }
+
+    public void add(Key key, long lastUseTime, int bytes) {
+        Node<Key> node = new Node<>(key, Math.max(1, bytes));
+        node.priority = this.priority(node);
+        this.nodes.put(key, node);
+        this.minHeap.insert(node);
+    }
+
+    public void touch(Key key, long lastUseTime) {
+        Node<Key> node = this.getNode(key);
+        node.frequency++;
+        node.priority = this.priority(node);
+        this.minHeap.reHeapify(node);
+    }
+
+    public void resize(Key key, int bytes) {
+        Node<Key> node = this.getNode(key);
+        node.bytes = Math.max(1, bytes);
+        node.priority = this.priority(node);
+        this.minHeap.reHeapify(node);
+    }
+
+    public void remove(Key key) {
+        Node<Key> node = this.nodes.remove(key);
+        if (node != null) {
+            this.minHeap.remove(node);
+        }
+    }
+
+    public Key evict() {
+        Node<Key> node = this.minHeap.remove();
+        this.nodes.remove(node.key);
+        this.inflation = node.priority;
+        return node.key;
+    }
+
+    public int size() {
+        return this.nodes.size();
+    }
+
+    private Node<Key> getNode(Key key) {
+        Node<Key> node = this.nodes.get(key);
+        if (node == null) {
+            throw new NoSuchElementException();
+        }
+        return node;
+    }
+
+    private double priority(Node<Key> node) {
+        return this.inflation + (double) node.frequency * this.cost.applyAsLong(node.bytes) / node.bytes;
+    }
+
+    private static class Node<Key> implements Comparable<Node<Key>> {
+        private Key key;
+        private int bytes;
+        private int frequency;
+        private double priority;
+
+        private Node(Key key, int bytes) {
+            this.key = key;
+            this.bytes = bytes;
+            this.frequency = 1;
+        }
+
+        @Override
+        public int compareTo(Node<Key> node) {
+            return Double.compare(this.priority, node.priority);
+        }
+    }
+}
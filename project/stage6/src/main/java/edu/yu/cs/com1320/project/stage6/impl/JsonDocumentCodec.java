@@ -0,0 +1,27 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import com.google.gson.JsonParseException;
+
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentCodec;
+
+/**
+ * The JSON format of DocumentJson, in UTF-8. The same format DocumentPersistenceManager writes its files in.
+ */
+public class JsonDocumentCodec implements DocumentCodec {
+
+    public byte[] encode(Document doc) {
+        return DocumentJson.toJson(doc).getBytes(StandardCharsets.UTF_8);
+    }
+
+    public Document decode(byte[] bytes) throws IOException {
+        try {
+            return DocumentJson.fromJson(new String(bytes, StandardCharsets.UTF_8));
+        } catch (JsonParseException | IllegalStateException e) {
+            throw new IOException("Not a JSON document", e);
+        }
+    }
+}
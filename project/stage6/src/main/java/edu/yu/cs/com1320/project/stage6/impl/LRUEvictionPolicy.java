@@ -0,0 +1,70 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import edu.yu.cs.com1320.project.impl.MinHeapImpl;
+import edu.yu.cs.com1320.project.stage6.EvictionPolicy;
+
+/**
+ * Evicts the key with the oldest last use time, kept in a MinHeap ordered by last use time.
+ * This is the store's default policy.
+ */
+public class LRUEvictionPolicy<Key> implements EvictionPolicy<Key> {
+    private MinHeapImpl<Node<Key>> minHeap;
+    private Map<Key, Node<Key>> nodes;
+
+    public LRUEvictionPolicy() {
+        this.minHeap = new MinHeapImpl<>();
+        this.nodes = new HashMap<>();
+    }
+
+    public void add(Key key, long lastUseTime, int bytes) {
+        Node<Key> node = new Node<>(key, lastUseTime);
+        this.nodes.put(key, node);
+        this.minHeap.insert(node);
+    }
+
+    public void touch(Key key, long lastUseTime) {
+        Node<Key> node = this.nodes.get(key);
+        if (node == null) {
+            throw new NoSuchElementException();
+        }
+        node.lastUseTime = lastUseTime;
+        this.minHeap.reHeapify(node);
+    }
+
+    public void remove(Key key) {
+        Node<Key> node = this.nodes.remove(key);
+        if (node != null) {
+            this.minHeap.remove(node);
+        }
+    }
+
+    public Key evict() {
+        Node<Key> node = this.minHeap.remove();
+        this.nodes.remove(node.key);
+        return node.key;
+    }
+
+    public int size() {
+        return this.nodes.size();
+    }
+
+    // Nodes are only ever looked up by identity, so they keep Object's equals and hashCode
+    private static class Node<Key> implements Comparable<Node<Key>> {
+        private Key key;
+        private long lastUseTime;
+
+        private Node(Key key, long lastUseTime) {
+            this.key = key;
+            this.lastUseTime = lastUseTime;
+        }
+
+        @Override
+        public int compareTo(Node<Key> node) {
+            return Long.compare(this.lastUseTime, node.lastUseTime);
+        }
+    }
+}
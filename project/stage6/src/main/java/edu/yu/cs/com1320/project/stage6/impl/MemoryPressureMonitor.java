@@ -0,0 +1,79 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+
+/**
+ * Watches the old generation of the JVM heap. A collection usage threshold is set at the given fraction of each old
+ * generation pool's maximum, and the JVM notifies this monitor after every garbage collection which leaves more than
+ * that in use. The notifications arrive on a JVM thread, so they only raise a flag, and the store checks the flag
+ * on its own thread. Once collections bring usage back under the threshold the notifications, and the spilling,
+ * stop by themselves. Closing the monitor puts back the thresholds the pools had before.
+ */
+public class MemoryPressureMonitor implements NotificationListener {
+    // Each pool the monitor set a threshold on, mapped to the threshold it had before
+    private Map<MemoryPoolMXBean, Long> pools;
+    private AtomicBoolean pressure;
+    private NotificationEmitter emitter;
+
+    /**
+     * @param fraction of the old generation's maximum size which counts as memory pressure
+     * @throws IllegalArgumentException if fraction isn't between 0 and 1
+     */
+    public MemoryPressureMonitor(double fraction) {
+        if (!(fraction > 0 && fraction < 1)) {
+            throw new IllegalArgumentException();
+        }
+        this.pools = new LinkedHashMap<>();
+        this.pressure = new AtomicBoolean(false);
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            long max = pool.getUsage().getMax();
+            // Young generation pools don't support usage thresholds, and are nearly empty after every collection
+            if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported()
+                    && pool.isCollectionUsageThresholdSupported() && max > 0) {
+                this.pools.put(pool, pool.getCollectionUsageThreshold());
+                pool.setCollectionUsageThreshold(Math.max(1, (long) (max * fraction)));
+            }
+        }
+        this.emitter = (NotificationEmitter) ManagementFactory.getMemoryMXBean();
+        this.emitter.addNotificationListener(this, null, null);
+    }
+
+    public void handleNotification(Notification notification, Object handback) {
+        if (MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+            this.pressure.set(true);
+        }
+    }
+
+    /**
+     * @return true if a collection has left the old generation over the threshold since the last call
+     */
+    public boolean takePressure() {
+        return this.pressure.getAndSet(false);
+    }
+
+    /**
+     * stop listening and put back the thresholds the pools had before this monitor set its own
+     */
+    public void close() {
+        try {
+            this.emitter.removeNotificationListener(this);
+        } catch (ListenerNotFoundException e) {
+            // Already closed, and the thresholds already put back
+            return;
+        }
+        for (Map.Entry<MemoryPoolMXBean, Long> entry : this.pools.entrySet()) {
+            entry.getKey().setCollectionUsageThreshold(entry.getValue());
+        }
+    }
+}
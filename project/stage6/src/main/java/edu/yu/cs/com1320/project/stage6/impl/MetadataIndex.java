@@ -0,0 +1,150 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Metadata index of the document store: key -> value -> sorted set of the ids of the documents with that value.
+ * The ids are kept in a PostingList whose frequencies are all 1.
+ */
+public class MetadataIndex {
+    private Map<String, Map<String, PostingList>> index;
+
+    public MetadataIndex() {
+        this.index = new HashMap<>();
+    }
+
+    /**
+     * index the document id under the key-value pair. Null values aren't indexed since no search can match them
+     */
+    public void add(int id, String key, String value) {
+        if (key == null || value == null) {
+            return;
+        }
+        Map<String, PostingList> values = this.index.get(key);
+        if (values == null) {
+            values = new HashMap<>();
+            this.index.put(key, values);
+        }
+        PostingList ids = values.get(value);
+        if (ids == null) {
+            ids = new PostingList();
+            values.put(value, ids);
+        }
+        ids.put(id, 1);
+    }
+
+    public void add(int id, Map<String, String> metadata) {
+        for (Map.Entry<String, String> entry : metadata.entrySet()) {
+            this.add(id, entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * remove the document id from the key-value pair, dropping the value and key once nothing is indexed under them
+     */
+    public void remove(int id, String key, String value) {
+        if (key == null || value == null) {
+            return;
+        }
+        Map<String, PostingList> values = this.index.get(key);
+        if (values == null) {
+            return;
+        }
+        PostingList ids = values.get(value);
+        if (ids != null && ids.remove(id) && ids.isEmpty()) {
+            values.remove(value);
+            if (values.isEmpty()) {
+                this.index.remove(key);
+            }
+        }
+    }
+
+    public void remove(int id, Map<String, String> metadata) {
+        for (Map.Entry<String, String> entry : metadata.entrySet()) {
+            this.remove(id, entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * remove the document ids from every key-value pair, dropping the values and keys nothing is indexed under anymore.
+     * Visits the whole index, for documents whose metadata isn't known
+     */
+    public void removeAll(Set<Integer> ids) {
+        Iterator<Map<String, PostingList>> keys = this.index.values().iterator();
+        while (keys.hasNext()) {
+            Map<String, PostingList> values = keys.next();
+            Iterator<PostingList> valueIds = values.values().iterator();
+            while (valueIds.hasNext()) {
+                PostingList postings = valueIds.next();
+                for (int id : ids) {
+                    postings.remove(id);
+                }
+                if (postings.isEmpty()) {
+                    valueIds.remove();
+                }
+            }
+            if (values.isEmpty()) {
+                keys.remove();
+            }
+        }
+    }
+
+    /**
+     * One hash lookup per key-value pair, then the id sets are intersected smallest first so every step costs at
+     * most the size of the smallest set. The result must be treated as read-only.
+     * @return the ids of the documents having ALL of the given key-value pairs. Empty if keysValues is null or empty
+     */
+    public PostingList search(Map<String, String> keysValues) {
+        if (keysValues == null || keysValues.isEmpty()) {
+            return new PostingList();
+        }
+        List<PostingList> sets = new ArrayList<>(keysValues.size());
+        for (Map.Entry<String, String> entry : keysValues.entrySet()) {
+            PostingList ids = this.get(entry.getKey(), entry.getValue());
+            if (ids == null) {
+                return new PostingList();
+            }
+            sets.add(ids);
+        }
+        sets.sort((a, b) -> Integer.compare(a.size(), b.size()));
+        PostingList result = sets.get(0);
+        for (int i = 1; i < sets.size() && !result.isEmpty(); i++) {
+            result = PostingList.intersect(result, sets.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * @return every key in the index, mapped to each of its values and the ids of the documents with that value. Must
+     * be treated as read-only
+     */
+    public Map<String, Map<String, PostingList>> getEntries() {
+        return Collections.unmodifiableMap(this.index);
+    }
+
+    /**
+     * index the key-value pair with the given ids as they are. The pair must not be in the index yet
+     */
+    public void putPostings(String key, String value, PostingList ids) {
+        Map<String, PostingList> values = this.index.get(key);
+        if (values == null) {
+            values = new HashMap<>();
+            this.index.put(key, values);
+        }
+        values.put(value, ids);
+    }
+
+    /**
+     * @return the ids of the documents with the value for the key, or null if there are none
+     */
+    public PostingList get(String key, String value) {
+        Map<String, PostingList> values = this.index.get(key);
+        return values == null || value == null ? null : values.get(value);
+    }
+}
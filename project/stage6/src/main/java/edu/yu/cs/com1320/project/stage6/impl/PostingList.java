@@ -0,0 +1,126 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import java.util.Arrays;
+
+/**
+ * Sorted list of (document id, term frequency) pairs kept in two parallel primitive arrays.
+ * Ids are handed out in increasing order, so adding a new document is normally an append.
+ */
+public class PostingList {
+    private int[] ids;
+    private int[] frequencies;
+    private int size;
+
+    public PostingList() {
+        this(1);
+    }
+
+    PostingList(int capacity) {
+        this.ids = new int[capacity];
+        this.frequencies = new int[capacity];
+        this.size = 0;
+    }
+
+    /**
+     * add the id with the given frequency, or replace its frequency if it is already present
+     */
+    public void put(int id, int frequency) {
+        if (this.size > 0 && this.ids[this.size - 1] < id) {
+            this.insertAt(this.size, id, frequency);
+            return;
+        }
+        int idx = Arrays.binarySearch(this.ids, 0, this.size, id);
+        if (idx >= 0) {
+            this.frequencies[idx] = frequency;
+        } else {
+            this.insertAt(-(idx + 1), id, frequency);
+        }
+    }
+
+    private void insertAt(int idx, int id, int frequency) {
+        if (this.size == this.ids.length) {
+            int capacity = Math.max(1, this.ids.length * 2);
+            this.ids = Arrays.copyOf(this.ids, capacity);
+            this.frequencies = Arrays.copyOf(this.frequencies, capacity);
+        }
+        System.arraycopy(this.ids, idx, this.ids, idx + 1, this.size - idx);
+        System.arraycopy(this.frequencies, idx, this.frequencies, idx + 1, this.size - idx);
+        this.ids[idx] = id;
+        this.frequencies[idx] = frequency;
+        this.size++;
+    }
+
+    /**
+     * @return true if the id was in the list
+     */
+    public boolean remove(int id) {
+        int idx = Arrays.binarySearch(this.ids, 0, this.size, id);
+        if (idx < 0) {
+            return false;
+        }
+        System.arraycopy(this.ids, idx + 1, this.ids, idx, this.size - idx - 1);
+        System.arraycopy(this.frequencies, idx + 1, this.frequencies, idx, this.size - idx - 1);
+        this.size--;
+        // Give back memory once the list has shrunk well below its capacity
+        if (this.size > 0 && this.size <= this.ids.length / 4) {
+            this.ids = Arrays.copyOf(this.ids, this.size * 2);
+            this.frequencies = Arrays.copyOf(this.frequencies, this.size * 2);
+        }
+        return true;
+    }
+
+    public boolean contains(int id) {
+        return Arrays.binarySearch(this.ids, 0, this.size, id) >= 0;
+    }
+
+    /**
+     * @return the frequency stored for the id, or 0 if the id isn't in the list
+     */
+    public int getFrequency(int id) {
+        int idx = Arrays.binarySearch(this.ids, 0, this.size, id);
+        return idx >= 0 ? this.frequencies[idx] : 0;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public int getId(int i) {
+        return this.ids[i];
+    }
+
+    public int getFrequencyAt(int i) {
+        return this.frequencies[i];
+    }
+
+    /**
+     * Intersection of the two lists, keeping the frequencies of the first. Walks the smaller list and binary searches
+     * the larger one from the last match onwards, so the cost is O(smaller * log(larger)).
+     */
+    public static PostingList intersect(PostingList a, PostingList b) {
+        PostingList small = a.size <= b.size ? a : b;
+        PostingList large = small == a ? b : a;
+        PostingList intersection = new PostingList(Math.max(1, small.size));
+        int from = 0;
+        for (int i = 0; i < small.size && from < large.size; i++) {
+            int idx = Arrays.binarySearch(large.ids, from, large.size, small.ids[i]);
+            if (idx >= 0) {
+                intersection.append(small.ids[i], a.getFrequency(small.ids[i]));
+                from = idx + 1;
+            } else {
+                from = -(idx + 1);
+            }
+        }
+        return intersection;
+    }
+
+    // Caller guarantees capacity and that id is greater than every id already in the list
+    void append(int id, int frequency) {
+        this.ids[this.size] = id;
+        this.frequencies[this.size++] = frequency;
+    }
+}
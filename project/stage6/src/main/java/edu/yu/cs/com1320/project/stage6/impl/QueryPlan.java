@@ -0,0 +1,90 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluation plan for a keyword (or prefix) search combined with metadata key-value pairs.
+ * The cardinality of every side is known exactly from its posting list, so the smallest one drives the evaluation and
+ * each of its ids is probed against the others. Only the ids which survive every probe are returned, and no document
+ * is loaded while planning or executing.
+ */
+public class QueryPlan {
+    private List<String> labels;
+    private List<PostingList> sources;
+    private PostingList keywordPostings;
+
+    private QueryPlan(PostingList keywordPostings) {
+        this.labels = new ArrayList<>();
+        this.sources = new ArrayList<>();
+        this.keywordPostings = keywordPostings;
+    }
+
+    /**
+     * @param keywordLabel describes the keyword side in explain()
+     * @param keywordPostings postings of the keyword or prefix, null if nothing matched
+     * @param keysValues metadata pairs every result must have. Nothing matches if null or empty
+     */
+    public static QueryPlan create(String keywordLabel, PostingList keywordPostings, MetadataIndex metadataIndex,
+            Map<String, String> keysValues) {
+        PostingList keyword = keywordPostings == null ? new PostingList() : keywordPostings;
+        QueryPlan plan = new QueryPlan(keyword);
+        plan.add(keywordLabel, keyword);
+        if (keysValues == null || keysValues.isEmpty()) {
+            plan.add("metadata (none)", new PostingList());
+        } else {
+            for (Map.Entry<String, String> entry : keysValues.entrySet()) {
+                PostingList ids = metadataIndex.get(entry.getKey(), entry.getValue());
+                plan.add("metadata " + entry.getKey() + "=" + entry.getValue(), ids == null ? new PostingList() : ids);
+            }
+        }
+        return plan;
+    }
+
+    // Keeps the sources ordered by cardinality, the keyword side first among equals
+    private void add(String label, PostingList ids) {
+        int idx = this.sources.size();
+        while (idx > 0 && this.sources.get(idx - 1).size() > ids.size()) {
+            idx--;
+        }
+        this.labels.add(idx, label);
+        this.sources.add(idx, ids);
+    }
+
+    /**
+     * @return the ids on every side, each with its frequency on the keyword side, in id order
+     */
+    public PostingList execute() {
+        PostingList driver = this.sources.get(0);
+        PostingList matches = new PostingList(Math.max(1, driver.size()));
+        for (int i = 0; i < driver.size(); i++) {
+            int id = driver.getId(i);
+            boolean matchesAll = true;
+            for (int j = 1; j < this.sources.size() && matchesAll; j++) {
+                matchesAll = this.sources.get(j).contains(id);
+            }
+            if (matchesAll) {
+                int frequency = driver == this.keywordPostings ? driver.getFrequencyAt(i) : this.keywordPostings.getFrequency(id);
+                matches.append(id, frequency);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * @return one line per side in evaluation order with its estimated cardinality, e.g.
+     * "drive metadata author=me (2)" followed by "probe keyword apple (40)"
+     */
+    public String explain() {
+        StringBuilder explanation = new StringBuilder();
+        for (int i = 0; i < this.sources.size(); i++) {
+            if (i > 0) {
+                explanation.append('\n');
+            }
+            explanation.append(i == 0 ? "drive " : "probe ").append(this.labels.get(i)).append(" (")
+                    .append(this.sources.get(i).size()).append(')');
+        }
+        return explanation.toString();
+    }
+}
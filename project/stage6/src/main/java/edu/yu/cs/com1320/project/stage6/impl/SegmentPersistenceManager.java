@@ -0,0 +1,467 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentCodec;
+import edu.yu.cs.com1320.project.stage6.PersistenceManager;
+
+/**
+ * Stores documents as records appended to a few large segment files instead of one JSON file per document, so
+ * moving a document to disk is one append and no directories are created or removed. An in memory index maps every
+ * URI to the segment, offset and length of its latest record. Deleting or reading a document back appends a small
+ * tombstone record, so the index can be rebuilt by replaying the segments in order when the manager is created.
+ * Once more than the garbage ratio of a full segment is dead records, a background thread copies its live records to
+ * the end of the newest segment, forces them to the disk and deletes the file. A tombstone is only copied while an
+ * older segment still holds a record for its key.
+ *
+ * A full segment is never written again, so it is memory mapped when the next one is started. Reading a document
+ * back from it is a lookup in the index and a copy out of the mapping, with no file opened or read call made, and
+ * the OS page cache keeps recently written segments in memory. Only the segment being appended to is read through
+ * its channel.
+ *
+ * Record layout: CRC32 of the rest of the record, key length, value length (-1 for a tombstone), key (the URI in
+ * UTF-8), value (the document encoded by the codec, JSON by default). Records in the other built in format, written
+ * before the codec was changed, are still read.
+ */
+public class SegmentPersistenceManager implements PersistenceManager<URI, Document> {
+    private static final int HEADER_BYTES = 12;
+    private static final int TOMBSTONE = -1;
+    private static final long DEFAULT_SEGMENT_BYTES = 64L << 20;
+    private static final double DEFAULT_GARBAGE_RATIO = 0.5;
+
+    private File directory;
+    private long segmentBytes;
+    private double garbageRatio;
+    private DocumentCodec codec;
+    private TreeMap<Integer, Segment> segments;
+    private Segment active;
+    private Map<URI, Location> index;
+    private ExecutorService compactor;
+    private boolean compactionScheduled;
+    // Held while a segment is compacted, so the background thread and compact() never work on one at the same time
+    private Object compactionLock;
+    // A compaction the background thread couldn't finish. The segment it was copying may be half copied, so every
+    // later write, compaction and close fails
+    private volatile IOException compactionFailure;
+
+    public SegmentPersistenceManager(File directory) throws IOException {
+        this(directory, new JsonDocumentCodec());
+    }
+
+    public SegmentPersistenceManager(File directory, DocumentCodec codec) throws IOException {
+        this(directory, DEFAULT_SEGMENT_BYTES, DEFAULT_GARBAGE_RATIO, codec);
+    }
+
+    public SegmentPersistenceManager(File directory, long segmentBytes, double garbageRatio) throws IOException {
+        this(directory, segmentBytes, garbageRatio, new JsonDocumentCodec());
+    }
+
+    /**
+     * @param directory where the segment files are kept, created if needed. null uses a "segments" directory in
+     * user.dir. Segments already in it are read to rebuild the index
+     * @param segmentBytes size after which a new segment is started
+     * @param garbageRatio fraction of a full segment which has to be dead records before it is compacted
+     * @param codec how documents are encoded in their records
+     * @throws IllegalArgumentException if segmentBytes isn't positive, garbageRatio isn't between 0 and 1 or codec is
+     * null
+     */
+    public SegmentPersistenceManager(File directory, long segmentBytes, double garbageRatio, DocumentCodec codec)
+            throws IOException {
+        if (segmentBytes < 1 || !(garbageRatio > 0 && garbageRatio < 1) || codec == null) {
+            throw new IllegalArgumentException();
+        }
+        if (directory == null) {
+            directory = new File(System.getProperty("user.dir"), "segments");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create " + directory);
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.garbageRatio = garbageRatio;
+        this.codec = codec;
+        this.segments = new TreeMap<>();
+        this.index = new HashMap<>();
+        this.compactionLock = new Object();
+        this.recover();
+        this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "segment-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        synchronized (this) {
+            for (Segment segment : this.segments.values()) {
+                this.checkGarbage(segment);
+            }
+        }
+    }
+
+    public void serialize(URI key, Document val) throws IOException {
+        if (key == null || val == null) {
+            return;
+        }
+        this.checkCompaction();
+        byte[] keyBytes = key.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] value = this.codec.encode(val);
+        synchronized (this) {
+            this.setLocation(key, this.append(keyBytes, value));
+        }
+    }
+
+    public synchronized Document deserialize(URI key) throws IOException {
+        Document doc = this.peek(key);
+        if (doc != null) {
+            this.delete(key);
+        }
+        return doc;
+    }
+
+    public synchronized Document peek(URI key) throws IOException {
+        if (key == null) {
+            return null;
+        }
+        Location location = this.index.get(key);
+        if (location == null) {
+            return null;
+        }
+        Record record = this.read(this.segments.get(location.segment), location.offset);
+        return this.decode(record.value);
+    }
+
+    private Document decode(byte[] value) throws IOException {
+        boolean binary = value.length > 0 && value[0] == BinaryDocumentCodec.MAGIC;
+        if (binary && !(this.codec instanceof BinaryDocumentCodec)) {
+            return new BinaryDocumentCodec().decode(value);
+        }
+        if (!binary && value.length > 0 && value[0] == '{' && !(this.codec instanceof JsonDocumentCodec)) {
+            return new JsonDocumentCodec().decode(value);
+        }
+        return this.codec.decode(value);
+    }
+
+    public synchronized boolean delete(URI key) throws IOException {
+        if (key == null || !this.index.containsKey(key)) {
+            return false;
+        }
+        this.append(key.toString().getBytes(StandardCharsets.UTF_8), null);
+        this.setLocation(key, null);
+        return true;
+    }
+
+    /**
+     * compact every full segment which is over the garbage ratio now, instead of waiting for the background thread
+     */
+    public void compact() throws IOException {
+        this.checkCompaction();
+        synchronized (this.compactionLock) {
+            List<Segment> candidates = new ArrayList<>();
+            synchronized (this) {
+                for (Segment segment : this.segments.values()) {
+                    if (segment != this.active && segment.isGarbage(this.garbageRatio)) {
+                        candidates.add(segment);
+                    }
+                }
+            }
+            // Oldest first, so a segment's tombstones can be dropped once no older segment is left
+            for (Segment segment : candidates) {
+                this.compact(segment);
+            }
+        }
+    }
+
+    /**
+     * @return number of segment files, including the one being appended to
+     */
+    public synchronized int getSegmentCount() {
+        return this.segments.size();
+    }
+
+    /**
+     * force every segment, and the directory holding them, to the disk
+     */
+    public synchronized void force() throws IOException {
+        for (Segment segment : this.segments.values()) {
+            segment.channel.force(false);
+        }
+        FileSync.forceDirectory(this.directory);
+    }
+
+    /**
+     * stop the background compaction and close the segment files
+     * @throws IOException if the background compaction failed
+     */
+    public void close() throws IOException {
+        this.compactor.shutdown();
+        try {
+            this.compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            for (Segment segment : this.segments.values()) {
+                segment.channel.close();
+            }
+        }
+        this.checkCompaction();
+    }
+
+    private void checkCompaction() throws IOException {
+        IOException failure = this.compactionFailure;
+        if (failure != null) {
+            throw new IOException("Background compaction failed", failure);
+        }
+    }
+
+    // Sealed segments are never written to again, so their records are read without holding the lock. Each record
+    // is only copied if the index still points at it once the lock is held
+    private void compact(Segment segment) throws IOException {
+        long offset = 0;
+        while (offset < segment.size) {
+            Record record = this.read(segment, offset);
+            synchronized (this) {
+                URI key = URI.create(new String(record.key, StandardCharsets.UTF_8));
+                Location location = this.index.get(key);
+                if (record.value != null) {
+                    if (location != null && location.segment == segment.id && location.offset == offset) {
+                        this.setLocation(key, this.append(record.key, record.value));
+                    }
+                } else if (location == null && this.isInOlderSegment(key, segment.id)) {
+                    // Without it the older record would bring the document back when the segments are replayed
+                    this.append(record.key, null);
+                }
+            }
+            offset += record.length;
+        }
+        synchronized (this) {
+            // The copies have to be on the disk before the only other copy is gone
+            for (Segment newer : this.segments.tailMap(segment.id, false).values()) {
+                newer.channel.force(false);
+            }
+            FileSync.forceDirectory(this.directory);
+            this.segments.remove(segment.id);
+            segment.channel.close();
+            segment.file.delete();
+        }
+    }
+
+    private boolean isInOlderSegment(URI key, int id) {
+        for (Segment older : this.segments.headMap(id, false).values()) {
+            if (older.keys.contains(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Location append(byte[] key, byte[] value) throws IOException {
+        int valueLength = value == null ? TOMBSTONE : value.length;
+        int length = HEADER_BYTES + key.length + Math.max(0, valueLength);
+        if (this.active == null || (this.active.size > 0 && this.active.size + length > this.segmentBytes)) {
+            int id = this.active == null ? 1 : this.active.id + 1;
+            if (this.active != null) {
+                this.active.seal();
+            }
+            this.active = new Segment(id, new File(this.directory, String.format("segment-%06d.log", id)));
+            this.segments.put(id, this.active);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.position(4);
+        buffer.putInt(key.length).putInt(valueLength).put(key);
+        if (value != null) {
+            buffer.put(value);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 4, length - 4);
+        buffer.putInt(0, (int) crc.getValue());
+        buffer.flip();
+        long offset = this.active.size;
+        while (buffer.hasRemaining()) {
+            this.active.channel.write(buffer, offset + buffer.position());
+        }
+        this.active.size += length;
+        return new Location(this.active.id, offset, length);
+    }
+
+    private Record read(Segment segment, long offset) throws IOException {
+        byte[] header = new byte[HEADER_BYTES];
+        this.readFully(segment, header, offset);
+        ByteBuffer fields = ByteBuffer.wrap(header);
+        int crc = fields.getInt(0);
+        int keyLength = fields.getInt(4);
+        int valueLength = fields.getInt(8);
+        if (keyLength < 0 || valueLength < TOMBSTONE
+                || offset + HEADER_BYTES + keyLength + Math.max(0, valueLength) > segment.size) {
+            throw new IOException("Corrupt record at " + offset + " in " + segment.file);
+        }
+        byte[] key = new byte[keyLength];
+        this.readFully(segment, key, offset + HEADER_BYTES);
+        byte[] value = null;
+        CRC32 check = new CRC32();
+        check.update(header, 4, HEADER_BYTES - 4);
+        check.update(key);
+        if (valueLength != TOMBSTONE) {
+            value = new byte[valueLength];
+            this.readFully(segment, value, offset + HEADER_BYTES + keyLength);
+            check.update(value);
+        }
+        if ((int) check.getValue() != crc) {
+            throw new IOException("Corrupt record at " + offset + " in " + segment.file);
+        }
+        return new Record(key, value, HEADER_BYTES + keyLength + Math.max(0, valueLength));
+    }
+
+    private void readFully(Segment segment, byte[] bytes, long offset) throws IOException {
+        if (segment.mapped != null) {
+            // Absolute gets don't move the buffer's position, so concurrent readers can share the mapping
+            segment.mapped.get((int) offset, bytes);
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            if (segment.channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of " + segment.file);
+            }
+        }
+    }
+
+    // Points the key at its new record, or removes it for null, and counts its old record as garbage
+    private void setLocation(URI key, Location location) {
+        Location old = location == null ? this.index.remove(key) : this.index.put(key, location);
+        if (location != null) {
+            Segment segment = this.segments.get(location.segment);
+            segment.liveBytes += location.length;
+            segment.keys.add(key);
+        }
+        if (old != null) {
+            Segment segment = this.segments.get(old.segment);
+            segment.liveBytes -= old.length;
+            this.checkGarbage(segment);
+        }
+    }
+
+    private void checkGarbage(Segment segment) {
+        if (this.compactor == null || this.compactor.isShutdown() || this.compactionScheduled || segment == this.active
+                || !segment.isGarbage(this.garbageRatio)) {
+            return;
+        }
+        this.compactionScheduled = true;
+        this.compactor.execute(() -> {
+            synchronized (this) {
+                this.compactionScheduled = false;
+            }
+            try {
+                this.compact();
+            } catch (IOException e) {
+                if (this.compactionFailure == null) {
+                    this.compactionFailure = e;
+                }
+            }
+        });
+    }
+
+    // Replays every segment in order. A record cut short by a crash ends its segment, which is truncated there
+    private void recover() throws IOException {
+        File[] files = this.directory.listFiles((dir, name) -> name.matches("segment-\\d{6}\\.log"));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            int id = Integer.parseInt(file.getName().substring(8, 14));
+            this.segments.put(id, new Segment(id, file));
+        }
+        for (Segment segment : this.segments.values()) {
+            if (this.active != null) {
+                this.active.seal();
+            }
+            this.active = segment;
+            long offset = 0;
+            while (offset < segment.size) {
+                Record record;
+                try {
+                    record = this.read(segment, offset);
+                } catch (IOException e) {
+                    segment.channel.truncate(offset);
+                    segment.size = offset;
+                    break;
+                }
+                URI key = URI.create(new String(record.key, StandardCharsets.UTF_8));
+                this.setLocation(key, record.value == null ? null : new Location(segment.id, offset, record.length));
+                offset += record.length;
+            }
+        }
+    }
+
+    private static class Segment {
+        private int id;
+        private File file;
+        private FileChannel channel;
+        private MappedByteBuffer mapped;
+        private long size;
+        private long liveBytes;
+        // Every key with a document record in the segment, live or not
+        private Set<URI> keys;
+
+        private Segment(int id, File file) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.keys = new HashSet<>();
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.size = this.channel.size();
+        }
+
+        // Maps the segment once it is full. Segments too big for one mapping keep being read through the channel
+        private void seal() throws IOException {
+            if (this.size <= Integer.MAX_VALUE) {
+                this.mapped = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, this.size);
+            }
+        }
+
+        private boolean isGarbage(double garbageRatio) {
+            return this.size > 0 && this.size - this.liveBytes > this.size * garbageRatio;
+        }
+    }
+
+    private static class Location {
+        private int segment;
+        private long offset;
+        private int length;
+
+        private Location(int segment, long offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private static class Record {
+        private byte[] key;
+        private byte[] value;
+        private int length;
+
+        private Record(byte[] key, byte[] value, int length) {
+            this.key = key;
+            this.value = value;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import edu.yu.cs.com1320.project.stage6.PersistenceManager;
+
+/**
+ * Wraps another PersistenceManager so that serialize returns right away. Values are queued in memory and a
+ * background thread writes them through the wrapped manager in the order they were queued, draining everything
+ * that has built up in one pass. A value still waiting to be written is handed straight back by deserialize,
+ * which also deletes any older value the wrapped manager has for the key, and delete drops it from the queue.
+ */
+public class SpillingPersistenceManager<Key, Value> implements PersistenceManager<Key, Value> {
+    private PersistenceManager<Key, Value> pm;
+    // Values waiting to be written, oldest first. Guarded by this
+    private LinkedHashMap<Key, Value> pending;
+    // Values whose write failed, kept so that they can still be read back
+    private Map<Key, Value> failed;
+    private IOException failure;
+    private Key inFlight;
+    private boolean closed;
+    private Thread writer;
+
+    public SpillingPersistenceManager(PersistenceManager<Key, Value> pm) {
+        if (pm == null) {
+            throw new IllegalArgumentException();
+        }
+        this.pm = pm;
+        this.pending = new LinkedHashMap<>();
+        this.failed = new LinkedHashMap<>();
+        this.writer = new Thread(this::writeLoop, "document-spill-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public synchronized void serialize(Key key, Value val) throws IOException {
+        if (this.closed) {
+            throw new IllegalStateException();
+        }
+        if (key == null || val == null) {
+            return;
+        }
+        this.failed.remove(key);
+        // Re-queue at the back so a newer value is never overwritten by an older one
+        this.pending.remove(key);
+        this.pending.put(key, val);
+        this.notifyAll();
+    }
+
+    public synchronized Value deserialize(Key key) throws IOException {
+        if (key == null) {
+            return null;
+        }
+        this.awaitNotInFlight(key);
+        Value val = this.pending.remove(key);
+        if (val == null) {
+            val = this.failed.remove(key);
+        }
+        if (val != null) {
+            // An older value may already be on disk, or have just landed from the write waited for above
+            this.pm.delete(key);
+            return val;
+        }
+        return this.pm.deserialize(key);
+    }
+
+    public synchronized Value peek(Key key) throws IOException {
+        if (key == null) {
+            return null;
+        }
+        this.awaitNotInFlight(key);
+        Value val = this.pending.get(key);
+        if (val == null) {
+            val = this.failed.get(key);
+        }
+        if (val != null) {
+            return val;
+        }
+        return this.pm.peek(key);
+    }
+
+    public synchronized boolean delete(Key key) throws IOException {
+        if (key == null) {
+            return false;
+        }
+        this.awaitNotInFlight(key);
+        boolean queued = this.pending.remove(key) != null | this.failed.remove(key) != null;
+        return this.pm.delete(key) || queued;
+    }
+
+    /**
+     * wait until every queued value has been written
+     * @throws IOException the first write which failed since the last flush, if any
+     */
+    public synchronized void flush() throws IOException {
+        while (!this.pending.isEmpty() || this.inFlight != null) {
+            this.await();
+        }
+        if (this.failure != null) {
+            IOException e = this.failure;
+            this.failure = null;
+            throw e;
+        }
+    }
+
+    /**
+     * flush, then force the wrapped manager
+     */
+    public void force() throws IOException {
+        this.flush();
+        this.pm.force();
+    }
+
+    /**
+     * flush, then stop the background writer. Nothing can be serialized afterwards
+     */
+    public void close() throws IOException {
+        try {
+            this.flush();
+        } finally {
+            synchronized (this) {
+                this.closed = true;
+                this.notifyAll();
+            }
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            Key key;
+            Value val;
+            synchronized (this) {
+                while (this.pending.isEmpty() && !this.closed) {
+                    this.await();
+                }
+                if (this.pending.isEmpty()) {
+                    return;
+                }
+                Iterator<Map.Entry<Key, Value>> oldest = this.pending.entrySet().iterator();
+                Map.Entry<Key, Value> entry = oldest.next();
+                key = entry.getKey();
+                val = entry.getValue();
+                this.inFlight = key;
+            }
+            IOException error = null;
+            try {
+                this.pm.serialize(key, val);
+            } catch (IOException e) {
+                error = e;
+            }
+            synchronized (this) {
+                // Only dequeue if no newer value was queued while this one was being written
+                if (this.pending.get(key) == val) {
+                    this.pending.remove(key);
+                    if (error != null) {
+                        this.failed.put(key, val);
+                        if (this.failure == null) {
+                            this.failure = error;
+                        }
+                    }
+                }
+                this.inFlight = null;
+                this.notifyAll();
+            }
+        }
+    }
+
+    private void awaitNotInFlight(Key key) {
+        while (key.equals(this.inFlight)) {
+            this.await();
+        }
+    }
+
+    private void await() {
+        try {
+            this.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Splits document text into words in a single pass over its characters.
+ * Words are separated by whitespace, only letters A-Z, a-z and digits are kept, and every other character is dropped
+ * without splitting the word it is in ("don't" is "dont"). Empty words are never counted.
+ */
+public class Tokenizer {
+
+    private Tokenizer() {
+    }
+
+    /**
+     * @return map of every word in the text to the number of times it appears
+     */
+    public static Map<String, Integer> countWords(String text) {
+        Map<String, Integer> words = new HashMap<>();
+        int length = text.length();
+        // Only used for words containing dropped characters, words made up entirely of kept characters are substrings
+        char[] buffer = new char[32];
+        int start = 0;
+        int kept = 0;
+        boolean dropped = false;
+        for (int i = 0; i <= length; i++) {
+            char c = i < length ? text.charAt(i) : ' ';
+            if (isWordChar(c)) {
+                if (dropped) {
+                    if (kept == buffer.length) {
+                        buffer = Arrays.copyOf(buffer, kept * 2);
+                    }
+                    buffer[kept] = c;
+                }
+                kept++;
+            } else if (Character.isWhitespace(c)) {
+                if (kept > 0) {
+                    String word = dropped ? new String(buffer, 0, kept) : text.substring(start, start + kept);
+                    words.merge(word, 1, Integer::sum);
+                }
+                start = i + 1;
+                kept = 0;
+                dropped = false;
+            } else if (!dropped) {
+                // First dropped character in this word: copy what was kept so far into the buffer
+                if (buffer.length < kept) {
+                    buffer = new char[kept * 2];
+                }
+                text.getChars(start, start + kept, buffer, 0);
+                dropped = true;
+            }
+        }
+        return words;
+    }
+
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+}
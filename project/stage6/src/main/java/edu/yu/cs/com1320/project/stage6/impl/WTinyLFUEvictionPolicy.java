@@ -0,0 +1,151 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+
+import edu.yu.cs.com1320.project.stage6.EvictionPolicy;
+
+/**
+ * W-TinyLFU. New keys enter a small LRU window (1% of the keys in memory). Keys leaving the window join the main
+ * segmented LRU on probation, and a second use there promotes them to the protected segment (80% of main).
+ * When room is needed, the window's oldest key competes with main's victim. The one with the lower estimated use
+ * frequency is evicted, and the frequencies come from a count-min sketch which also remembers keys no longer in
+ * memory. A burst of keys used once, like a big search scan, cannot push frequently used keys out of main.
+ */
+public class WTinyLFUEvictionPolicy<Key> implements EvictionPolicy<Key> {
+    private LinkedHashSet<Key> window;
+    private LinkedHashSet<Key> probation;
+    private LinkedHashSet<Key> protectedKeys;
+    private FrequencySketch sketch;
+
+    public WTinyLFUEvictionPolicy() {
+        this.window = new LinkedHashSet<>();
+        this.probation = new LinkedHashSet<>();
+        this.protectedKeys = new LinkedHashSet<>();
+        this.sketch = new FrequencySketch();
+    }
+
+    public void add(Key key, long lastUseTime, int bytes) {
+        this.sketch.increment(key.hashCode());
+        this.window.add(key);
+        int windowMax = Math.max(1, this.size() / 100);
+        while (this.window.size() > windowMax) {
+            this.probation.add(removeEldest(this.window));
+        }
+        this.sketch.ensureCapacity(this.size());
+    }
+
+    public void touch(Key key, long lastUseTime) {
+        this.sketch.increment(key.hashCode());
+        if (this.window.remove(key)) {
+            this.window.add(key);
+        } else if (this.probation.remove(key)) {
+            this.protectedKeys.add(key);
+            int protectedMax = Math.max(1, (this.probation.size() + this.protectedKeys.size()) * 4 / 5);
+            while (this.protectedKeys.size() > protectedMax) {
+                this.probation.add(removeEldest(this.protectedKeys));
+            }
+        } else if (this.protectedKeys.remove(key)) {
+            this.protectedKeys.add(key);
+        } else {
+            throw new NoSuchElementException();
+        }
+    }
+
+    public void remove(Key key) {
+        if (!this.window.remove(key) && !this.probation.remove(key)) {
+            this.protectedKeys.remove(key);
+        }
+    }
+
+    public Key evict() {
+        LinkedHashSet<Key> main = this.probation.isEmpty() ? this.protectedKeys : this.probation;
+        if (main.isEmpty()) {
+            return removeEldest(this.window);
+        }
+        if (this.window.isEmpty()) {
+            return removeEldest(main);
+        }
+        Key candidate = this.window.iterator().next();
+        Key victim = main.iterator().next();
+        // Admit the window's candidate into main only if it is used more often than the key it would replace
+        if (this.sketch.frequency(candidate.hashCode()) > this.sketch.frequency(victim.hashCode())) {
+            main.remove(victim);
+            this.window.remove(candidate);
+            this.probation.add(candidate);
+            return victim;
+        }
+        this.window.remove(candidate);
+        return candidate;
+    }
+
+    public int size() {
+        return this.window.size() + this.probation.size() + this.protectedKeys.size();
+    }
+
+    private static <Key> Key removeEldest(LinkedHashSet<Key> keys) {
+        Iterator<Key> iterator = keys.iterator();
+        Key key = iterator.next();
+        iterator.remove();
+        return key;
+    }
+
+    /**
+     * Count-min sketch with 4 rows of 8 bit counters. Estimates are the minimum of a key's 4 counters. All counters are
+     * halved after 10 increments per counter in a row, so old popularity fades.
+     */
+    private static class FrequencySketch {
+        private static final int[] SEEDS = { 0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F };
+        private byte[][] table;
+        private int mask;
+        private int increments;
+
+        private FrequencySketch() {
+            this.resize(16);
+        }
+
+        private void resize(int width) {
+            this.table = new byte[SEEDS.length][width];
+            this.mask = width - 1;
+            this.increments = 0;
+        }
+
+        // Widens the sketch (losing its counts) once there are more keys in memory than counters per row
+        private void ensureCapacity(int keys) {
+            if (keys > this.table[0].length) {
+                this.resize(Integer.highestOneBit(keys) << 1);
+            }
+        }
+
+        private int index(int hash, int row) {
+            int h = hash * SEEDS[row];
+            return (h ^ (h >>> 16)) & this.mask;
+        }
+
+        private void increment(int hash) {
+            for (int row = 0; row < SEEDS.length; row++) {
+                int idx = this.index(hash, row);
+                if (this.table[row][idx] != Byte.MAX_VALUE) {
+                    this.table[row][idx]++;
+                }
+            }
+            if (++this.increments >= this.table[0].length * 10) {
+                for (byte[] counters : this.table) {
+                    for (int i = 0; i < counters.length; i++) {
+                        counters[i] >>= 1;
+                    }
+                }
+                this.increments /= 2;
+            }
+        }
+
+        private int frequency(int hash) {
+            int min = Integer.MAX_VALUE;
+            for (int row = 0; row < SEEDS.length; row++) {
+                min = Math.min(min, this.table[row][this.index(hash, row)]);
+            }
+            return min;
+        }
+    }
+}
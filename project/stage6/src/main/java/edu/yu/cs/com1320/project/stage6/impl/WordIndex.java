@@ -0,0 +1,173 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.yu.cs.com1320.project.Trie;
+
+/**
+ * Word index of the document store. Every word in the trie holds exactly one PostingList of the ids of the documents
+ * containing it, along with how many times it appears in each of them.
+ */
+public class WordIndex {
+    private static final int PREFIX_CACHE_SIZE = 64;
+
+    private Trie<PostingList> trie;
+    // Bumped on every change to the index so that cached prefix results are never stale
+    private long version;
+    private long prefixCacheVersion;
+    private Map<String, PostingList> prefixCache;
+    // Per-document score accumulator for prefix queries, indexed by document id and reused between queries
+    private int[] scores;
+    private int[] touched;
+
+    public WordIndex(Trie<PostingList> trie) {
+        this.trie = trie;
+        this.version = 0;
+        this.prefixCacheVersion = 0;
+        this.prefixCache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PostingList> eldest) {
+                return this.size() > PREFIX_CACHE_SIZE;
+            }
+        };
+        this.scores = new int[16];
+        this.touched = new int[16];
+    }
+
+    /**
+     * index every word of the given word to count map under the document id
+     */
+    public void add(int id, Map<String, Integer> wordCounts) {
+        this.version++;
+        for (Map.Entry<String, Integer> wordCount : wordCounts.entrySet()) {
+            PostingList postings = this.get(wordCount.getKey());
+            if (postings == null) {
+                postings = new PostingList();
+                this.trie.put(wordCount.getKey(), postings);
+            }
+            postings.put(id, wordCount.getValue());
+        }
+    }
+
+    /**
+     * remove the document id from the postings of the given words, dropping words which no longer have any postings
+     */
+    public void remove(int id, Set<String> words) {
+        this.version++;
+        for (String word : words) {
+            PostingList postings = this.get(word);
+            if (postings != null && postings.remove(id) && postings.isEmpty()) {
+                this.trie.delete(word, postings);
+            }
+        }
+    }
+
+    /**
+     * remove the document ids from the postings of every word, dropping words which no longer have any postings.
+     * Visits the whole index, for documents whose words aren't known
+     */
+    public void removeAll(Set<Integer> ids) {
+        this.version++;
+        for (String word : this.getWords()) {
+            PostingList postings = this.get(word);
+            for (int id : ids) {
+                postings.remove(id);
+            }
+            if (postings.isEmpty()) {
+                this.trie.delete(word, postings);
+            }
+        }
+    }
+
+    /**
+     * @return the postings of the word, or null if no document contains it
+     */
+    public PostingList get(String word) {
+        for (PostingList postings : this.trie.get(word)) {
+            return postings;
+        }
+        return null;
+    }
+
+    /**
+     * @return every word in the index, in no particular order
+     */
+    public List<String> getWords() {
+        return this.trie.getKeysWithPrefix("");
+    }
+
+    /**
+     * index the word with the given postings as they are. The word must not be in the index yet
+     */
+    public void putPostings(String word, PostingList postings) {
+        this.version++;
+        this.trie.put(word, postings);
+    }
+
+    /**
+     * Results are cached per prefix until the index next changes, so repeating a query (or paging through it) doesn't
+     * visit the postings again. The returned list must be treated as read-only. Synchronized because the cache and
+     * the score accumulator change even though the index doesn't, and ConcurrentDocumentStoreImpl runs searches
+     * together.
+     * @return the postings of every word starting with the prefix, with frequencies summed per document
+     */
+    public synchronized PostingList getWithPrefix(String prefix) {
+        if (this.prefixCacheVersion != this.version) {
+            this.prefixCache.clear();
+            this.prefixCacheVersion = this.version;
+        }
+        PostingList postings = this.prefixCache.get(prefix);
+        if (postings == null) {
+            postings = this.accumulate(this.trie.getAllWithPrefix(prefix));
+            this.prefixCache.put(prefix, postings);
+        }
+        return postings;
+    }
+
+    /**
+     * Sums the frequencies of every posting into the accumulator slot of its document, recording each document the
+     * first time it scores, then reads the touched slots back out in id order. Runs in time proportional to the
+     * number of postings visited rather than to the number of words or documents in the index.
+     */
+    private PostingList accumulate(List<PostingList> lists) {
+        if (lists.isEmpty()) {
+            return new PostingList();
+        }
+        if (lists.size() == 1) {
+            return lists.get(0);
+        }
+        int maxId = 0;
+        for (PostingList postings : lists) {
+            maxId = Math.max(maxId, postings.getId(postings.size() - 1));
+        }
+        if (this.scores.length <= maxId) {
+            this.scores = new int[Math.max(maxId + 1, this.scores.length * 2)];
+        }
+        int touchedCount = 0;
+        for (PostingList postings : lists) {
+            for (int i = 0; i < postings.size(); i++) {
+                int id = postings.getId(i);
+                if (this.scores[id] == 0) {
+                    if (touchedCount == this.touched.length) {
+                        this.touched = Arrays.copyOf(this.touched, touchedCount * 2);
+                    }
+                    this.touched[touchedCount++] = id;
+                }
+                this.scores[id] += postings.getFrequencyAt(i);
+            }
+        }
+        Arrays.sort(this.touched, 0, touchedCount);
+        PostingList merged = new PostingList(touchedCount);
+        for (int i = 0; i < touchedCount; i++) {
+            int id = this.touched[i];
+            merged.append(id, this.scores[id]);
+            // Leave the accumulator zeroed for the next query
+            this.scores[id] = 0;
+        }
+        return merged;
+    }
+}
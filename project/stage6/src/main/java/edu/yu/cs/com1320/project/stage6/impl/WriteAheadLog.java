@@ -0,0 +1,376 @@
+package edu.yu.cs.com1320.project.stage6.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentStore.DocumentFormat;
+
+/**
+ * Append only log of the changes made to a DocumentStoreImpl, replayed to bring its documents back after the process
+ * stops. Records are written straight to the file, so they survive the process dying. How soon they also survive the
+ * machine losing power depends on the FsyncPolicy.
+ *
+ * The log is read when it is opened and its records are kept until replay(). A record cut short by a crash ends the
+ * log, which is truncated there. Once a Checkpoint holds everything the log does, the log is emptied with truncate().
+ *
+ * Record layout: CRC32 of the rest of the record, payload length, payload. The payload is a type byte followed by the
+ * URI and the type's fields, each string as a length (-1 for null) and UTF-8 bytes: PUT has a binary flag and the
+ * bytes the document was made from, DELETE nothing, METADATA a key and value, DOCUMENT a whole document encoded by
+ * BinaryDocumentCodec, for states an undo goes back to.
+ */
+public class WriteAheadLog {
+    /**
+     * when records are forced to the disk.
+     * NONE leaves it to the OS, GROUP_COMMIT forces everything written since the last time every few milliseconds from
+     * a background thread, ALWAYS forces every record before the change it logs returns. Once a group commit fails,
+     * every later record, force and close fails with it.
+     */
+    public enum FsyncPolicy {
+        NONE, GROUP_COMMIT, ALWAYS
+    };
+
+    private static final int HEADER_BYTES = 8;
+    private static final long DEFAULT_GROUP_COMMIT_MILLIS = 10;
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final byte METADATA = 3;
+    private static final byte DOCUMENT = 4;
+
+    private File file;
+    private FileChannel channel;
+    private long size;
+    private FsyncPolicy fsyncPolicy;
+    private ScheduledExecutorService groupCommitter;
+    // Set when a record is written and cleared when the file is forced, so an idle log isn't forced again
+    private volatile boolean unforced;
+    // A force the group commit thread couldn't make. Records written before it may not be on the disk, so every call
+    // after it fails
+    private volatile IOException groupCommitFailure;
+    private BinaryDocumentCodec codec;
+    // Payloads of the records read when the log was opened, until they are replayed
+    private List<byte[]> unreplayed;
+
+    public WriteAheadLog(File file, FsyncPolicy fsyncPolicy) throws IOException {
+        this(file, fsyncPolicy, DEFAULT_GROUP_COMMIT_MILLIS);
+    }
+
+    /**
+     * @param file the log, created if needed. Records already in it are read
+     * @param fsyncPolicy when records are forced to the disk
+     * @param groupCommitMillis how often records are forced for GROUP_COMMIT
+     * @throws IllegalArgumentException if file or fsyncPolicy is null or groupCommitMillis isn't positive
+     */
+    public WriteAheadLog(File file, FsyncPolicy fsyncPolicy, long groupCommitMillis) throws IOException {
+        if (file == null || fsyncPolicy == null || groupCommitMillis < 1) {
+            throw new IllegalArgumentException();
+        }
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can't create " + directory);
+        }
+        this.file = file;
+        this.fsyncPolicy = fsyncPolicy;
+        this.codec = new BinaryDocumentCodec();
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.recover();
+        if (fsyncPolicy == FsyncPolicy.GROUP_COMMIT) {
+            this.groupCommitter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "wal-group-commit");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.groupCommitter.scheduleWithFixedDelay(() -> {
+                try {
+                    this.force();
+                } catch (IOException e) {
+                    if (this.groupCommitFailure == null) {
+                        this.groupCommitFailure = e;
+                    }
+                }
+            }, groupCommitMillis, groupCommitMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @param base the documents the store had before the first record, for records which only change metadata. Each
+     * is copied before it is changed
+     * @return every document the log held records of when it was opened, in the order they were last changed, mapped
+     * to what the records leave it as: null if it was deleted. Only the first call returns them, later calls return an
+     * empty map
+     */
+    public synchronized Map<URI, Document> replay(Function<URI, Document> base) throws IOException {
+        Map<URI, Document> documents = new LinkedHashMap<>();
+        for (byte[] payload : this.unreplayed) {
+            this.apply(payload, documents, base);
+        }
+        this.unreplayed = new ArrayList<>();
+        return documents;
+    }
+
+    /**
+     * @return the log file
+     */
+    public File getFile() {
+        return this.file;
+    }
+
+    /**
+     * remove every record, once a checkpoint holds everything they do
+     */
+    public synchronized void truncate() throws IOException {
+        this.channel.truncate(0);
+        this.channel.force(false);
+        this.size = 0;
+        this.unreplayed = new ArrayList<>();
+    }
+
+    public void logPut(URI uri, boolean binary, byte[] bytes) throws IOException {
+        Payload payload = new Payload(PUT, uri);
+        payload.writeByte(binary ? 1 : 0);
+        payload.writeBytes(bytes);
+        this.append(payload);
+    }
+
+    public void logDelete(URI uri) throws IOException {
+        this.append(new Payload(DELETE, uri));
+    }
+
+    public void logMetadata(URI uri, String key, String value) throws IOException {
+        Payload payload = new Payload(METADATA, uri);
+        payload.writeString(key);
+        payload.writeString(value);
+        this.append(payload);
+    }
+
+    public void logDocument(Document doc) throws IOException {
+        Payload payload = new Payload(DOCUMENT, doc.getKey());
+        payload.writeBytes(this.codec.encode(doc));
+        this.append(payload);
+    }
+
+    /**
+     * @return bytes in the log
+     */
+    public synchronized long size() {
+        return this.size;
+    }
+
+    /**
+     * force every record written so far to the disk, whatever the FsyncPolicy
+     */
+    public void force() throws IOException {
+        this.checkGroupCommit();
+        if (this.unforced) {
+            this.unforced = false;
+            this.channel.force(false);
+        }
+    }
+
+    /**
+     * stop the group commit thread, force the log to the disk and close it
+     */
+    public void close() throws IOException {
+        if (this.groupCommitter != null) {
+            this.groupCommitter.shutdown();
+            try {
+                this.groupCommitter.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            try {
+                this.force();
+            } finally {
+                this.channel.close();
+            }
+        }
+    }
+
+    private void checkGroupCommit() throws IOException {
+        IOException failure = this.groupCommitFailure;
+        if (failure != null) {
+            throw new IOException("Group commit failed", failure);
+        }
+    }
+
+    private void append(Payload payload) throws IOException {
+        this.checkGroupCommit();
+        int length = HEADER_BYTES + payload.size;
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.position(4);
+        buffer.putInt(payload.size).put(payload.bytes, 0, payload.size);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 4, length - 4);
+        buffer.putInt(0, (int) crc.getValue());
+        buffer.flip();
+        synchronized (this) {
+            while (buffer.hasRemaining()) {
+                this.channel.write(buffer, this.size + buffer.position());
+            }
+            this.size += length;
+            this.unforced = true;
+        }
+        if (this.fsyncPolicy == FsyncPolicy.ALWAYS) {
+            // Not through force(), which skips forcing when another thread's force has already cleared the flag
+            this.channel.force(false);
+        }
+    }
+
+    // Reads every record. A record cut short by a crash ends the log
+    private void recover() throws IOException {
+        this.unreplayed = new ArrayList<>();
+        long length = this.channel.size();
+        long offset = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (offset + HEADER_BYTES <= length) {
+            header.clear();
+            this.readFully(header, offset);
+            int crc = header.getInt(0);
+            int payloadLength = header.getInt(4);
+            if (payloadLength < 1 || offset + HEADER_BYTES + payloadLength > length) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(payloadLength);
+            this.readFully(payload, offset + HEADER_BYTES);
+            CRC32 check = new CRC32();
+            check.update(header.array(), 4, HEADER_BYTES - 4);
+            check.update(payload.array());
+            if ((int) check.getValue() != crc) {
+                break;
+            }
+            this.unreplayed.add(payload.array());
+            offset += HEADER_BYTES + payloadLength;
+        }
+        if (offset < length) {
+            this.channel.truncate(offset);
+        }
+        this.size = offset;
+    }
+
+    private void apply(byte[] bytes, Map<URI, Document> documents, Function<URI, Document> base)
+            throws IOException {
+        try {
+            ByteBuffer payload = ByteBuffer.wrap(bytes);
+            byte type = payload.get();
+            URI uri = URI.create(readString(payload));
+            boolean logged = documents.containsKey(uri);
+            // Moved to the end, so the map stays in the order documents were last changed
+            Document doc = documents.remove(uri);
+            if (type == PUT) {
+                boolean binary = payload.get() != 0;
+                byte[] data = readBytes(payload);
+                // Made the same way DocumentStoreImpl.put makes it
+                DocumentFormat format = binary ? DocumentFormat.BINARY : DocumentFormat.TXT;
+                documents.put(uri, DocumentStoreImpl.createDocument(uri, format, data));
+            } else if (type == METADATA) {
+                String key = readString(payload);
+                String value = readString(payload);
+                Document original = logged ? null : base.apply(uri);
+                if (original != null) {
+                    doc = this.codec.decode(this.codec.encode(original));
+                    logged = true;
+                }
+                if (doc != null) {
+                    doc.setMetadataValue(key, value);
+                }
+                if (logged) {
+                    documents.put(uri, doc);
+                }
+            } else if (type == DOCUMENT) {
+                documents.put(uri, this.codec.decode(readBytes(payload)));
+            } else if (type == DELETE) {
+                documents.put(uri, null);
+            } else {
+                throw new IOException("Unknown record type " + type + " in " + this.file);
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt record in " + this.file, e);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (this.channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of " + this.file);
+            }
+        }
+    }
+
+    private static byte[] readBytes(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.getInt()];
+        payload.get(bytes);
+        return bytes;
+    }
+
+    private static String readString(ByteBuffer payload) {
+        int length = payload.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String s = new String(payload.array(), payload.position(), length, StandardCharsets.UTF_8);
+        payload.position(payload.position() + length);
+        return s;
+    }
+
+    // Growable buffer a record's payload is built in before its header is known
+    private static class Payload {
+        private byte[] bytes;
+        private int size;
+
+        private Payload(byte type, URI uri) {
+            this.bytes = new byte[256];
+            this.writeByte(type);
+            this.writeString(uri.toString());
+        }
+
+        private void writeByte(int b) {
+            this.ensureCapacity(1);
+            this.bytes[this.size++] = (byte) b;
+        }
+
+        private void writeInt(int value) {
+            this.ensureCapacity(4);
+            ByteBuffer.wrap(this.bytes, this.size, 4).putInt(value);
+            this.size += 4;
+        }
+
+        private void writeBytes(byte[] value) {
+            this.writeInt(value.length);
+            this.ensureCapacity(value.length);
+            System.arraycopy(value, 0, this.bytes, this.size, value.length);
+            this.size += value.length;
+        }
+
+        private void writeString(String value) {
+            if (value == null) {
+                this.writeInt(-1);
+            } else {
+                this.writeBytes(value.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        private void ensureCapacity(int length) {
+            if (this.size + length > this.bytes.length) {
+                this.bytes = Arrays.copyOf(this.bytes, Math.max(this.size + length, this.bytes.length * 2));
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package edu.yu.cs.com1320.project.stage6;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.yu.cs.com1320.project.impl.BTreeImpl.Residency;
+import edu.yu.cs.com1320.project.impl.ConcurrentBTreeImpl;
+
+public class ConcurrentBTreeImplTest {
+    private static final int THREADS = 8;
+    private static final int KEYS_PER_THREAD = 2000;
+
+    private ConcurrentBTreeImpl<Integer, String> tree;
+    private MapPersistenceManager disk;
+
+    @BeforeEach
+    void setup() {
+        this.tree = new ConcurrentBTreeImpl<>();
+        this.disk = new MapPersistenceManager();
+        this.tree.setPersistenceManager(this.disk);
+    }
+
+    // Values "on disk" in a map, counting how many times each was taken off it
+    private static class MapPersistenceManager implements PersistenceManager<Integer, String> {
+        private Map<Integer, String> values = new ConcurrentHashMap<>();
+        private AtomicInteger deserialized = new AtomicInteger();
+
+        public void serialize(Integer key, String val) {
+            this.values.put(key, val);
+        }
+
+        public String deserialize(Integer key) {
+            String val = this.values.remove(key);
+            if (val != null) {
+                this.deserialized.incrementAndGet();
+            }
+            return val;
+        }
+
+        public boolean delete(Integer key) {
+            return this.values.remove(key) != null;
+        }
+    }
+
+    @Test
+    public void testPutGetAndResidency() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            assertNull(this.tree.put(i, "value" + i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("value" + i, this.tree.get(i));
+        }
+        assertEquals("value5", this.tree.put(5, "five"));
+        assertEquals("five", this.tree.get(5));
+        assertThrows(IllegalArgumentException.class, () -> this.tree.put(null, "null"));
+        this.tree.moveToDisk(7);
+        assertEquals(Residency.ON_DISK, this.tree.getResidency(7));
+        assertEquals("value7", this.tree.put(7, null));
+        assertEquals("value7", this.tree.peek(7));
+        assertEquals(Residency.ON_DISK, this.tree.getResidency(7));
+        assertEquals("value7", this.tree.get(7));
+        assertEquals(Residency.DIRTY, this.tree.getResidency(7));
+        assertNull(this.tree.get(5000));
+        assertNull(this.tree.getResidency(5000));
+    }
+
+    @Test
+    public void testConcurrentPutsAndGets() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(pool.submit(() -> {
+                // Interleaved with the other threads' keys, so they split the same nodes
+                List<Integer> keys = new ArrayList<>();
+                for (int i = 0; i < KEYS_PER_THREAD; i++) {
+                    keys.add(i * THREADS + thread);
+                }
+                Collections.shuffle(keys);
+                for (int i = 0; i < keys.size(); i++) {
+                    this.tree.put(keys.get(i), "value" + keys.get(i));
+                    // Every key put so far must still be found while other threads split nodes around it
+                    int earlier = keys.get(i / 2);
+                    assertEquals("value" + earlier, this.tree.get(earlier));
+                }
+                return null;
+            }));
+        }
+        waitFor(futures);
+        pool.shutdown();
+        for (int key = 0; key < THREADS * KEYS_PER_THREAD; key++) {
+            assertEquals("value" + key, this.tree.get(key));
+        }
+    }
+
+    @Test
+    public void testConcurrentGetsReadFromDiskOnce() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            this.tree.put(i, "value" + i);
+            this.tree.moveToDisk(i);
+            this.tree.put(i, null);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < 100; i++) {
+                    assertEquals("value" + i, this.tree.get(i));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        waitFor(futures);
+        pool.shutdown();
+        assertEquals(100, this.disk.deserialized.get());
+    }
+
+    private static void waitFor(List<Future<?>> futures) throws InterruptedException {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new AssertionError(e.getCause());
+            }
+        }
+    }
+}
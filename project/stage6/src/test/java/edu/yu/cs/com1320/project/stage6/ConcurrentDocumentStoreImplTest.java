@@ -0,0 +1,150 @@
+package edu.yu.cs.com1320.project.stage6;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.yu.cs.com1320.project.stage6.DocumentStore.DocumentFormat;
+import edu.yu.cs.com1320.project.stage6.impl.ConcurrentDocumentStoreImpl;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentStoreImpl;
+
+public class ConcurrentDocumentStoreImplTest {
+    private static final int THREADS = 4;
+    private static final int DOCUMENTS_PER_THREAD = 50;
+
+    private Path dir;
+    private ConcurrentDocumentStoreImpl store;
+
+    @BeforeEach
+    void setup() throws IOException {
+        this.dir = Files.createTempDirectory("concurrent");
+        this.store = new ConcurrentDocumentStoreImpl(new DocumentStoreImpl(this.dir.toFile()));
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        try (Stream<Path> paths = Files.walk(this.dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private boolean isOnDisk(URI uri) {
+        return Files.exists(Paths.get(this.dir.toString(), uri.getHost(), uri.getPath() + ".json"));
+    }
+
+    private void put(URI uri, String text) throws IOException {
+        this.store.put(new ByteArrayInputStream(text.getBytes()), uri, DocumentFormat.TXT);
+    }
+
+    @Test
+    public void testBufferedUseCountsBeforeEviction() throws IOException {
+        URI uri1 = URI.create("http://www.github.com/jwizenf1");
+        URI uri2 = URI.create("http://www.github.com/jwizenf2");
+        URI uri3 = URI.create("http://www.github.com/jwizenf3");
+        URI uri4 = URI.create("http://www.github.com/jwizenf4");
+        this.store.setMaxDocumentCount(3);
+        this.put(uri1, "apple one");
+        this.put(uri2, "apple two");
+        this.put(uri3, "apple three");
+        // Read in memory, so the use is only buffered until the next put
+        assertEquals("apple one", this.store.get(uri1).getDocumentTxt());
+        this.put(uri4, "apple four");
+        assertFalse(isOnDisk(uri1));
+        assertTrue(isOnDisk(uri2));
+        assertFalse(isOnDisk(uri3));
+        // A search reaching a document on disk brings it back under the write lock
+        assertEquals(4, this.store.search("apple").size());
+        assertFalse(isOnDisk(uri2));
+    }
+
+    @Test
+    public void testBehavesLikeTheStoreItWraps() throws IOException {
+        URI uri1 = URI.create("http://www.github.com/jwizenf1");
+        URI uri2 = URI.create("http://www.github.com/jwizenf2");
+        this.put(uri1, "apple banana apple");
+        this.put(uri2, "apple cherry");
+        this.store.setMetadata(uri1, "author", "Jeremy");
+        assertEquals("Jeremy", this.store.getMetadata(uri1, "author"));
+        assertNull(this.store.getMetadata(uri2, "author"));
+        assertThrows(IllegalArgumentException.class, () -> this.store.getMetadata(uri1, " "));
+        assertThrows(IllegalArgumentException.class, () -> this.store.search(null));
+        assertThrows(IllegalArgumentException.class, () -> this.store.search("apple", 0));
+        assertEquals(List.of(uri1, uri2), keys(this.store.search("apple")));
+        assertEquals(List.of(uri1), keys(this.store.searchByPrefix("ban")));
+        assertEquals(List.of(uri1), keys(this.store.searchByMetadata(Map.of("author", "Jeremy"))));
+        assertEquals(List.of(uri1), keys(this.store.searchByKeywordAndMetadata("apple", Map.of("author", "Jeremy"))));
+        assertEquals(1, this.store.searchByPrefixAndMetadata("app", Map.of("author", "Jeremy"), 1).size());
+        this.store.undo();
+        assertNull(this.store.getMetadata(uri1, "author"));
+        assertTrue(this.store.delete(uri2));
+        assertNull(this.store.get(uri2));
+        assertEquals(0, this.store.put(null, uri2, DocumentFormat.TXT));
+    }
+
+    @Test
+    public void testConcurrentPutsGetsAndSearches() throws Exception {
+        // Small enough that documents move to and from disk while the threads run
+        this.store.setMaxDocumentCount(THREADS * DOCUMENTS_PER_THREAD / 2);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < DOCUMENTS_PER_THREAD; i++) {
+                    URI uri = URI.create("http://www.github.com/thread" + thread + "/doc" + i);
+                    this.put(uri, "shared thread" + thread + " word" + i);
+                    assertNotNull(this.store.get(uri));
+                    assertEquals(i + 1, this.store.search("thread" + thread).size());
+                    this.store.searchByPrefix("shar", 10);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new AssertionError(e.getCause());
+            }
+        }
+        pool.shutdown();
+        Set<URI> all = new HashSet<>(keys(this.store.search("shared")));
+        assertEquals(THREADS * DOCUMENTS_PER_THREAD, all.size());
+        for (int t = 0; t < THREADS; t++) {
+            assertEquals(DOCUMENTS_PER_THREAD, this.store.searchByPrefix("thread" + t).size());
+        }
+    }
+
+    private static List<URI> keys(List<Document> documents) {
+        List<URI> uris = new ArrayList<>();
+        for (Document doc : documents) {
+            uris.add(doc.getKey());
+        }
+        return uris;
+    }
+}
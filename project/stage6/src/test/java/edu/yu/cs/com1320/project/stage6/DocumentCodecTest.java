@@ -0,0 +1,93 @@
+package edu.yu.cs.com1320.project.stage6;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.junit.jupiter.api.BeforeEach;
+
+import edu.yu.cs.com1320.project.stage6.impl.BinaryDocumentCodec;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentImpl;
+import edu.yu.cs.com1320.project.stage6.impl.JsonDocumentCodec;
+
+public class DocumentCodecTest {
+    private Document textDocument;
+    private Document binaryDocument;
+
+    @BeforeEach
+    void setup() {
+        this.textDocument = new DocumentImpl(URI.create("http://www.github.com/jwizenf1"),
+                "search searching searched seal seam search don't (2024) café", null);
+        this.textDocument.setMetadataValue("author", "Jeremy");
+        byte[] data = new byte[300];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        this.binaryDocument = new DocumentImpl(URI.create("http://www.github.com/jwizenf2"), data);
+        this.binaryDocument.setMetadataValue("type", "bytes");
+    }
+
+    private void assertRoundTrip(DocumentCodec codec) throws IOException {
+        Document text = codec.decode(codec.encode(this.textDocument));
+        assertEquals(this.textDocument, text);
+        assertEquals(this.textDocument.getWordMap(), text.getWordMap());
+        assertEquals("Jeremy", text.getMetadataValue("author"));
+        Document binary = codec.decode(codec.encode(this.binaryDocument));
+        assertEquals(this.binaryDocument, binary);
+        assertArrayEquals(this.binaryDocument.getDocumentBinaryData(), binary.getDocumentBinaryData());
+    }
+
+    @Test
+    public void testJsonRoundTrip() throws IOException {
+        assertRoundTrip(new JsonDocumentCodec());
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws IOException {
+        BinaryDocumentCodec codec = new BinaryDocumentCodec();
+        assertRoundTrip(codec);
+        // Buffers are reused, so encoding again must not leak the previous document
+        assertRoundTrip(codec);
+        // Unlike JSON, which drops them, null metadata values are kept
+        this.textDocument.setMetadataValue("empty", null);
+        assertTrue(codec.decode(codec.encode(this.textDocument)).getMetadata().containsKey("empty"));
+    }
+
+    @Test
+    public void testBinaryIsSmallerThanJson() {
+        DocumentCodec json = new JsonDocumentCodec();
+        DocumentCodec binary = new BinaryDocumentCodec();
+        assertTrue(binary.encode(this.textDocument).length < json.encode(this.textDocument).length);
+        // No Base64 for binary content
+        assertTrue(binary.encode(this.binaryDocument).length < 350);
+        assertTrue(json.encode(this.binaryDocument).length > 400);
+    }
+
+    @Test
+    public void testCustomWordMapSurvives() throws IOException {
+        HashMap<String, Integer> words = new HashMap<>();
+        words.put("alpha", 300);
+        words.put("alphabet", 1);
+        words.put("b", 70000);
+        Document doc = new DocumentImpl(URI.create("http://www.github.com/jwizenf3"), "alpha alphabet b", words);
+        BinaryDocumentCodec codec = new BinaryDocumentCodec();
+        assertEquals(words, codec.decode(codec.encode(doc)).getWordMap());
+    }
+
+    @Test
+    public void testCorruptBytesAreRejected() {
+        BinaryDocumentCodec codec = new BinaryDocumentCodec();
+        byte[] bytes = codec.encode(this.textDocument);
+        assertThrows(IOException.class, () -> codec.decode(new JsonDocumentCodec().encode(this.textDocument)));
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length / 2);
+        assertThrows(IOException.class, () -> codec.decode(truncated));
+        bytes[1] = 99;
+        assertThrows(IOException.class, () -> codec.decode(bytes));
+        assertThrows(IOException.class, () -> new JsonDocumentCodec().decode(new byte[] { 1, 2, 3 }));
+    }
+}
@@ -135,4 +135,16 @@ public class DocumentImplTest {
         assertEquals(0, documentText.wordCount("yeshiva"));
     }
 
+    @Test
+    public void testMemoryFootprint() {
+        assertEquals(txt.getBytes().length, documentText.getContentBytes());
+        assertEquals(binaryData.length, documentBinary.getContentBytes());
+        // Word map and index entries make a text document cost well over its text
+        int footprint = documentText.getMemoryFootprint();
+        assertTrue(footprint > 2 * txt.length());
+        assertTrue(documentBinary.getMemoryFootprint() > binaryData.length);
+        documentText.setMetadataValue("author", "Jeremy");
+        assertTrue(documentText.getMemoryFootprint() > footprint);
+        assertEquals(txt.getBytes().length, documentText.getContentBytes());
+    }
 }
@@ -0,0 +1,113 @@
+package edu.yu.cs.com1320.project.stage6;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.yu.cs.com1320.project.stage6.DocumentStore.DocumentFormat;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentImpl;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentPersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentStoreImpl;
+
+public class DocumentPersistenceManagerTest {
+    private Path dir;
+
+    @BeforeEach
+    void setup() throws IOException {
+        this.dir = Files.createTempDirectory("documents");
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        // Reading back the last document removes the directories it leaves empty, this one included
+        if (!Files.exists(this.dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(this.dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void testDeserializationTimesFittedOnReadSize() throws IOException {
+        DocumentPersistenceManager pm = new DocumentPersistenceManager(this.dir.toFile());
+        List<URI> sized = new ArrayList<>();
+        pm.setReadSize(doc -> {
+            sized.add(doc.getKey());
+            return doc.getDocumentTxt().length();
+        });
+        URI uri1 = URI.create("http://www.github.com/jwizenf1");
+        Document doc = new DocumentImpl(uri1, "sized by its text", null);
+        pm.serialize(uri1, doc);
+        assertEquals(doc, pm.deserialize(uri1));
+        assertEquals(List.of(uri1), sized);
+        assertTrue(pm.estimateDeserializationNanos(17) > 0);
+        assertThrows(IllegalArgumentException.class, () -> pm.setReadSize(null));
+    }
+
+    @Test
+    public void testAdoptPersistedDocuments() throws IOException {
+        DocumentPersistenceManager pm = new DocumentPersistenceManager(this.dir.toFile());
+        for (int i = 1; i <= 40; i++) {
+            URI uri = URI.create("http://www.github.com/docs/jwizenf" + i);
+            Document doc = new DocumentImpl(uri, "adopted document number" + i, null);
+            doc.setMetadataValue("parity", i % 2 == 0 ? "even" : "odd");
+            pm.serialize(uri, doc);
+        }
+        URI binary = URI.create("http://www.yu.edu/binary");
+        pm.serialize(binary, new DocumentImpl(binary, new byte[] { 1, 2, 3 }));
+        // Neither is a document stored where the manager would look for it
+        Files.writeString(this.dir.resolve("notes.json"), "{\"not\": \"a document\"}");
+        Files.copy(this.dir.resolve("www.yu.edu/binary.json"), this.dir.resolve("www.yu.edu/copy.json"));
+
+        DocumentStoreImpl adopting = new DocumentStoreImpl(this.dir.toFile());
+        Set<URI> adopted = adopting.adoptPersistedDocuments();
+        assertEquals(41, adopted.size());
+        // Adopted documents stay on disk until they are used
+        assertTrue(Files.exists(this.dir.resolve("www.github.com/docs/jwizenf3.json")));
+        assertEquals(40, adopting.search("adopted").size());
+        assertEquals(1, adopting.search("number7").size());
+        Map<String, String> even = new HashMap<>();
+        even.put("parity", "even");
+        assertEquals(20, adopting.searchByMetadata(even).size());
+        assertArrayEquals(new byte[] { 1, 2, 3 }, adopting.get(binary).getDocumentBinaryData());
+        assertTrue(adopting.delete(URI.create("http://www.github.com/docs/jwizenf3")));
+        assertEquals(39, adopting.search("adopted").size());
+        assertThrows(IllegalStateException.class, () -> adopting.adoptPersistedDocuments());
+    }
+
+    @Test
+    public void testAdoptedDocumentReadBackIsEvictedAgain() throws IOException {
+        DocumentPersistenceManager pm = new DocumentPersistenceManager(this.dir.toFile());
+        URI uri1 = URI.create("http://www.github.com/jwizenf1");
+        URI uri2 = URI.create("http://www.github.com/jwizenf2");
+        pm.serialize(uri1, new DocumentImpl(uri1, "alpha", null));
+        DocumentStoreImpl adopting = new DocumentStoreImpl(this.dir.toFile());
+        adopting.setRetainDiskCopies(true);
+        adopting.setMaxDocumentCount(1);
+        adopting.adoptPersistedDocuments();
+        assertEquals("alpha", adopting.get(uri1).getDocumentTxt());
+        adopting.put(new ByteArrayInputStream("beta".getBytes()), uri2, DocumentFormat.TXT);
+        // The retained copy is all there is of the document once it is evicted
+        assertTrue(Files.exists(this.dir.resolve("www.github.com/jwizenf1.json")));
+        assertEquals(uri1, adopting.search("alpha").get(0).getKey());
+    }
+}
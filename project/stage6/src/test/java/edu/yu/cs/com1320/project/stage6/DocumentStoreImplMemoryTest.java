@@ -2,6 +2,7 @@ package edu.yu.cs.com1320.project.stage6;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -9,6 +10,10 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -17,13 +22,18 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+
+import javax.management.Notification;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import edu.yu.cs.com1320.project.stage6.DocumentStore.DocumentFormat;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentPersistenceManager;
 import edu.yu.cs.com1320.project.stage6.impl.DocumentStoreImpl;
+import edu.yu.cs.com1320.project.stage6.impl.MemoryPressureMonitor;
 
 public class DocumentStoreImplMemoryTest {
 
@@ -148,21 +158,21 @@ public class DocumentStoreImplMemoryTest {
         this.store.setMaxDocumentBytes(140);
         assertEquals(177, getTotalBytes(this.store.search("is")));
 
-        assertTrue(isOnDisk(uri3));
+        assertTrue(isOnDisk(uri2));
 
-        this.store.delete(uri3);
+        this.store.delete(uri2);
         List<Document> searchDocs = this.store.search("is");
         List<URI> searchUris = new ArrayList<>();
         for (Document doc : searchDocs) {
             searchUris.add(doc.getKey());
         }
         assertTrue(searchUris.contains(uri1));
-        assertTrue(searchUris.contains(uri2));
+        assertTrue(searchUris.contains(uri3));
         assertTrue(searchUris.contains(uri4));
-        assertEquals(138, getTotalBytes(searchDocs));
+        assertEquals(130, getTotalBytes(searchDocs));
         this.store.undo();
 
-        assertTrue(isOnDisk(uri3));
+        assertTrue(isOnDisk(uri2));
         assertEquals(177, getTotalBytes(this.store.search("is")));
         this.store.undo();
         assertEquals(116, getTotalBytes(this.store.search("is")));
@@ -377,7 +387,26 @@ public class DocumentStoreImplMemoryTest {
         assertEquals(5, docs.size());
 
         assertTrue(isOnDisk(uri1));
-        assertTrue(isOnDisk(uri3));
+        assertTrue(isOnDisk(uri2));
+    }
+
+    @Test
+    public void testSearchRanksDocumentsOnDisk() throws IOException {
+        URI uri1 = URI.create("http://www.github.com/jwizenf1");
+        URI uri2 = URI.create("http://www.github.com/jwizenf2");
+        URI uri3 = URI.create("http://www.github.com/jwizenf3");
+        this.store.put(new ByteArrayInputStream("test test test".getBytes()), uri1, DocumentFormat.TXT);
+        this.store.put(new ByteArrayInputStream("test".getBytes()), uri2, DocumentFormat.TXT);
+        this.store.put(new ByteArrayInputStream("test test".getBytes()), uri3, DocumentFormat.TXT);
+        this.store.setMaxDocumentCount(1);
+        assertTrue(isOnDisk(uri1));
+        assertTrue(isOnDisk(uri2));
+
+        List<Document> docs = this.store.search("test");
+        assertEquals(3, docs.size());
+        assertEquals(uri1, docs.get(0).getKey());
+        assertEquals(uri3, docs.get(1).getKey());
+        assertEquals(uri2, docs.get(2).getKey());
     }
 
     @Test
@@ -402,4 +431,179 @@ public class DocumentStoreImplMemoryTest {
         assertTrue(isOnDisk(uri1));
         assertFalse(isOnDisk(uri2));
     }
+
+    @Test
+    public void testLowWatermarkEvictsBatch() throws IOException {
+        this.store.setMaxDocumentCount(4);
+        this.store.setLowWatermark(0.5);
+        URI[] uris = new URI[6];
+        for (int i = 1; i <= 5; i++) {
+            uris[i] = URI.create("http://www.github.com/jwizenf" + i);
+            this.store.put(new ByteArrayInputStream(("document number " + i).getBytes()), uris[i], DocumentFormat.TXT);
+        }
+        // The fifth put goes over the limit of 4, so the three oldest move out to get down to 2
+        assertTrue(isOnDisk(uris[1]));
+        assertTrue(isOnDisk(uris[2]));
+        assertTrue(isOnDisk(uris[3]));
+        assertFalse(isOnDisk(uris[4]));
+        assertFalse(isOnDisk(uris[5]));
+        assertThrows(IllegalArgumentException.class, () -> this.store.setLowWatermark(0));
+        assertThrows(IllegalArgumentException.class, () -> this.store.setLowWatermark(1.5));
+    }
+
+    @Test
+    public void testFootprintAccountingCountsWordMap() throws IOException {
+        String text = "one two three four five six seven eight nine ten";
+        URI uri1 = URI.create("http://www.github.com/jwizenf1");
+        URI uri2 = URI.create("http://www.github.com/jwizenf2");
+        URI uri3 = URI.create("http://www.github.com/jwizenf3");
+        this.store.put(new ByteArrayInputStream(text.getBytes()), uri1, DocumentFormat.TXT);
+        this.store.put(new ByteArrayInputStream(text.getBytes()), uri2, DocumentFormat.TXT);
+        this.store.put(new ByteArrayInputStream(text.getBytes()), uri3, DocumentFormat.TXT);
+        // Room for all three texts, but not for what they cost on the heap
+        this.store.setMaxDocumentBytes(text.length() * 40);
+        assertFalse(isOnDisk(uri1));
+        this.store.setByteAccounting(DocumentStoreImpl.ByteAccounting.FOOTPRINT);
+        assertTrue(isOnDisk(uri1));
+        assertTrue(isOnDisk(uri2));
+        assertFalse(isOnDisk(uri3));
+        assertThrows(IllegalArgumentException.class, () -> this.store.setByteAccounting(null));
+        // The text fits but its footprint doesn't
+        StringBuilder manyWords = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            manyWords.append("w").append(i).append(' ');
+        }
+        assertTrue(manyWords.length() < text.length() * 40);
+        assertThrows(IllegalArgumentException.class, () -> this.store.put(
+                new ByteArrayInputStream(manyWords.toString().getBytes()), uri1, DocumentFormat.TXT));
+    }
+
+    @Test
+    public void testMemoryPressureSpillsDocuments() throws IOException {
+        MemoryPressureMonitor monitor = new MemoryPressureMonitor(0.9);
+        this.store.setMemoryPressureMonitor(monitor);
+        URI[] uris = new URI[7];
+        for (int i = 1; i <= 4; i++) {
+            uris[i] = URI.create("http://www.github.com/jwizenf" + i);
+            this.store.put(new ByteArrayInputStream(("document number " + i).getBytes()), uris[i], DocumentFormat.TXT);
+        }
+        monitor.handleNotification(
+                new Notification(MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED, "test", 1), null);
+        uris[5] = URI.create("http://www.github.com/jwizenf5");
+        this.store.put(new ByteArrayInputStream("document number 5".getBytes()), uris[5], DocumentFormat.TXT);
+        // A quarter of the 4 documents in memory were moved out, then pressure was gone
+        assertTrue(isOnDisk(uris[1]));
+        assertFalse(isOnDisk(uris[2]));
+        uris[6] = URI.create("http://www.github.com/jwizenf6");
+        this.store.put(new ByteArrayInputStream("document number 6".getBytes()), uris[6], DocumentFormat.TXT);
+        assertFalse(isOnDisk(uris[2]));
+        monitor.close();
+        assertThrows(IllegalArgumentException.class, () -> new MemoryPressureMonitor(1.5));
+    }
+
+    @Test
+    public void testMemoryPressureMonitorCloseRestoresThresholds() {
+        List<MemoryPoolMXBean> pools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported()
+                    && pool.isCollectionUsageThresholdSupported() && pool.getUsage().getMax() > 0) {
+                pools.add(pool);
+            }
+        }
+        try {
+            // Thresholds something else in the JVM had set
+            for (MemoryPoolMXBean pool : pools) {
+                pool.setCollectionUsageThreshold(1234);
+            }
+            MemoryPressureMonitor monitor = new MemoryPressureMonitor(0.9);
+            for (MemoryPoolMXBean pool : pools) {
+                assertNotEquals(1234, pool.getCollectionUsageThreshold());
+            }
+            monitor.close();
+            for (MemoryPoolMXBean pool : pools) {
+                assertEquals(1234, pool.getCollectionUsageThreshold());
+            }
+            // A second close finds nothing left to undo
+            monitor.close();
+        } finally {
+            for (MemoryPoolMXBean pool : pools) {
+                pool.setCollectionUsageThreshold(0);
+            }
+        }
+    }
+
+    @Test
+    public void testSearchPromotionLeavesColdDocumentsOnDisk() throws IOException {
+        URI uri1 = URI.create("http://www.github.com/jwizenf1");
+        URI uri2 = URI.create("http://www.github.com/jwizenf2");
+        URI uri3 = URI.create("http://www.github.com/jwizenf3");
+        this.store.put(new ByteArrayInputStream("test test test".getBytes()), uri1, DocumentFormat.TXT);
+        this.store.put(new ByteArrayInputStream("test".getBytes()), uri2, DocumentFormat.TXT);
+        this.store.put(new ByteArrayInputStream("test test".getBytes()), uri3, DocumentFormat.TXT);
+        this.store.setMaxDocumentCount(1);
+
+        this.store.setSearchPromotion(DocumentStoreImpl.SearchPromotion.NEVER);
+        List<Document> docs = this.store.search("test");
+        assertEquals(uri1, docs.get(0).getKey());
+        assertEquals(uri2, docs.get(2).getKey());
+        assertEquals("test test test", docs.get(0).getDocumentTxt());
+        assertTrue(isOnDisk(uri1));
+        assertTrue(isOnDisk(uri2));
+        assertFalse(isOnDisk(uri3));
+
+        this.store.setSearchPromotion(DocumentStoreImpl.SearchPromotion.SECOND_ACCESS);
+        this.store.search("test");
+        assertTrue(isOnDisk(uri1));
+        this.store.search("test");
+        // The second search brought back uri1 then uri2, each moving the document in memory out to stay under the
+        // limit. uri3 was returned from disk for the first time
+        assertTrue(isOnDisk(uri1));
+        assertFalse(isOnDisk(uri2));
+        assertTrue(isOnDisk(uri3));
+
+        this.store.setSearchPromotion(DocumentStoreImpl.SearchPromotion.TOP_N);
+        this.store.setSearchPromotionLimit(1);
+        this.store.search("test");
+        assertFalse(isOnDisk(uri1));
+        assertTrue(isOnDisk(uri2));
+        assertTrue(isOnDisk(uri3));
+        assertThrows(IllegalArgumentException.class, () -> this.store.setSearchPromotion(null));
+        assertThrows(IllegalArgumentException.class, () -> this.store.setSearchPromotionLimit(-1));
+    }
+
+    @Test
+    public void testRetainDiskCopiesSkipsRewritingCleanDocuments() throws IOException {
+        int[] writes = new int[1];
+        DocumentPersistenceManager pm = new DocumentPersistenceManager(null) {
+            @Override
+            public void serialize(URI key, Document val) throws IOException {
+                writes[0]++;
+                super.serialize(key, val);
+            }
+        };
+        this.store.setPersistenceManager(pm);
+        this.store.setRetainDiskCopies(true);
+        this.store.setMaxDocumentCount(1);
+        URI uri1 = URI.create("http://www.github.com/jwizenf1");
+        URI uri2 = URI.create("http://www.github.com/jwizenf2");
+        this.store.put(new ByteArrayInputStream("first document".getBytes()), uri1, DocumentFormat.TXT);
+        this.store.put(new ByteArrayInputStream("second document".getBytes()), uri2, DocumentFormat.TXT);
+        assertEquals(1, writes[0]);
+        // Reading uri1 back keeps its file, and moving it out again unchanged doesn't write it
+        assertNotNull(this.store.get(uri1));
+        assertTrue(isOnDisk(uri1));
+        assertEquals(2, writes[0]);
+        this.store.get(uri2);
+        assertEquals(2, writes[0]);
+        // A changed document is written again
+        this.store.setMetadata(uri1, "author", "Jeremy");
+        this.store.get(uri2);
+        assertEquals(3, writes[0]);
+        this.store.get(uri1);
+        assertEquals("Jeremy", this.store.getMetadata(uri1, "author"));
+        // Deleting a document in memory removes the copy it kept on disk
+        this.store.delete(uri1);
+        assertFalse(isOnDisk(uri1));
+        assertNull(this.store.get(uri1));
+    }
 }
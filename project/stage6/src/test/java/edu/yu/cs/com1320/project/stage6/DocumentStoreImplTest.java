@@ -315,6 +315,131 @@ public class DocumentStoreImplTest {
         }
     }
 
+    @Test
+    public void testSearchByPrefixCountsEveryOccurrence() throws IOException {
+        URI uri2 = URI.create("http://www.github.com/jwizenf3");
+        this.store.put(new ByteArrayInputStream("sea sea sea shell".getBytes()), uri, DocumentFormat.TXT);
+        this.store.put(new ByteArrayInputStream("seal seam".getBytes()), uri2, DocumentFormat.TXT);
+        List<Document> results = this.store.searchByPrefix("sea");
+        assertEquals(2, results.size());
+        assertEquals(uri2, results.get(1).getKey());
+        assertEquals(uri, results.get(0).getKey());
+    }
+
+    @Test
+    public void testSearchWithLimitReturnsBestMatches() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 30; i++) {
+            // Counts repeat so that ties have to be broken the same way as the unbounded search
+            text.append("apple apricot ");
+            if (i % 3 == 0) {
+                text.append("avocado ");
+            }
+            this.store.put(new ByteArrayInputStream(text.toString().getBytes()),
+                    URI.create("http://www.github.com/doc" + i), DocumentFormat.TXT);
+        }
+        List<Document> all = this.store.search("avocado");
+        for (int limit : new int[] { 1, 5, 29, 30, 100 }) {
+            List<Document> top = this.store.search("avocado", limit);
+            assertEquals(all.subList(0, Math.min(limit, all.size())), top);
+        }
+        List<Document> allByPrefix = this.store.searchByPrefix("a");
+        assertEquals(allByPrefix.subList(0, 7), this.store.searchByPrefix("a", 7));
+        assertThrows(IllegalArgumentException.class, () -> this.store.search("apple", 0));
+        assertTrue(this.store.searchByPrefix("zebra", 3).isEmpty());
+    }
+
+    @Test
+    public void testSearchAndMetadataWithLimit() throws IOException {
+        Map<String, String> searchMap = Map.of("author", "me");
+        for (int i = 0; i < 10; i++) {
+            URI docUri = URI.create("http://www.github.com/doc" + i);
+            this.store.put(new ByteArrayInputStream("sea ".repeat(i + 1).getBytes()), docUri, DocumentFormat.TXT);
+            if (i % 2 == 0) {
+                this.store.setMetadata(docUri, "author", "me");
+            }
+        }
+        List<Document> top = this.store.searchByKeywordAndMetadata("sea", searchMap, 2);
+        assertEquals(2, top.size());
+        assertEquals(URI.create("http://www.github.com/doc8"), top.get(0).getKey());
+        assertEquals(URI.create("http://www.github.com/doc6"), top.get(1).getKey());
+        assertEquals(this.store.searchByPrefixAndMetadata("se", searchMap).subList(0, 3),
+                this.store.searchByPrefixAndMetadata("se", searchMap, 3));
+    }
+
+    @Test
+    public void testSearchByMetadataFollowsChanges() throws IOException {
+        URI uri2 = URI.create("http://www.github.com/jwizenf3");
+        this.store.put(new ByteArrayInputStream("first".getBytes()), uri, DocumentFormat.TXT);
+        this.store.put(new ByteArrayInputStream(binaryData), uri2, DocumentFormat.BINARY);
+        this.store.setMetadata(uri, "author", "me");
+        this.store.setMetadata(uri, "year", "2024");
+        this.store.setMetadata(uri2, "author", "me");
+        this.store.setMetadata(uri2, "year", "2023");
+        Map<String, String> searchMap = new HashMap<>();
+        searchMap.put("author", "me");
+        searchMap.put("year", "2024");
+        assertEquals(List.of(uri), this.store.searchByMetadata(searchMap).stream().map(Document::getKey).toList());
+        // The old value no longer matches once it is overwritten, and matches again after undo
+        this.store.setMetadata(uri, "year", "2025");
+        assertTrue(this.store.searchByMetadata(searchMap).isEmpty());
+        this.store.undo();
+        assertEquals(1, this.store.searchByMetadata(searchMap).size());
+        this.store.delete(uri);
+        assertTrue(this.store.searchByMetadata(searchMap).isEmpty());
+        this.store.undo();
+        assertEquals(1, this.store.searchByMetadata(searchMap).size());
+        assertEquals(2, this.store.searchByMetadata(Map.of("author", "me")).size());
+    }
+
+    @Test
+    public void testKeywordAndMetadataPlanDrivesFromSmallestSide() throws IOException {
+        for (int i = 0; i < 6; i++) {
+            URI docUri = URI.create("http://www.github.com/doc" + i);
+            this.store.put(new ByteArrayInputStream(("apple ".repeat(i + 1) + "pear").getBytes()), docUri,
+                    DocumentFormat.TXT);
+            this.store.setMetadata(docUri, "author", i < 4 ? "me" : "you");
+            if (i == 2) {
+                this.store.setMetadata(docUri, "year", "2024");
+            }
+        }
+        this.store.put(new ByteArrayInputStream("banana".getBytes()), uri, DocumentFormat.TXT);
+        this.store.setMetadata(uri, "author", "you");
+        this.store.setMetadata(uri, "year", "2024");
+        Map<String, String> searchMap = new HashMap<>();
+        searchMap.put("author", "me");
+        searchMap.put("year", "2024");
+        assertEquals("drive metadata year=2024 (2)", this.store.explainKeywordAndMetadata("apple", searchMap).split("\n")[0]);
+        assertEquals(URI.create("http://www.github.com/doc2"),
+                this.store.searchByKeywordAndMetadata("apple", searchMap).get(0).getKey());
+        assertEquals(1, this.store.searchByKeywordAndMetadata("apple", searchMap).size());
+
+        Map<String, String> authorMap = Map.of("author", "you");
+        assertEquals("drive keyword banana (1)\nprobe metadata author=you (3)",
+                this.store.explainKeywordAndMetadata("banana", authorMap));
+        assertEquals(List.of(uri), this.store.searchByKeywordAndMetadata("banana", authorMap).stream()
+                .map(Document::getKey).toList());
+        List<Document> byPrefix = this.store.searchByPrefixAndMetadata("app", authorMap);
+        assertEquals(2, byPrefix.size());
+        assertEquals(URI.create("http://www.github.com/doc5"), byPrefix.get(0).getKey());
+        assertTrue(this.store.explainPrefixAndMetadata("app", authorMap).startsWith("drive metadata author=you (3)"));
+        assertTrue(this.store.searchByKeywordAndMetadata("kiwi", authorMap).isEmpty());
+    }
+
+    @Test
+    public void testRadixTrieStore() throws IOException {
+        DocumentStoreImpl radixStore = new DocumentStoreImpl(null, DocumentStoreImpl.TrieType.RADIX);
+        URI uri2 = URI.create("http://www.github.com/jwizenf3");
+        radixStore.put(new ByteArrayInputStream("sea sea sea shell".getBytes()), uri, DocumentFormat.TXT);
+        radixStore.put(new ByteArrayInputStream("seal seam".getBytes()), uri2, DocumentFormat.TXT);
+        assertEquals(uri, radixStore.searchByPrefix("sea").get(0).getKey());
+        assertEquals(uri2, radixStore.search("seal").get(0).getKey());
+        assertEquals(Set.of(uri2), radixStore.deleteAll("seam"));
+        assertTrue(radixStore.search("seal").isEmpty());
+        radixStore.undo();
+        assertEquals(2, radixStore.searchByPrefix("se").size());
+    }
+
     @Test
     public void testSearchByMetadata() throws IOException {
         String originalString = "This is a test for the trie impl, is it correct";
@@ -438,15 +563,15 @@ public class DocumentStoreImplTest {
         URI uri2 = new URI("http://www.github.com/jwizenf3");
         this.store.put(input, uri2, DocumentFormat.TXT);
         List<Document> docSet = new ArrayList<>();
-        docSet.add(this.store.get(uri2));
         docSet.add(this.store.get(uri));
+        docSet.add(this.store.get(uri2));
         assertEquals(docSet, this.store.search("test"));
         this.store.deleteAll("test");
         docSet.clear();
         assertEquals(docSet, this.store.search("test"));
         this.store.undo();
-        docSet.add(this.store.get(uri2));
         docSet.add(this.store.get(uri));
+        docSet.add(this.store.get(uri2));
         assertEquals(docSet, this.store.search("test"));
     }
 
@@ -0,0 +1,279 @@
+package edu.yu.cs.com1320.project.stage6;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import edu.yu.cs.com1320.project.stage6.DocumentStore.DocumentFormat;
+import edu.yu.cs.com1320.project.stage6.impl.ARCEvictionPolicy;
+import edu.yu.cs.com1320.project.stage6.impl.ClockEvictionPolicy;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentPersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentStoreImpl;
+import edu.yu.cs.com1320.project.stage6.impl.GDSFEvictionPolicy;
+import edu.yu.cs.com1320.project.stage6.impl.LRUEvictionPolicy;
+import edu.yu.cs.com1320.project.stage6.impl.WTinyLFUEvictionPolicy;
+
+public class EvictionPolicyTest {
+    private Path dir;
+    private DocumentStoreImpl store;
+
+    @BeforeEach
+    void setup() throws IOException {
+        this.dir = Files.createTempDirectory("policies");
+        this.store = new DocumentStoreImpl(this.dir.toFile());
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        try (Stream<Path> paths = Files.walk(this.dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private boolean isOnDisk(URI uri) {
+        return Files.exists(this.dir.resolve(uri.getHost() + uri.getPath() + ".json"));
+    }
+
+    private List<EvictionPolicy<String>> allPolicies() {
+        return List.of(new LRUEvictionPolicy<>(), new ClockEvictionPolicy<>(), new ARCEvictionPolicy<>(),
+                new WTinyLFUEvictionPolicy<>(), new GDSFEvictionPolicy<>());
+    }
+
+    @Test
+    public void testEveryKeyIsEvictedExactlyOnce() {
+        for (EvictionPolicy<String> policy : allPolicies()) {
+            Set<String> added = new HashSet<>();
+            for (int i = 0; i < 200; i++) {
+                policy.add("key" + i, i, 10);
+                added.add("key" + i);
+                if (i % 3 == 0) {
+                    policy.touch("key" + (i / 2), 200 + i);
+                }
+            }
+            policy.remove("key7");
+            policy.remove("missing");
+            added.remove("key7");
+            assertEquals(199, policy.size());
+            Set<String> evicted = new HashSet<>();
+            while (policy.size() > 0) {
+                assertTrue(evicted.add(policy.evict()));
+            }
+            assertEquals(added, evicted);
+            assertThrows(NoSuchElementException.class, () -> policy.evict());
+            assertThrows(NoSuchElementException.class, () -> policy.touch("key1", 0));
+        }
+    }
+
+    @Test
+    public void testLRUEvictsOldestUse() {
+        EvictionPolicy<String> policy = new LRUEvictionPolicy<>();
+        policy.add("a", 1, 10);
+        policy.add("b", 2, 10);
+        policy.add("c", 3, 10);
+        policy.touch("a", 4);
+        assertEquals("b", policy.evict());
+        assertEquals("c", policy.evict());
+        assertEquals("a", policy.evict());
+    }
+
+    @Test
+    public void testClockGivesUsedKeysSecondChance() {
+        EvictionPolicy<String> policy = new ClockEvictionPolicy<>();
+        policy.add("a", 1, 10);
+        policy.add("b", 2, 10);
+        policy.add("c", 3, 10);
+        policy.touch("a", 4);
+        policy.touch("b", 5);
+        assertEquals("c", policy.evict());
+        // The hand cleared a and b on its way round, so a goes next
+        assertEquals("a", policy.evict());
+    }
+
+    @Test
+    public void testARCKeepsKeysUsedTwiceOverOneTimeScan() {
+        EvictionPolicy<String> policy = new ARCEvictionPolicy<>();
+        policy.add("hot", 1, 10);
+        policy.touch("hot", 2);
+        for (int i = 0; i < 10; i++) {
+            policy.add("scan" + i, 3 + i, 10);
+            assertTrue(policy.evict().startsWith("scan"));
+        }
+        assertEquals(1, policy.size());
+        assertEquals("hot", policy.evict());
+    }
+
+    @Test
+    public void testARCForgetsRemovedKeys() {
+        EvictionPolicy<String> policy = new ARCEvictionPolicy<>();
+        policy.add("a", 1, 10);
+        policy.add("b", 2, 10);
+        assertEquals("a", policy.evict());
+        // Deleted while on disk, then put again
+        policy.remove("a");
+        policy.add("a", 3, 10);
+        // A ghost hit would have put a in t2 and kept it over b
+        assertEquals("b", policy.evict());
+        assertEquals("a", policy.evict());
+    }
+
+    @Test
+    public void testWTinyLFUDoesNotAdmitScanOverFrequentKeys() {
+        EvictionPolicy<String> policy = new WTinyLFUEvictionPolicy<>();
+        for (int i = 0; i < 4; i++) {
+            policy.add("hot" + i, i, 10);
+            for (int j = 0; j < 5; j++) {
+                policy.touch("hot" + i, 10 + j);
+            }
+        }
+        for (int i = 0; i < 50; i++) {
+            policy.add("scan" + i, 100 + i, 10);
+            assertEquals("scan" + i, policy.evict());
+        }
+        assertEquals(4, policy.size());
+    }
+
+    @Test
+    public void testGDSFEvictsLargestLeastUsedFirst() {
+        EvictionPolicy<String> policy = new GDSFEvictionPolicy<>();
+        policy.add("small", 1, 100);
+        policy.add("large", 2, 10_000);
+        policy.add("medium", 3, 1_000);
+        assertEquals("large", policy.evict());
+        // Used often enough, a larger document outranks a smaller one
+        policy.touch("medium", 4);
+        policy.touch("medium", 5);
+        policy.resize("small", 500);
+        assertEquals("small", policy.evict());
+        assertEquals("medium", policy.evict());
+    }
+
+    @Test
+    public void testGDSFWeighsCostOfReadingBack() {
+        // Large documents are much slower to read back than their size alone suggests
+        EvictionPolicy<String> policy = new GDSFEvictionPolicy<>(bytes -> bytes > 1_000 ? bytes * 100L : 1);
+        policy.add("small", 1, 100);
+        policy.add("large", 2, 10_000);
+        assertEquals("small", policy.evict());
+    }
+
+    @Test
+    public void testWTinyLFUKeepsFrequentDocumentInMemory() throws IOException {
+        this.store.setEvictionPolicy(new WTinyLFUEvictionPolicy<>());
+        URI uri1 = URI.create("http://www.github.com/jwizenf1");
+        this.store.put(new ByteArrayInputStream("frequently used".getBytes()), uri1, DocumentFormat.TXT);
+        for (int i = 0; i < 5; i++) {
+            this.store.get(uri1);
+        }
+        for (int i = 2; i <= 3; i++) {
+            URI uri = URI.create("http://www.github.com/jwizenf" + i);
+            this.store.put(new ByteArrayInputStream(("document " + i).getBytes()), uri, DocumentFormat.TXT);
+        }
+        this.store.setMaxDocumentCount(3);
+        // A scan of documents used once goes to disk instead of the frequently used one
+        for (int i = 4; i <= 6; i++) {
+            URI uri = URI.create("http://www.github.com/jwizenf" + i);
+            this.store.put(new ByteArrayInputStream(("document " + i).getBytes()), uri, DocumentFormat.TXT);
+            assertTrue(isOnDisk(uri));
+        }
+        assertFalse(isOnDisk(uri1));
+        assertEquals("frequently used", this.store.get(uri1).getDocumentTxt());
+        assertEquals("document 5", this.store.get(URI.create("http://www.github.com/jwizenf5")).getDocumentTxt());
+    }
+
+    @Test
+    public void testWTinyLFUGetOfDocumentItRejectsAgain() throws IOException {
+        this.store.setEvictionPolicy(new WTinyLFUEvictionPolicy<>());
+        this.store.setMaxDocumentCount(2);
+        URI uri1 = URI.create("http://www.github.com/jwizenf1");
+        URI uri2 = URI.create("http://www.github.com/jwizenf2");
+        URI uri3 = URI.create("http://www.github.com/jwizenf3");
+        this.store.put(new ByteArrayInputStream("frequently used one".getBytes()), uri1, DocumentFormat.TXT);
+        this.store.put(new ByteArrayInputStream("frequently used two".getBytes()), uri2, DocumentFormat.TXT);
+        for (int i = 0; i < 5; i++) {
+            this.store.get(uri1);
+            this.store.get(uri2);
+        }
+        this.store.put(new ByteArrayInputStream("used once".getBytes()), uri3, DocumentFormat.TXT);
+        assertTrue(isOnDisk(uri3));
+        // Read back and turned away again by the admission filter in the same call
+        assertEquals("used once", this.store.get(uri3).getDocumentTxt());
+        assertTrue(isOnDisk(uri3));
+        assertEquals(1, this.store.search("once").size());
+    }
+
+    @Test
+    public void testSetEvictionPolicyKeepsDocumentsInMemory() throws IOException {
+        URI uri1 = URI.create("http://www.github.com/jwizenf1");
+        URI uri2 = URI.create("http://www.github.com/jwizenf2");
+        URI uri3 = URI.create("http://www.github.com/jwizenf3");
+        this.store.put(new ByteArrayInputStream("one".getBytes()), uri1, DocumentFormat.TXT);
+        this.store.put(new ByteArrayInputStream("two".getBytes()), uri2, DocumentFormat.TXT);
+        this.store.setEvictionPolicy(new ClockEvictionPolicy<>());
+        this.store.put(new ByteArrayInputStream("three".getBytes()), uri3, DocumentFormat.TXT);
+        this.store.setMaxDocumentCount(2);
+        assertTrue(isOnDisk(uri1));
+        this.store.setMaxDocumentCount(1);
+        assertTrue(isOnDisk(uri2));
+        assertFalse(isOnDisk(uri3));
+        assertThrows(IllegalArgumentException.class, () -> this.store.setEvictionPolicy(null));
+    }
+
+    @Test
+    public void testGDSFMovesLargeBinaryDocumentToDiskFirst() throws IOException {
+        DocumentPersistenceManager pm = new DocumentPersistenceManager(this.dir.toFile());
+        this.store.setPersistenceManager(pm);
+        this.store.setEvictionPolicy(new GDSFEvictionPolicy<>(pm::estimateDeserializationNanos));
+        URI uri1 = URI.create("http://www.github.com/jwizenf1");
+        URI uri2 = URI.create("http://www.github.com/jwizenf2");
+        URI uri3 = URI.create("http://www.github.com/jwizenf3");
+        URI uri4 = URI.create("http://www.github.com/jwizenf4");
+        this.store.put(new ByteArrayInputStream("small text one".getBytes()), uri1, DocumentFormat.TXT);
+        this.store.put(new ByteArrayInputStream(new byte[2000]), uri2, DocumentFormat.BINARY);
+        this.store.put(new ByteArrayInputStream("small text two".getBytes()), uri3, DocumentFormat.TXT);
+        this.store.put(new ByteArrayInputStream("small text three".getBytes()), uri4, DocumentFormat.TXT);
+        // LRU would move the oldest document out, but the binary one frees the most memory
+        this.store.setMaxDocumentBytes(1000);
+        assertTrue(isOnDisk(uri2));
+        assertFalse(isOnDisk(uri1));
+        assertFalse(isOnDisk(uri3));
+        assertFalse(isOnDisk(uri4));
+        assertThrows(IllegalStateException.class, () -> this.store.setPersistenceManager(pm));
+    }
+
+    @Test
+    public void testGDSFReadOfDocumentItMovesToDiskAgain() throws IOException {
+        // Every read costs the same, since measured times would let the binary document's uses outweigh its size
+        this.store.setEvictionPolicy(new GDSFEvictionPolicy<>());
+        this.store.setMaxDocumentBytes(1010);
+        URI uri1 = URI.create("http://www.github.com/jwizenf1");
+        URI uri2 = URI.create("http://www.github.com/jwizenf2");
+        URI uri3 = URI.create("http://www.github.com/jwizenf3");
+        this.store.put(new ByteArrayInputStream("small text one".getBytes()), uri1, DocumentFormat.TXT);
+        this.store.put(new ByteArrayInputStream("small text two".getBytes()), uri2, DocumentFormat.TXT);
+        this.store.put(new ByteArrayInputStream(new byte[1000]), uri3, DocumentFormat.BINARY);
+        assertTrue(isOnDisk(uri3));
+        // Each read brings the binary document back, and it is the first to go again
+        assertEquals(1000, this.store.get(uri3).getDocumentBinaryData().length);
+        assertTrue(isOnDisk(uri3));
+        assertNull(this.store.setMetadata(uri3, "author", "Jeremy"));
+        assertTrue(isOnDisk(uri3));
+        assertEquals("Jeremy", this.store.getMetadata(uri3, "author"));
+        assertTrue(isOnDisk(uri3));
+        assertFalse(isOnDisk(uri1));
+        assertFalse(isOnDisk(uri2));
+    }
+}
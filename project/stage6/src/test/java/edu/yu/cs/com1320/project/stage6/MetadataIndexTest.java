@@ -0,0 +1,61 @@
+package edu.yu.cs.com1320.project.stage6;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+
+import edu.yu.cs.com1320.project.stage6.impl.MetadataIndex;
+import edu.yu.cs.com1320.project.stage6.impl.PostingList;
+
+public class MetadataIndexTest {
+    private MetadataIndex index;
+
+    @BeforeEach
+    void setup() {
+        this.index = new MetadataIndex();
+        this.index.add(1, Map.of("author", "me", "year", "2024"));
+        this.index.add(2, Map.of("author", "me", "year", "2023"));
+        this.index.add(4, Map.of("author", "you", "year", "2024"));
+        this.index.add(6, Map.of("author", "me", "year", "2024", "lang", "en"));
+    }
+
+    @Test
+    public void testSearchIntersectsAllPairs() {
+        PostingList ids = this.index.search(Map.of("author", "me", "year", "2024"));
+        assertEquals(2, ids.size());
+        assertEquals(1, ids.getId(0));
+        assertEquals(6, ids.getId(1));
+        assertEquals(3, this.index.search(Map.of("author", "me")).size());
+        assertEquals(1, this.index.search(Map.of("author", "me", "lang", "en")).size());
+        assertTrue(this.index.search(Map.of("author", "you", "year", "2023")).isEmpty());
+        assertTrue(this.index.search(Map.of("missing", "key")).isEmpty());
+        assertTrue(this.index.search(new HashMap<>()).isEmpty());
+        assertTrue(this.index.search(null).isEmpty());
+    }
+
+    @Test
+    public void testRemove() {
+        this.index.remove(6, "lang", "en");
+        assertNull(this.index.get("lang", "en"));
+        this.index.remove(1, Map.of("author", "me", "year", "2024"));
+        PostingList ids = this.index.search(Map.of("author", "me", "year", "2024"));
+        assertEquals(1, ids.size());
+        assertEquals(6, ids.getId(0));
+        // Removing a pair the id was never indexed under does nothing
+        this.index.remove(4, "author", "me");
+        assertEquals(2, this.index.get("author", "me").size());
+    }
+
+    @Test
+    public void testNullValuesAreNotIndexed() {
+        this.index.add(8, "author", null);
+        Map<String, String> searchMap = new HashMap<>();
+        searchMap.put("author", null);
+        assertTrue(this.index.search(searchMap).isEmpty());
+    }
+}
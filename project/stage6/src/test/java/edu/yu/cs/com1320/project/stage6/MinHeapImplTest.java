@@ -109,4 +109,43 @@ public class MinHeapImplTest {
         }
         assertEquals(Integer.valueOf(0), this.minHeap.peek());
     }
+
+    @Test
+    public void testRemoveElement() {
+        MinHeapImpl<Integer> heap = new MinHeapImpl<>();
+        for (int i = 1; i <= 20; i++) {
+            heap.insert((i * 7) % 20);
+        }
+        heap.remove(Integer.valueOf(0));
+        heap.remove(Integer.valueOf(13));
+        heap.remove(Integer.valueOf(19));
+        assertThrows(NoSuchElementException.class, () -> heap.remove(Integer.valueOf(13)));
+        int previous = -1;
+        for (int i = 0; i < 17; i++) {
+            int next = heap.remove();
+            assertTrue(next > previous);
+            assertNotEquals(13, next);
+            previous = next;
+        }
+        assertThrows(NoSuchElementException.class, () -> heap.remove());
+    }
+
+    @Test
+    public void testReheapifyAfterManySwaps() {
+        MinHeapImpl<Document> heap = new MinHeapImpl<>();
+        Document[] docs = new Document[50];
+        for (int i = 0; i < docs.length; i++) {
+            docs[i] = new DocumentImpl(URI.create("http://www.github.com/doc" + i), "text " + i, null);
+            docs[i].setLastUseTime(1000 + i);
+            heap.insert(docs[i]);
+        }
+        // Oldest becomes newest and a middle one becomes oldest
+        docs[0].setLastUseTime(5000);
+        heap.reHeapify(docs[0]);
+        docs[30].setLastUseTime(10);
+        heap.reHeapify(docs[30]);
+        assertEquals(docs[30], heap.remove());
+        heap.remove(docs[1]);
+        assertEquals(docs[2], heap.remove());
+    }
 }
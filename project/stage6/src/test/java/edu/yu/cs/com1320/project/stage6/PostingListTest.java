@@ -0,0 +1,66 @@
+package edu.yu.cs.com1320.project.stage6;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+
+import edu.yu.cs.com1320.project.stage6.impl.PostingList;
+
+public class PostingListTest {
+    private PostingList postings;
+
+    @BeforeEach
+    void setup() {
+        this.postings = new PostingList();
+        this.postings.put(5, 2);
+        this.postings.put(1, 7);
+        this.postings.put(9, 1);
+    }
+
+    @Test
+    public void testPutKeepsIdsSorted() {
+        assertEquals(3, this.postings.size());
+        assertEquals(1, this.postings.getId(0));
+        assertEquals(5, this.postings.getId(1));
+        assertEquals(9, this.postings.getId(2));
+        assertEquals(7, this.postings.getFrequency(1));
+        assertEquals(0, this.postings.getFrequency(4));
+    }
+
+    @Test
+    public void testPutReplacesFrequency() {
+        this.postings.put(5, 10);
+        assertEquals(3, this.postings.size());
+        assertEquals(10, this.postings.getFrequency(5));
+    }
+
+    @Test
+    public void testRemove() {
+        assertTrue(this.postings.remove(5));
+        assertFalse(this.postings.remove(5));
+        assertFalse(this.postings.contains(5));
+        assertEquals(2, this.postings.size());
+        assertEquals(9, this.postings.getId(1));
+        this.postings.remove(1);
+        this.postings.remove(9);
+        assertTrue(this.postings.isEmpty());
+    }
+
+    @Test
+    public void testIntersectKeepsFirstFrequencies() {
+        PostingList other = new PostingList();
+        other.put(0, 3);
+        other.put(5, 3);
+        other.put(9, 4);
+        other.put(12, 4);
+        PostingList intersection = PostingList.intersect(this.postings, other);
+        assertEquals(2, intersection.size());
+        assertEquals(5, intersection.getId(0));
+        assertEquals(2, intersection.getFrequencyAt(0));
+        assertEquals(9, intersection.getId(1));
+        assertEquals(1, intersection.getFrequencyAt(1));
+        assertTrue(PostingList.intersect(this.postings, new PostingList()).isEmpty());
+    }
+}
@@ -0,0 +1,204 @@
+package edu.yu.cs.com1320.project.stage6;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+
+import edu.yu.cs.com1320.project.Trie;
+import edu.yu.cs.com1320.project.impl.RadixTrieImpl;
+
+public class RadixTrieImplTest {
+    private Trie<Integer> trie;
+
+    @BeforeEach
+    void setup() {
+        this.trie = new RadixTrieImpl<>();
+        this.trie.put("She", 12);
+        this.trie.put("She", 5);
+        this.trie.put("She", 10);
+        this.trie.put("Sells", 25);
+        this.trie.put("Seashells", 37);
+        this.trie.put("Seashore", 28);
+        this.trie.put("Sel", 58);
+        this.trie.put("Bye", 10);
+        this.trie.put("Bye", 12);
+    }
+
+    @Test
+    public void testTriePut() {
+        String key1 = "test";
+        String key2 = "YES";
+        String key3 = "No04";
+        String key4 = "123";
+        Set<Integer> nums = new HashSet<>();
+        int num1 = 5;
+        nums.add(num1);
+        trie.put(key1, 5);
+        trie.put(key2, 5);
+        trie.put(key3, 5);
+        trie.put(key4, 5);
+        assertEquals(nums, trie.get(key1));
+        assertEquals(nums, trie.get(key2));
+        assertEquals(nums, trie.get(key3));
+        assertEquals(nums, trie.get(key4));
+    }
+
+    @Test
+    public void testTrieGetSorted() {
+        List<Integer> sortedValues = this.trie.getSorted("She", new Comparator<Integer>() {
+            @Override
+            public int compare(Integer int1, Integer int2) {
+                return int2 - int1;
+            }
+        });
+        List<Integer> nums = new ArrayList<>();
+        nums.add(12);
+        nums.add(10);
+        nums.add(5);
+        assertEquals(nums, sortedValues);
+    }
+
+    @Test
+    public void testTrieGetPrefixSorted() {
+        List<Integer> sortedValues = this.trie.getAllWithPrefixSorted("Se", new Comparator<Integer>() {
+            @Override
+            public int compare(Integer int1, Integer int2) {
+                return int2 - int1;
+            }
+        });
+        List<Integer> nums = new ArrayList<>();
+        nums.add(58);
+        nums.add(37);
+        nums.add(28);
+        nums.add(25);
+        assertEquals(nums, sortedValues);
+    }
+
+    @Test
+    public void testTrieGetAllWithPrefixKeepsEveryKey() {
+        this.trie.put("Seashore", 58);
+        List<Integer> values = this.trie.getAllWithPrefix("Se");
+        assertEquals(5, values.size());
+        values.sort(Comparator.naturalOrder());
+        assertEquals(List.of(25, 28, 37, 58, 58), values);
+        assertTrue(this.trie.getAllWithPrefix("Z").isEmpty());
+    }
+
+    @Test
+    public void testTrieDeleteAllWithPrefix() {
+        List<Integer> sortedValues = this.trie.getAllWithPrefixSorted("S", new Comparator<Integer>() {
+            @Override
+            public int compare(Integer int1, Integer int2) {
+                return int2 - int1;
+            }
+        });
+        Set<Integer> setValues = new HashSet<>();
+        setValues.addAll(sortedValues);
+        Set<Integer> deletedValues = this.trie.deleteAllWithPrefix("S");
+        assertEquals(setValues, deletedValues);
+        List<Integer> emptySet = new ArrayList<>();
+        assertEquals(emptySet, this.trie.getAllWithPrefixSorted("S", new Comparator<Integer>() {
+            @Override
+            public int compare(Integer int1, Integer int2) {
+                return int2 - int1;
+            }
+        }));
+    }
+
+    @Test
+    public void testTrieDeleteAll() {
+        Set<Integer> values = this.trie.get("Bye");
+        Set<Integer> deletedValues = this.trie.deleteAll("Bye");
+        assertEquals(values, deletedValues);
+        Set<Integer> emptySet = new HashSet<>();
+        values = this.trie.get("Bye");
+        assertEquals(emptySet, values);
+    }
+
+    @Test
+    public void testTrieDelete() {
+        Set<Integer> values = this.trie.get("Bye");
+        Integer deletedValue = this.trie.delete("Bye", 10);
+        assertEquals(10, deletedValue);
+        values = this.trie.get("Bye");
+        Set<Integer> expectedVales = new HashSet<>();
+        expectedVales.add(12);
+        assertEquals(expectedVales, values);
+        deletedValue = this.trie.delete("Bye", 12);
+        assertEquals(12, deletedValue);
+        expectedVales.remove(12);
+        assertEquals(expectedVales, this.trie.get("Bye"));
+    }
+
+    @Test
+    public void testTrieDeleteAndGetEmpty() {
+        Set<Integer> emptySet = new HashSet<>();
+        assertEquals(emptySet, this.trie.deleteAllWithPrefix("l"));
+        assertEquals(emptySet, this.trie.deleteAll("exist"));
+        assertNull(this.trie.delete("l", 5));
+        // Checked case sensitivity
+        assertEquals(emptySet, this.trie.get("bye"));
+    }
+
+    @Test
+    public void testSplitAndMergeEdges() {
+        this.trie.put("Seashell", 1);
+        this.trie.put("Seas", 2);
+        assertEquals(Set.of(1), this.trie.get("Seashell"));
+        assertEquals(Set.of(2), this.trie.get("Seas"));
+        assertEquals(Set.of(), this.trie.get("Seash"));
+        this.trie.deleteAll("Seas");
+        assertEquals(Set.of(1), this.trie.get("Seashell"));
+        assertEquals(Set.of(37), this.trie.get("Seashells"));
+        this.trie.delete("Seashell", 1);
+        assertEquals(Set.of(37), this.trie.get("Seashells"));
+        assertEquals(Set.of(28), this.trie.get("Seashore"));
+    }
+
+    @Test
+    public void testPrefixEndingInsideEdge() {
+        List<Integer> values = this.trie.getAllWithPrefix("Seas");
+        values.sort(Comparator.naturalOrder());
+        assertEquals(List.of(28, 37), values);
+        assertEquals(Set.of(28, 37), this.trie.deleteAllWithPrefix("Seash"));
+        assertTrue(this.trie.getAllWithPrefix("Sea").isEmpty());
+        assertEquals(Set.of(25), this.trie.get("Sells"));
+    }
+
+    @Test
+    public void testHighFanOutNode() {
+        String chars = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+        for (int i = 0; i < chars.length(); i++) {
+            this.trie.put("x" + chars.charAt(i), i);
+        }
+        for (int i = 0; i < chars.length(); i++) {
+            assertEquals(Set.of(i), this.trie.get("x" + chars.charAt(i)));
+        }
+        assertEquals(chars.length(), this.trie.getAllWithPrefix("x").size());
+        for (int i = 0; i < chars.length() - 1; i++) {
+            this.trie.deleteAll("x" + chars.charAt(i));
+        }
+        assertEquals(Set.of(chars.length() - 1), this.trie.get("x9"));
+        assertEquals(1, this.trie.getAllWithPrefix("x").size());
+    }
+
+    @Test
+    public void testTrieGetKeysWithPrefix() {
+        List<String> keys = this.trie.getKeysWithPrefix("Se");
+        keys.sort(null);
+        assertEquals(List.of("Seashells", "Seashore", "Sel", "Sells"), keys);
+        // A prefix ending partway through a key
+        assertEquals(List.of("Seashore"), this.trie.getKeysWithPrefix("Seasho"));
+        assertEquals(6, this.trie.getKeysWithPrefix("").size());
+        this.trie.deleteAll("Sel");
+        assertFalse(this.trie.getKeysWithPrefix("Se").contains("Sel"));
+        assertTrue(this.trie.getKeysWithPrefix("x").isEmpty());
+    }
+}
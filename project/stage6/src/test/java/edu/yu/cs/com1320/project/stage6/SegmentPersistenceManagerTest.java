@@ -0,0 +1,225 @@
+package edu.yu.cs.com1320.project.stage6;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+
+import edu.yu.cs.com1320.project.stage6.DocumentStore.DocumentFormat;
+import edu.yu.cs.com1320.project.stage6.impl.BinaryDocumentCodec;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentImpl;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentStoreImpl;
+import edu.yu.cs.com1320.project.stage6.impl.SegmentPersistenceManager;
+
+public class SegmentPersistenceManagerTest {
+    private Path directory;
+    private SegmentPersistenceManager pm;
+
+    @BeforeEach
+    void setup() throws IOException {
+        this.directory = Files.createTempDirectory("segments");
+        // Small segments so a handful of documents fills several
+        this.pm = new SegmentPersistenceManager(this.directory.toFile(), 400, 0.5);
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        this.pm.close();
+        try (Stream<Path> paths = Files.walk(this.directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    private Document createDocument(int i, String text) {
+        Document doc = new DocumentImpl(URI.create("http://www.github.com/doc" + i), text, null);
+        doc.setMetadataValue("number", Integer.toString(i));
+        return doc;
+    }
+
+    @Test
+    public void testSerializeAndDeserialize() throws IOException {
+        Document doc = createDocument(1, "hello segment store");
+        byte[] binary = { 1, 2, 3, 4 };
+        Document binaryDoc = new DocumentImpl(URI.create("http://www.github.com/binary"), binary);
+        this.pm.serialize(doc.getKey(), doc);
+        this.pm.serialize(binaryDoc.getKey(), binaryDoc);
+
+        assertEquals(doc, this.pm.peek(doc.getKey()));
+        assertEquals(1, this.pm.deserialize(doc.getKey()).wordCount("hello"));
+        // Reading a document back removes it from disk
+        assertNull(this.pm.deserialize(doc.getKey()));
+        assertArrayEquals(binary, this.pm.deserialize(binaryDoc.getKey()).getDocumentBinaryData());
+        assertFalse(this.pm.delete(binaryDoc.getKey()));
+    }
+
+    @Test
+    public void testReadsFromMappedSegments() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            Document doc = createDocument(i, "document number " + i);
+            this.pm.serialize(doc.getKey(), doc);
+        }
+        // Every segment but the last is full and read through its mapping
+        assertTrue(this.pm.getSegmentCount() > 2);
+        for (int i = 0; i < 10; i++) {
+            URI uri = URI.create("http://www.github.com/doc" + i);
+            assertEquals("document number " + i, this.pm.peek(uri).getDocumentTxt());
+            assertEquals("document number " + i, this.pm.deserialize(uri).getDocumentTxt());
+            assertNull(this.pm.peek(uri));
+        }
+    }
+
+    @Test
+    public void testCompactionDropsOverwrittenRecords() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            Document doc = createDocument(i, "first version of document " + i);
+            this.pm.serialize(doc.getKey(), doc);
+        }
+        for (int i = 0; i < 10; i++) {
+            Document doc = createDocument(i, "second version of document " + i);
+            this.pm.serialize(doc.getKey(), doc);
+        }
+        this.pm.compact();
+        // Each of the 20 records filled a segment, and the background thread may have compacted some of them already
+        assertTrue(this.pm.getSegmentCount() < 20);
+        for (int i = 0; i < 10; i++) {
+            Document doc = this.pm.peek(URI.create("http://www.github.com/doc" + i));
+            assertEquals("second version of document " + i, doc.getDocumentTxt());
+            assertEquals(Integer.toString(i), doc.getMetadataValue("number"));
+        }
+    }
+
+    @Test
+    public void testCompactionDropsTombstonesWithNothingOlderToDelete() throws IOException {
+        this.pm.close();
+        // Every record starts a segment of its own
+        this.pm = new SegmentPersistenceManager(this.directory.toFile(), 1, 0.5);
+        Document kept = createDocument(0, "kept in the oldest segment");
+        this.pm.serialize(kept.getKey(), kept);
+        for (int i = 1; i <= 5; i++) {
+            Document doc = createDocument(i, "deleted document " + i);
+            this.pm.serialize(doc.getKey(), doc);
+        }
+        for (int i = 1; i <= 5; i++) {
+            this.pm.delete(URI.create("http://www.github.com/doc" + i));
+        }
+        Document last = createDocument(6, "written last");
+        this.pm.serialize(last.getKey(), last);
+        this.pm.compact();
+        // The deleted documents' records are gone, so their tombstones aren't copied along
+        assertEquals(2, this.pm.getSegmentCount());
+        this.pm.close();
+        this.pm = new SegmentPersistenceManager(this.directory.toFile(), 1, 0.5);
+        assertEquals(kept, this.pm.peek(kept.getKey()));
+        assertEquals(last, this.pm.peek(last.getKey()));
+        for (int i = 1; i <= 5; i++) {
+            assertNull(this.pm.peek(URI.create("http://www.github.com/doc" + i)));
+        }
+    }
+
+    @Test
+    public void testFailedBackgroundCompactionFailsLaterCalls() throws Exception {
+        this.pm.close();
+        // Every record starts a segment of its own
+        this.pm = new SegmentPersistenceManager(this.directory.toFile(), 1, 0.5);
+        Document first = createDocument(1, "first version");
+        this.pm.serialize(first.getKey(), first);
+        Document other = createDocument(2, "starts the second segment");
+        this.pm.serialize(other.getKey(), other);
+        // The oldest segment's record no longer matches its checksum, so copying it fails
+        try (RandomAccessFile file = new RandomAccessFile(this.directory.resolve("segment-000001.log").toFile(), "rw")) {
+            file.seek(file.length() - 1);
+            file.write(0);
+        }
+        Document second = createDocument(1, "second version");
+        this.pm.serialize(second.getKey(), second);
+        // The background thread records the failure some time after the overwrite scheduled it
+        IOException thrown = null;
+        for (int i = 0; i < 1000 && thrown == null; i++) {
+            try {
+                this.pm.serialize(second.getKey(), second);
+                Thread.sleep(1);
+            } catch (IOException e) {
+                thrown = e;
+            }
+        }
+        assertNotNull(thrown);
+        assertThrows(IOException.class, () -> this.pm.compact());
+        assertThrows(IOException.class, () -> this.pm.close());
+        // The failure sticks, so cleanup gets a manager it can close
+        this.pm = new SegmentPersistenceManager(this.directory.resolve("unused").toFile());
+    }
+
+    @Test
+    public void testReopenReplaysSegments() throws IOException {
+        for (int i = 0; i < 6; i++) {
+            Document doc = createDocument(i, "document number " + i);
+            this.pm.serialize(doc.getKey(), doc);
+        }
+        this.pm.delete(URI.create("http://www.github.com/doc2"));
+        this.pm.deserialize(URI.create("http://www.github.com/doc4"));
+        this.pm.close();
+        // A record cut short, as if the process died while appending it
+        File[] files = this.directory.toFile().listFiles();
+        File last = files[0];
+        for (File file : files) {
+            if (file.getName().compareTo(last.getName()) > 0) {
+                last = file;
+            }
+        }
+        try (FileOutputStream out = new FileOutputStream(last, true)) {
+            out.write(new byte[] { 0, 0, 0, 1, 0, 0 });
+        }
+
+        this.pm = new SegmentPersistenceManager(this.directory.toFile(), 400, 0.5);
+        assertEquals("document number 1", this.pm.peek(URI.create("http://www.github.com/doc1")).getDocumentTxt());
+        assertEquals("document number 5", this.pm.peek(URI.create("http://www.github.com/doc5")).getDocumentTxt());
+        assertNull(this.pm.peek(URI.create("http://www.github.com/doc2")));
+        assertNull(this.pm.peek(URI.create("http://www.github.com/doc4")));
+        Document doc = createDocument(7, "written after reopening");
+        this.pm.serialize(doc.getKey(), doc);
+        assertEquals(doc, this.pm.peek(doc.getKey()));
+    }
+
+    @Test
+    public void testSwitchingCodecKeepsOldRecordsReadable() throws IOException {
+        Document jsonDoc = createDocument(1, "written as json");
+        this.pm.serialize(jsonDoc.getKey(), jsonDoc);
+        this.pm.close();
+        this.pm = new SegmentPersistenceManager(this.directory.toFile(), 400, 0.5, new BinaryDocumentCodec());
+        Document binaryDoc = createDocument(2, "written as binary");
+        this.pm.serialize(binaryDoc.getKey(), binaryDoc);
+        assertEquals(jsonDoc, this.pm.peek(jsonDoc.getKey()));
+        assertEquals(binaryDoc, this.pm.peek(binaryDoc.getKey()));
+        this.pm.close();
+        this.pm = new SegmentPersistenceManager(this.directory.toFile(), 400, 0.5);
+        assertEquals(binaryDoc, this.pm.peek(binaryDoc.getKey()));
+    }
+
+    @Test
+    public void testDocumentStoreWithSegments() throws IOException {
+        DocumentStoreImpl store = new DocumentStoreImpl();
+        store.setPersistenceManager(this.pm);
+        store.setMaxDocumentCount(2);
+        for (int i = 1; i <= 5; i++) {
+            URI uri = URI.create("http://www.github.com/doc" + i);
+            store.put(new ByteArrayInputStream(("segment document " + i).getBytes()), uri, DocumentFormat.TXT);
+        }
+        assertEquals(5, store.search("segment").size());
+        assertEquals("segment document 1", store.get(URI.create("http://www.github.com/doc1")).getDocumentTxt());
+        assertTrue(store.delete(URI.create("http://www.github.com/doc3")));
+        assertEquals(4, store.search("document").size());
+    }
+}
@@ -0,0 +1,138 @@
+package edu.yu.cs.com1320.project.stage6;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.yu.cs.com1320.project.stage6.DocumentStore.DocumentFormat;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentPersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentStoreImpl;
+import edu.yu.cs.com1320.project.stage6.impl.SpillingPersistenceManager;
+
+public class SpillingPersistenceManagerTest {
+    private Path dir;
+    private DocumentStoreImpl store;
+
+    @BeforeEach
+    void setup() throws IOException {
+        this.dir = Files.createTempDirectory("spilling");
+        this.store = new DocumentStoreImpl(this.dir.toFile());
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        try (Stream<Path> paths = Files.walk(this.dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private boolean isOnDisk(URI uri) {
+        return Files.exists(this.dir.resolve(uri.getHost() + uri.getPath() + ".json"));
+    }
+
+    // Keeps values in a map, and holds every write until a permit is released for it
+    private static class BlockingPersistenceManager implements PersistenceManager<String, String> {
+        private final Map<String, String> stored = new HashMap<>();
+        private final Semaphore writing = new Semaphore(0);
+        private final Semaphore permits = new Semaphore(0);
+
+        public void serialize(String key, String val) throws IOException {
+            this.writing.release();
+            try {
+                this.permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (this) {
+                this.stored.put(key, val);
+            }
+        }
+
+        public synchronized String deserialize(String key) {
+            return this.stored.remove(key);
+        }
+
+        public synchronized boolean delete(String key) {
+            return this.stored.remove(key) != null;
+        }
+
+        private synchronized String get(String key) {
+            return this.stored.get(key);
+        }
+    }
+
+    @Test
+    public void testDeserializeOfQueuedValueDeletesOlderValueBeingWritten() throws Exception {
+        BlockingPersistenceManager inner = new BlockingPersistenceManager();
+        SpillingPersistenceManager<String, String> pm = new SpillingPersistenceManager<>(inner);
+        pm.serialize("key", "older");
+        assertTrue(inner.writing.tryAcquire(10, TimeUnit.SECONDS));
+        // The older value is being written while the newer one waits behind another key's, so the reader gets in
+        // once the older value lands and before the newer one is written
+        pm.serialize("other", "value");
+        pm.serialize("key", "newer");
+        AtomicReference<String> read = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                read.set(pm.deserialize("key"));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        reader.start();
+        while (reader.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        inner.permits.release();
+        reader.join();
+        assertEquals("newer", read.get());
+        // The older value landed while the reader waited, and would otherwise be left on disk
+        assertNull(inner.get("key"));
+        inner.permits.release(Integer.MAX_VALUE / 2);
+        pm.close();
+        assertEquals("value", inner.get("other"));
+        assertNull(inner.get("key"));
+    }
+
+    @Test
+    public void testStoreWritesDocumentsInBackground() throws IOException {
+        SpillingPersistenceManager<URI, Document> pm = new SpillingPersistenceManager<>(
+                new DocumentPersistenceManager(this.dir.toFile()));
+        this.store.setPersistenceManager(pm);
+        this.store.setMaxDocumentCount(2);
+        this.store.setLowWatermark(0.5);
+        URI uri1 = URI.create("http://www.github.com/jwizenf1");
+        URI uri2 = URI.create("http://www.github.com/jwizenf2");
+        URI uri3 = URI.create("http://www.github.com/jwizenf3");
+        this.store.put(new ByteArrayInputStream("first document".getBytes()), uri1, DocumentFormat.TXT);
+        this.store.put(new ByteArrayInputStream("second document".getBytes()), uri2, DocumentFormat.TXT);
+        this.store.put(new ByteArrayInputStream("third document".getBytes()), uri3, DocumentFormat.TXT);
+        pm.flush();
+        assertTrue(isOnDisk(uri1));
+        assertTrue(isOnDisk(uri2));
+        assertFalse(isOnDisk(uri3));
+        // Reading back goes through the spilling manager and removes the file
+        assertEquals("first document", this.store.get(uri1).getDocumentTxt());
+        pm.flush();
+        assertFalse(isOnDisk(uri1));
+        pm.close();
+    }
+}
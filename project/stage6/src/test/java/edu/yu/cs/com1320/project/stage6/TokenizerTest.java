@@ -0,0 +1,41 @@
+package edu.yu.cs.com1320.project.stage6;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+
+import edu.yu.cs.com1320.project.stage6.impl.Tokenizer;
+
+public class TokenizerTest {
+
+    @Test
+    public void testCountsWords() {
+        Map<String, Integer> words = Tokenizer.countWords("the cat and the hat and the bat");
+        assertEquals(5, words.size());
+        assertEquals(3, words.get("the"));
+        assertEquals(2, words.get("and"));
+        assertEquals(1, words.get("bat"));
+    }
+
+    @Test
+    public void testDropsPunctuationInsideWords() {
+        Map<String, Integer> words = Tokenizer.countWords("Don't stop, it's 2024! (really)");
+        assertEquals(Map.of("Dont", 1, "stop", 1, "its", 1, "2024", 1, "really", 1), words);
+    }
+
+    @Test
+    public void testSplitsOnAnyWhitespaceWithoutEmptyWords() {
+        Map<String, Integer> words = Tokenizer.countWords("  one\ttwo\n\nthree   one -- \r\n");
+        assertEquals(Map.of("one", 2, "two", 1, "three", 1), words);
+        assertTrue(Tokenizer.countWords(" ... ").isEmpty());
+    }
+
+    @Test
+    public void testLongWordWithDroppedCharacters() {
+        String word = "a".repeat(100) + "-" + "b".repeat(100);
+        Map<String, Integer> words = Tokenizer.countWords(word + " " + word);
+        assertEquals(2, words.get("a".repeat(100) + "b".repeat(100)));
+    }
+}
@@ -81,6 +81,16 @@ public class TrieImplTest {
         assertEquals(nums, sortedValues);
     }
 
+    @Test
+    public void testTrieGetAllWithPrefixKeepsEveryKey() {
+        this.trie.put("Seashore", 58);
+        List<Integer> values = this.trie.getAllWithPrefix("Se");
+        assertEquals(5, values.size());
+        values.sort(Comparator.naturalOrder());
+        assertEquals(List.of(25, 28, 37, 58, 58), values);
+        assertTrue(this.trie.getAllWithPrefix("Z").isEmpty());
+    }
+
     @Test
     public void testTrieDeleteAllWithPrefix() {
         List<Integer> sortedValues = this.trie.getAllWithPrefixSorted("S", new Comparator<Integer>() {
@@ -136,4 +146,17 @@ public class TrieImplTest {
         // Checked case sensitivity
         assertEquals(emptySet, this.trie.get("bye"));
     }
+
+    @Test
+    public void testTrieGetKeysWithPrefix() {
+        List<String> keys = this.trie.getKeysWithPrefix("Se");
+        keys.sort(null);
+        assertEquals(List.of("Seashells", "Seashore", "Sel", "Sells"), keys);
+        // A prefix ending partway through a key
+        assertEquals(List.of("Seashore"), this.trie.getKeysWithPrefix("Seasho"));
+        assertEquals(6, this.trie.getKeysWithPrefix("").size());
+        this.trie.deleteAll("Sel");
+        assertFalse(this.trie.getKeysWithPrefix("Se").contains("Sel"));
+        assertTrue(this.trie.getKeysWithPrefix("x").isEmpty());
+    }
 }
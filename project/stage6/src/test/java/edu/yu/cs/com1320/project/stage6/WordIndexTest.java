@@ -0,0 +1,62 @@
+package edu.yu.cs.com1320.project.stage6;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+
+import edu.yu.cs.com1320.project.impl.TrieImpl;
+import edu.yu.cs.com1320.project.stage6.impl.PostingList;
+import edu.yu.cs.com1320.project.stage6.impl.WordIndex;
+
+public class WordIndexTest {
+    private WordIndex index;
+
+    @BeforeEach
+    void setup() {
+        this.index = new WordIndex(new TrieImpl<>());
+        this.index.add(3, Map.of("sea", 3, "shell", 1));
+        this.index.add(0, Map.of("seal", 1, "seam", 1));
+        this.index.add(7, Map.of("seam", 2, "tide", 4));
+    }
+
+    @Test
+    public void testGetWithPrefixSumsFrequencies() {
+        PostingList postings = this.index.getWithPrefix("se");
+        assertEquals(3, postings.size());
+        int[] expectedIds = { 0, 3, 7 };
+        int[] expectedFrequencies = { 2, 3, 2 };
+        for (int i = 0; i < postings.size(); i++) {
+            assertEquals(expectedIds[i], postings.getId(i));
+            assertEquals(expectedFrequencies[i], postings.getFrequencyAt(i));
+        }
+        assertEquals(4, this.index.getWithPrefix("s").getFrequency(3));
+        assertTrue(this.index.getWithPrefix("x").isEmpty());
+    }
+
+    @Test
+    public void testRepeatedPrefixQueriesDontLeakScores() {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(2, this.index.getWithPrefix("se").getFrequency(0));
+            assertEquals(4, this.index.getWithPrefix("s").getFrequency(3));
+        }
+    }
+
+    @Test
+    public void testPrefixCacheInvalidatedByChanges() {
+        assertEquals(2, this.index.getWithPrefix("sea").getFrequency(7));
+        this.index.add(12, Map.of("seaweed", 5));
+        assertEquals(5, this.index.getWithPrefix("sea").getFrequency(12));
+        this.index.remove(7, Set.of("seam", "tide"));
+        assertFalse(this.index.getWithPrefix("sea").contains(7));
+        this.index.remove(12, Set.of("seaweed"));
+        assertFalse(this.index.getWithPrefix("sea").contains(12));
+        this.index.remove(0, Set.of("seal", "seam"));
+        this.index.remove(3, Set.of("sea", "shell"));
+        assertTrue(this.index.getWithPrefix("sea").isEmpty());
+    }
+}
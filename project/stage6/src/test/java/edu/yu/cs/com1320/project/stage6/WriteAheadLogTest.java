@@ -0,0 +1,277 @@
+package edu.yu.cs.com1320.project.stage6;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.yu.cs.com1320.project.stage6.DocumentStore.DocumentFormat;
+import edu.yu.cs.com1320.project.stage6.impl.ConcurrentDocumentStoreImpl;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentPersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentStoreImpl;
+import edu.yu.cs.com1320.project.stage6.impl.SpillingPersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.WriteAheadLog;
+
+public class WriteAheadLogTest {
+    private Path dir;
+
+    @BeforeEach
+    void setup() throws IOException {
+        this.dir = Files.createTempDirectory("wal");
+    }
+
+    @AfterEach
+    void cleanup() throws IOException {
+        try (Stream<Path> paths = Files.walk(this.dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    // A log whose disk stops taking forces, as a failing fsync would
+    private static class FailingLog extends WriteAheadLog {
+        private volatile boolean failing;
+        private final CountDownLatch failed = new CountDownLatch(1);
+
+        private FailingLog(File file) throws IOException {
+            super(file, FsyncPolicy.GROUP_COMMIT, 1);
+        }
+
+        @Override
+        public void force() throws IOException {
+            if (this.failing) {
+                this.failed.countDown();
+                throw new IOException("fsync failed");
+            }
+            super.force();
+        }
+    }
+
+    @Test
+    public void testFailedGroupCommitFailsLaterWrites() throws Exception {
+        DocumentStoreImpl store = new DocumentStoreImpl(this.dir.toFile());
+        FailingLog log = new FailingLog(this.dir.resolve("wal.log").toFile());
+        store.setWriteAheadLog(log);
+        URI uri1 = URI.create("http://www.github.com/jwizenf1");
+        URI uri2 = URI.create("http://www.github.com/jwizenf2");
+        store.put(new ByteArrayInputStream("alpha".getBytes()), uri1, DocumentFormat.TXT);
+        log.failing = true;
+        assertTrue(log.failed.await(10, TimeUnit.SECONDS));
+        // Waiting for the group commit thread's next force to fail doesn't mean it has recorded the failure yet
+        IOException thrown = null;
+        for (int i = 0; i < 1000 && thrown == null; i++) {
+            try {
+                store.setMetadata(uri1, "attempt", Integer.toString(i));
+                Thread.sleep(1);
+            } catch (IOException e) {
+                thrown = e;
+            }
+        }
+        assertNotNull(thrown);
+        assertThrows(IOException.class,
+                () -> store.put(new ByteArrayInputStream("beta".getBytes()), uri2, DocumentFormat.TXT));
+        assertNull(store.get(uri2));
+        log.failing = false;
+        // The failure sticks, since records written before it may never have reached the disk
+        assertThrows(IOException.class, () -> log.close());
+    }
+
+    @Test
+    public void testCloseForcesAndClosesTheLog() throws IOException {
+        URI uri1 = URI.create("http://www.github.com/jwizenf1");
+        URI uri2 = URI.create("http://www.github.com/jwizenf2");
+        DocumentStoreImpl store = new DocumentStoreImpl(this.dir.toFile(), WriteAheadLog.FsyncPolicy.GROUP_COMMIT);
+        store.put(new ByteArrayInputStream("alpha".getBytes()), uri1, DocumentFormat.TXT);
+        store.close();
+        assertThrows(IOException.class,
+                () -> store.put(new ByteArrayInputStream("beta".getBytes()), uri2, DocumentFormat.TXT));
+
+        ConcurrentDocumentStoreImpl concurrent = new ConcurrentDocumentStoreImpl(
+                new DocumentStoreImpl(this.dir.toFile(), WriteAheadLog.FsyncPolicy.GROUP_COMMIT));
+        assertEquals("alpha", concurrent.get(uri1).getDocumentTxt());
+        concurrent.put(new ByteArrayInputStream("beta".getBytes()), uri2, DocumentFormat.TXT);
+        concurrent.close();
+        assertThrows(IOException.class, () -> concurrent.setMetadata(uri1, "author", "Jeremy"));
+        DocumentStoreImpl reopened = new DocumentStoreImpl(this.dir.toFile(), WriteAheadLog.FsyncPolicy.NONE);
+        assertEquals("beta", reopened.get(uri2).getDocumentTxt());
+        assertNull(reopened.getMetadata(uri1, "author"));
+        reopened.close();
+    }
+
+    // Writes slowly, so documents moved to disk are still queued in a SpillingPersistenceManager around it
+    private static class SlowPersistenceManager extends DocumentPersistenceManager {
+        private SlowPersistenceManager(File baseDir) {
+            super(baseDir);
+        }
+
+        @Override
+        public void serialize(URI key, Document val) throws IOException {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            super.serialize(key, val);
+        }
+    }
+
+    @Test
+    public void testCheckpointWaitsForDocumentsStillBeingMovedToDisk() throws IOException {
+        DocumentStoreImpl store = new DocumentStoreImpl(this.dir.toFile(), WriteAheadLog.FsyncPolicy.ALWAYS);
+        store.setPersistenceManager(new SpillingPersistenceManager<>(new SlowPersistenceManager(this.dir.toFile())));
+        store.setMaxDocumentCount(1);
+        for (int i = 1; i <= 4; i++) {
+            URI uri = URI.create("http://www.github.com/jwizenf" + i);
+            store.put(new ByteArrayInputStream(("document " + i).getBytes()), uri, DocumentFormat.TXT);
+        }
+        store.checkpoint();
+        // The log no longer has them, so the checkpoint is only safe once their files are written
+        for (int i = 1; i <= 3; i++) {
+            assertTrue(Files.exists(this.dir.resolve("www.github.com/jwizenf" + i + ".json")));
+        }
+        store.close();
+        DocumentStoreImpl reopened = new DocumentStoreImpl(this.dir.toFile(), WriteAheadLog.FsyncPolicy.NONE);
+        assertEquals(4, reopened.search("document").size());
+        reopened.close();
+    }
+
+    @Test
+    public void testWriteAheadLogRecoversAfterRestart() throws IOException {
+        DocumentStoreImpl before = new DocumentStoreImpl(this.dir.toFile(), WriteAheadLog.FsyncPolicy.ALWAYS);
+        URI uri1 = URI.create("http://www.github.com/jwizenf1");
+        URI uri2 = URI.create("http://www.github.com/jwizenf2");
+        URI uri3 = URI.create("http://www.github.com/jwizenf3");
+        URI uri4 = URI.create("http://www.github.com/jwizenf4");
+        byte[] data = { 1, 2, 3, 4 };
+        before.put(new ByteArrayInputStream("first document alpha".getBytes()), uri1, DocumentFormat.TXT);
+        before.setMetadata(uri1, "author", "Jeremy");
+        before.put(new ByteArrayInputStream("second document alpha".getBytes()), uri2, DocumentFormat.TXT);
+        before.delete(uri2);
+        before.undo();
+        before.put(new ByteArrayInputStream(data), uri3, DocumentFormat.BINARY);
+        before.put(new ByteArrayInputStream("fourth document".getBytes()), uri4, DocumentFormat.TXT);
+        before.deleteAll("fourth");
+        before.setMetadata(uri1, "author", "Someone");
+        before.undo(uri1);
+        // The process dies partway through writing a record
+        Files.write(this.dir.resolve("wal.log"), new byte[] { 0, 0, 0, 7, 0, 0, 0, 99, 1 }, StandardOpenOption.APPEND);
+
+        DocumentStoreImpl after = new DocumentStoreImpl(this.dir.toFile(), WriteAheadLog.FsyncPolicy.ALWAYS);
+        assertEquals("Jeremy", after.getMetadata(uri1, "author"));
+        assertEquals(2, after.search("alpha").size());
+        assertEquals("second document alpha", after.get(uri2).getDocumentTxt());
+        assertArrayEquals(data, after.get(uri3).getDocumentBinaryData());
+        assertNull(after.get(uri4));
+        assertThrows(IllegalStateException.class, () -> after.undo());
+        // The torn record was cut off, so records written after recovery are read too
+        after.delete(uri3);
+        assertNull(new DocumentStoreImpl(this.dir.toFile(), WriteAheadLog.FsyncPolicy.NONE).get(uri3));
+    }
+
+    @Test
+    public void testChangeTheLogCantRecordDoesNotHappen() throws IOException {
+        DocumentStoreImpl store = new DocumentStoreImpl(this.dir.toFile());
+        WriteAheadLog log = new WriteAheadLog(this.dir.resolve("wal.log").toFile(), WriteAheadLog.FsyncPolicy.ALWAYS);
+        store.setWriteAheadLog(log);
+        URI uri1 = URI.create("http://www.github.com/jwizenf1");
+        URI uri2 = URI.create("http://www.github.com/jwizenf2");
+        // UTF-8 text is read back the same way it was put, whatever the platform charset
+        store.put(new ByteArrayInputStream("caf\u00e9 alpha".getBytes(StandardCharsets.UTF_8)), uri1, DocumentFormat.TXT);
+        log.close();
+        assertThrows(IOException.class,
+                () -> store.put(new ByteArrayInputStream("beta".getBytes()), uri2, DocumentFormat.TXT));
+        assertNull(store.get(uri2));
+        assertThrows(IOException.class, () -> store.setMetadata(uri1, "author", "Jeremy"));
+        assertNull(store.getMetadata(uri1, "author"));
+        assertThrows(UncheckedIOException.class, () -> store.delete(uri1));
+        assertThrows(UncheckedIOException.class, () -> store.deleteAll("alpha"));
+        assertEquals(1, store.search("alpha").size());
+
+        DocumentStoreImpl after = new DocumentStoreImpl(this.dir.toFile(), WriteAheadLog.FsyncPolicy.NONE);
+        assertEquals("caf\u00e9 alpha", after.get(uri1).getDocumentTxt());
+        assertNull(after.get(uri2));
+    }
+
+    @Test
+    public void testCheckpointReplaysOnlyLaterRecords() throws IOException {
+        DocumentStoreImpl before = new DocumentStoreImpl(this.dir.toFile(), WriteAheadLog.FsyncPolicy.ALWAYS);
+        before.setMaxDocumentCount(2);
+        URI uri1 = URI.create("http://www.github.com/jwizenf1");
+        URI uri2 = URI.create("http://www.github.com/jwizenf2");
+        URI uri3 = URI.create("http://www.github.com/jwizenf3");
+        before.put(new ByteArrayInputStream("apple banana".getBytes()), uri1, DocumentFormat.TXT);
+        before.setMetadata(uri1, "author", "Nobody");
+        before.put(new ByteArrayInputStream("apple cherry".getBytes()), uri2, DocumentFormat.TXT);
+        before.put(new ByteArrayInputStream("banana date".getBytes()), uri3, DocumentFormat.TXT);
+        before.setMetadata(uri2, "author", "Jeremy");
+        before.checkpoint();
+        assertEquals(0, Files.size(this.dir.resolve("wal.log")));
+        assertTrue(Files.exists(this.dir.resolve("wal.log.checkpoint")));
+        // uri1 was on disk at the checkpoint and is written there again with new metadata
+        before.setMetadata(uri1, "author", "Someone");
+        before.get(uri2);
+        before.get(uri3);
+        before.put(new ByteArrayInputStream("elderberry".getBytes()), uri3, DocumentFormat.TXT);
+        before.delete(uri2);
+
+        DocumentStoreImpl after = new DocumentStoreImpl(this.dir.toFile(), WriteAheadLog.FsyncPolicy.NONE);
+        List<Document> apple = after.search("apple");
+        assertEquals(1, apple.size());
+        assertEquals(uri1, apple.get(0).getKey());
+        assertEquals(1, after.search("banana").size());
+        assertEquals(uri3, after.search("elderberry").get(0).getKey());
+        Map<String, String> someone = new HashMap<>();
+        someone.put("author", "Someone");
+        assertEquals(1, after.searchByMetadata(someone).size());
+        Map<String, String> jeremy = new HashMap<>();
+        jeremy.put("author", "Jeremy");
+        assertTrue(after.searchByMetadata(jeremy).isEmpty());
+        Map<String, String> nobody = new HashMap<>();
+        nobody.put("author", "Nobody");
+        assertTrue(after.searchByMetadata(nobody).isEmpty());
+        assertNull(after.get(uri2));
+    }
+
+    @Test
+    public void testCheckpointedDocumentReadBackIsEvictedAgain() throws IOException {
+        DocumentStoreImpl before = new DocumentStoreImpl(this.dir.toFile(), WriteAheadLog.FsyncPolicy.ALWAYS);
+        URI uri1 = URI.create("http://www.github.com/jwizenf1");
+        URI uri2 = URI.create("http://www.github.com/jwizenf2");
+        URI uri3 = URI.create("http://www.github.com/jwizenf3");
+        before.put(new ByteArrayInputStream("alpha".getBytes()), uri1, DocumentFormat.TXT);
+        before.put(new ByteArrayInputStream("beta".getBytes()), uri2, DocumentFormat.TXT);
+        before.setMaxDocumentCount(1);
+        before.checkpoint();
+
+        DocumentStoreImpl after = new DocumentStoreImpl(this.dir.toFile(), WriteAheadLog.FsyncPolicy.NONE);
+        after.setMaxDocumentCount(1);
+        // Read back from the checkpoint's copy on disk, then pushed out again by the next put
+        assertEquals("alpha", after.get(uri1).getDocumentTxt());
+        after.put(new ByteArrayInputStream("gamma".getBytes()), uri3, DocumentFormat.TXT);
+        assertTrue(Files.exists(this.dir.resolve("www.github.com/jwizenf1.json")));
+        assertEquals(uri1, after.search("alpha").get(0).getKey());
+        assertEquals("beta", after.get(uri2).getDocumentTxt());
+    }
+}
@@ -0,0 +1,94 @@
+package edu.yu.cs.com1320.project.stage6.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentStore.DocumentFormat;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentImpl;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentPersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentStoreImpl;
+
+/**
+ * Times bringing a directory of documents written by DocumentPersistenceManager into a new store: reading every file
+ * on one thread and putting its text again, which tokenizes it, vs adoptPersistedDocuments, which decodes the files on
+ * a fork join pool and indexes the stored word counts. Also times decoding alone with one thread and with every
+ * processor. Pass the number of documents (default 10000).
+ *
+ * Run from the stage6 directory after "mvn test-compile":
+ * java -cp target/classes:target/test-classes edu.yu.cs.com1320.project.stage6.bench.AdoptBenchmark [documents]
+ */
+public class AdoptBenchmark {
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int processors = Runtime.getRuntime().availableProcessors();
+        Path dir = Files.createTempDirectory("adopt");
+        DocumentPersistenceManager pm = new DocumentPersistenceManager(dir.toFile());
+        Random random = new Random(1320);
+        List<URI> uris = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            URI uri = URI.create("http://www.bench.com/documents/doc" + i);
+            StringBuilder text = new StringBuilder();
+            for (int j = 0; j < 200; j++) {
+                text.append("word").append((int) Math.pow(20000, random.nextDouble())).append(' ');
+            }
+            Document doc = new DocumentImpl(uri, text.toString(), null);
+            doc.setMetadataValue("number", Integer.toString(i));
+            pm.serialize(uri, doc);
+            uris.add(uri);
+        }
+        System.out.printf("%d documents, %d processors%n", count, processors);
+        System.out.printf("%-22s %10s%n", "", "ms");
+        for (int round = 0; round < ROUNDS; round++) {
+            // Only the last round is reported, the others warm up the JIT
+            boolean report = round == ROUNDS - 1;
+            // Its own directory, since a put finds the files already in dir
+            Path empty = Files.createTempDirectory("reindex");
+            long start = System.nanoTime();
+            DocumentStoreImpl reindexed = new DocumentStoreImpl(empty.toFile());
+            for (URI uri : uris) {
+                Document doc = pm.peek(uri);
+                reindexed.put(new ByteArrayInputStream(doc.getDocumentTxt().getBytes()), uri, DocumentFormat.TXT);
+            }
+            long reindexNanos = System.nanoTime() - start;
+            reindexed = null;
+            empty.toFile().delete();
+            System.gc();
+            start = System.nanoTime();
+            new DocumentStoreImpl(dir.toFile()).adoptPersistedDocuments();
+            long adoptNanos = System.nanoTime() - start;
+            long oneThreadNanos = decode(pm, 1);
+            long allThreadsNanos = decode(pm, processors);
+            if (report) {
+                System.out.printf("%-22s %10.1f%n", "read and put again", reindexNanos / 1e6);
+                System.out.printf("%-22s %10.1f%n", "adopt", adoptNanos / 1e6);
+                System.out.printf("%-22s %10.1f%n", "decode, 1 thread", oneThreadNanos / 1e6);
+                System.out.printf("%-22s %10.1f%n", "decode, " + processors + " threads", allThreadsNanos / 1e6);
+            }
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private static long decode(DocumentPersistenceManager pm, int parallelism) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        long start = System.nanoTime();
+        pm.readAll(pool, doc -> {
+        });
+        long nanos = System.nanoTime() - start;
+        pool.shutdown();
+        return nanos;
+    }
+}
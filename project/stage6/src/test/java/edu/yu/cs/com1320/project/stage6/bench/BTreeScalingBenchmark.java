@@ -0,0 +1,106 @@
+package edu.yu.cs.com1320.project.stage6.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.yu.cs.com1320.project.BTree;
+import edu.yu.cs.com1320.project.impl.BTreeImpl;
+import edu.yu.cs.com1320.project.impl.ConcurrentBTreeImpl;
+import edu.yu.cs.com1320.project.stage6.PersistenceManager;
+
+/**
+ * Throughput from 1 to 8 threads of BTreeImpl behind one lock, the only safe way to share it, and ConcurrentBTreeImpl,
+ * on a read mostly workload (95% gets of existing keys, 5% puts of new ones) and an insert heavy one (50% each). Pass the
+ * number of operations per thread (default 200000).
+ *
+ * Run from the stage6 directory after "mvn test-compile":
+ * java -cp target/classes:target/test-classes edu.yu.cs.com1320.project.stage6.bench.BTreeScalingBenchmark [operations]
+ */
+public class BTreeScalingBenchmark {
+    private static final int PRELOADED = 100000;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        System.out.printf("%d operations per thread, %d processors%n", operations,
+                Runtime.getRuntime().availableProcessors());
+        for (int putPercent : new int[] { 5, 50 }) {
+            System.out.printf("%n%d%% puts%n", putPercent);
+            System.out.printf("%-8s %16s %16s%n", "threads", "one lock op/s", "B-link op/s");
+            for (int threads = 1; threads <= 8; threads *= 2) {
+                double locked = 0;
+                double concurrent = 0;
+                // Only the last round is reported, the others warm up the JIT
+                for (int round = 0; round < ROUNDS; round++) {
+                    locked = run(new BTreeImpl<>(), true, threads, operations, putPercent);
+                    concurrent = run(new ConcurrentBTreeImpl<>(), false, threads, operations, putPercent);
+                }
+                System.out.printf("%-8d %16.0f %16.0f%n", threads, locked, concurrent);
+            }
+        }
+    }
+
+    private static double run(BTree<Integer, Integer> tree, boolean lock, int threads, int operations, int putPercent)
+            throws Exception {
+        tree.setPersistenceManager(new NoDisk());
+        for (int i = 0; i < PRELOADED; i++) {
+            tree.put(i * 2, i);
+        }
+        // New keys are odd, so they land between the preloaded ones all over the tree
+        AtomicInteger nextKey = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            Random random = new Random(1320 + t);
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < operations; i++) {
+                    boolean put = random.nextInt(100) < putPercent;
+                    int key = put ? (int) (Integer.reverse(nextKey.getAndIncrement()) >>> 1) | 1
+                            : random.nextInt(PRELOADED) * 2;
+                    if (lock) {
+                        synchronized (tree) {
+                            operate(tree, put, key);
+                        }
+                    } else {
+                        operate(tree, put, key);
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+        return threads * operations / seconds;
+    }
+
+    private static void operate(BTree<Integer, Integer> tree, boolean put, int key) {
+        if (put) {
+            tree.put(key, key);
+        } else {
+            tree.get(key);
+        }
+    }
+
+    // Every key is in memory, so nothing is ever on disk
+    private static class NoDisk implements PersistenceManager<Integer, Integer> {
+        public void serialize(Integer key, Integer val) {
+        }
+
+        public Integer deserialize(Integer key) {
+            return null;
+        }
+
+        public boolean delete(Integer key) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package edu.yu.cs.com1320.project.stage6.bench;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.DocumentCodec;
+import edu.yu.cs.com1320.project.stage6.impl.BinaryDocumentCodec;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentImpl;
+import edu.yu.cs.com1320.project.stage6.impl.JsonDocumentCodec;
+
+/**
+ * Compares the size and the encode and decode throughput of JsonDocumentCodec and BinaryDocumentCodec, on text
+ * documents and on binary documents. Pass the number of documents of each kind (default 2000).
+ *
+ * Run from the stage6 directory after "mvn test-compile":
+ * java -cp target/classes:target/test-classes edu.yu.cs.com1320.project.stage6.bench.CodecBenchmark [documents]
+ */
+public class CodecBenchmark {
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        Random random = new Random(1320);
+        List<Document> text = new ArrayList<>();
+        List<Document> binary = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            text.add(textDocument(i, random));
+            byte[] data = new byte[2048];
+            random.nextBytes(data);
+            Document doc = new DocumentImpl(URI.create("http://www.bench.com/binary/doc" + i), data);
+            doc.setMetadataValue("number", Integer.toString(i));
+            binary.add(doc);
+        }
+        System.out.printf("%d documents of each kind%n", count);
+        System.out.printf("%-8s %-7s %10s %14s %14s%n", "codec", "kind", "bytes/doc", "encode us/doc", "decode us/doc");
+        DocumentCodec[] codecs = { new JsonDocumentCodec(), new BinaryDocumentCodec() };
+        String[] names = { "json", "binary" };
+        for (int round = 0; round < ROUNDS; round++) {
+            // Only the last round is reported, the others warm up the JIT
+            boolean report = round == ROUNDS - 1;
+            for (int c = 0; c < codecs.length; c++) {
+                run(names[c], "text", codecs[c], text, report);
+                run(names[c], "binary", codecs[c], binary, report);
+            }
+        }
+    }
+
+    private static void run(String name, String kind, DocumentCodec codec, List<Document> documents, boolean report)
+            throws IOException {
+        List<byte[]> encoded = new ArrayList<>();
+        long bytes = 0;
+        long start = System.nanoTime();
+        for (Document doc : documents) {
+            byte[] record = codec.encode(doc);
+            bytes += record.length;
+            encoded.add(record);
+        }
+        long encodeNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (byte[] record : encoded) {
+            codec.decode(record);
+        }
+        long decodeNanos = System.nanoTime() - start;
+        if (report) {
+            System.out.printf("%-8s %-7s %10d %14.1f %14.1f%n", name, kind, bytes / documents.size(),
+                    encodeNanos / 1e3 / documents.size(), decodeNanos / 1e3 / documents.size());
+        }
+    }
+
+    // About 2 KB of text drawn from a vocabulary of 2000 words with a Zipf-like skew
+    private static Document textDocument(int i, Random random) {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 2048) {
+            int rank = (int) Math.pow(2000, random.nextDouble());
+            text.append("word").append(rank).append(' ');
+        }
+        Document doc = new DocumentImpl(URI.create("http://www.bench.com/text/doc" + i), text.toString(), null);
+        doc.setMetadataValue("number", Integer.toString(i));
+        doc.setMetadataValue("author", "author" + (i % 50));
+        return doc;
+    }
+}
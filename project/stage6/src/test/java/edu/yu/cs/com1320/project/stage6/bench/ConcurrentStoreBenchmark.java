@@ -0,0 +1,111 @@
+package edu.yu.cs.com1320.project.stage6.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import edu.yu.cs.com1320.project.stage6.DocumentStore;
+import edu.yu.cs.com1320.project.stage6.DocumentStore.DocumentFormat;
+import edu.yu.cs.com1320.project.stage6.impl.ConcurrentDocumentStoreImpl;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentStoreImpl;
+
+/**
+ * Throughput of a mixed workload (80% gets, 15% searches, 5% puts) from 1 to 8 threads against a DocumentStoreImpl
+ * behind one lock, the only safe way to share it before, and against ConcurrentDocumentStoreImpl. Pass the number of
+ * operations per thread (default 20000).
+ *
+ * Run from the stage6 directory after "mvn test-compile":
+ * java -cp target/classes:target/test-classes edu.yu.cs.com1320.project.stage6.bench.ConcurrentStoreBenchmark [operations]
+ */
+public class ConcurrentStoreBenchmark {
+    private static final int DOCUMENTS = 2000;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        System.out.printf("%d operations per thread, %d processors%n", operations,
+                Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-8s %16s %16s%n", "threads", "one lock op/s", "concurrent op/s");
+        for (int threads = 1; threads <= 8; threads *= 2) {
+            double locked = 0;
+            double concurrent = 0;
+            // Only the last round is reported, the others warm up the JIT
+            for (int round = 0; round < ROUNDS; round++) {
+                locked = run(false, threads, operations);
+                concurrent = run(true, threads, operations);
+            }
+            System.out.printf("%-8d %16.0f %16.0f%n", threads, locked, concurrent);
+        }
+    }
+
+    private static double run(boolean concurrent, int threads, int operations) throws Exception {
+        Path dir = Files.createTempDirectory("concurrent");
+        DocumentStoreImpl inner = new DocumentStoreImpl(dir.toFile());
+        DocumentStore store = concurrent ? new ConcurrentDocumentStoreImpl(inner) : inner;
+        for (int i = 0; i < DOCUMENTS; i++) {
+            put(store, i, new Random(i));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            Random random = new Random(1320 + t);
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < operations; i++) {
+                    int choice = random.nextInt(100);
+                    int doc = random.nextInt(DOCUMENTS);
+                    if (concurrent) {
+                        operate(store, choice, doc, random);
+                    } else {
+                        synchronized (store) {
+                            operate(store, choice, doc, random);
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        pool.shutdown();
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+        return threads * operations / seconds;
+    }
+
+    private static void operate(DocumentStore store, int choice, int doc, Random random) throws IOException {
+        if (choice < 80) {
+            store.get(uri(doc));
+        } else if (choice < 95) {
+            store.search("word" + (int) Math.pow(1000, random.nextDouble()), 10);
+        } else {
+            put(store, doc, random);
+        }
+    }
+
+    // About 50 words drawn from a vocabulary of 1000 with a Zipf-like skew
+    private static void put(DocumentStore store, int doc, Random random) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            text.append("word").append((int) Math.pow(1000, random.nextDouble())).append(' ');
+        }
+        store.put(new ByteArrayInputStream(text.toString().getBytes()), uri(doc), DocumentFormat.TXT);
+    }
+
+    private static URI uri(int doc) {
+        return URI.create("http://www.bench.com/doc" + doc);
+    }
+}
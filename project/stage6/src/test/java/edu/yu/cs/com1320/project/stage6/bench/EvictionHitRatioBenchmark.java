@@ -0,0 +1,111 @@
+package edu.yu.cs.com1320.project.stage6.bench;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import edu.yu.cs.com1320.project.stage6.EvictionPolicy;
+import edu.yu.cs.com1320.project.stage6.impl.ARCEvictionPolicy;
+import edu.yu.cs.com1320.project.stage6.impl.ClockEvictionPolicy;
+import edu.yu.cs.com1320.project.stage6.impl.GDSFEvictionPolicy;
+import edu.yu.cs.com1320.project.stage6.impl.LRUEvictionPolicy;
+import edu.yu.cs.com1320.project.stage6.impl.WTinyLFUEvictionPolicy;
+
+/**
+ * Hit ratio of each EvictionPolicy on a Zipf-distributed workload, with and without periodic one-time scans
+ * (like a broad search pulling every matching document into memory).
+ * Arguments are the number of distinct keys, the number of keys that fit in memory and the number of requests.
+ *
+ * Run from the stage6 directory after "mvn test-compile":
+ * java -cp target/classes:target/test-classes edu.yu.cs.com1320.project.stage6.bench.EvictionHitRatioBenchmark [keys capacity requests]
+ */
+public class EvictionHitRatioBenchmark {
+    private static final double ZIPF_EXPONENT = 0.99;
+    private static final int SCAN_EVERY = 20_000;
+
+    public static void main(String[] args) {
+        int keys = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int capacity = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 1_000_000;
+        System.out.printf("%,d keys, capacity %,d, %,d requests, zipf exponent %.2f%n", keys, capacity, requests,
+                ZIPF_EXPONENT);
+        System.out.printf("%-16s %10s %14s%n", "policy", "zipf", "zipf + scans");
+        report("LRU", () -> new LRUEvictionPolicy<>(), keys, capacity, requests);
+        report("CLOCK", () -> new ClockEvictionPolicy<>(), keys, capacity, requests);
+        report("ARC", () -> new ARCEvictionPolicy<>(), keys, capacity, requests);
+        report("W-TinyLFU", () -> new WTinyLFUEvictionPolicy<>(), keys, capacity, requests);
+        // Every key has the same size here, so this is GDSF's frequency and aging alone
+        report("GDSF", () -> new GDSFEvictionPolicy<>(), keys, capacity, requests);
+    }
+
+    private static void report(String name, Supplier<EvictionPolicy<Integer>> factory, int keys, int capacity,
+            int requests) {
+        double zipf = hitRatio(factory.get(), keys, capacity, requests, 0);
+        double scans = hitRatio(factory.get(), keys, capacity, requests, capacity * 2);
+        System.out.printf("%-16s %9.2f%% %13.2f%%%n", name, zipf * 100, scans * 100);
+    }
+
+    private static double hitRatio(EvictionPolicy<Integer> policy, int keys, int capacity, int requests, int scanLength) {
+        ZipfGenerator zipf = new ZipfGenerator(keys, ZIPF_EXPONENT, new Random(1320));
+        Set<Integer> resident = new HashSet<>();
+        int nextScanKey = keys;
+        long time = 0;
+        int hits = 0;
+        int measured = 0;
+        for (int i = 0; i < requests; i++) {
+            if (scanLength > 0 && i % SCAN_EVERY == 0) {
+                // Keys outside the Zipf range, each used exactly once
+                for (int j = 0; j < scanLength; j++) {
+                    access(policy, resident, nextScanKey++, time++, capacity);
+                }
+            }
+            boolean hit = access(policy, resident, zipf.next(), time++, capacity);
+            // Only count once the cache has warmed up
+            if (i >= requests / 10) {
+                measured++;
+                hits += hit ? 1 : 0;
+            }
+        }
+        return (double) hits / measured;
+    }
+
+    private static boolean access(EvictionPolicy<Integer> policy, Set<Integer> resident, int key, long time,
+            int capacity) {
+        if (resident.contains(key)) {
+            policy.touch(key, time);
+            return true;
+        }
+        resident.add(key);
+        policy.add(key, time, 1);
+        while (resident.size() > capacity) {
+            resident.remove(policy.evict());
+        }
+        return false;
+    }
+
+    // Inverse CDF sampling over precomputed cumulative probabilities
+    private static class ZipfGenerator {
+        private double[] cumulative;
+        private Random random;
+
+        private ZipfGenerator(int n, double exponent, Random random) {
+            this.cumulative = new double[n];
+            this.random = random;
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += 1 / Math.pow(i + 1, exponent);
+                this.cumulative[i] = sum;
+            }
+            for (int i = 0; i < n; i++) {
+                this.cumulative[i] /= sum;
+            }
+        }
+
+        private int next() {
+            int idx = Arrays.binarySearch(this.cumulative, this.random.nextDouble());
+            return idx >= 0 ? idx : Math.min(-(idx + 1), this.cumulative.length - 1);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package edu.yu.cs.com1320.project.stage6.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import edu.yu.cs.com1320.project.stage6.Document;
+import edu.yu.cs.com1320.project.stage6.PersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentImpl;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentPersistenceManager;
+import edu.yu.cs.com1320.project.stage6.impl.SegmentPersistenceManager;
+
+/**
+ * Times moving documents to disk and reading them back with the one-file-per-document DocumentPersistenceManager and
+ * the SegmentPersistenceManager, whose full segments are read through memory mappings.
+ * Pass the number of documents (default 5000).
+ *
+ * Run from the stage6 directory after "mvn test-compile":
+ * java -cp target/classes:target/test-classes edu.yu.cs.com1320.project.stage6.bench.PersistenceBenchmark [documents]
+ */
+public class PersistenceBenchmark {
+    private static final String[] WORDS = { "the", "search", "engine", "document", "index", "trie", "heap", "btree",
+            "memory", "disk", "query", "prefix", "keyword", "metadata", "undo", "stack", "segment", "value", "node", "key" };
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        List<Document> documents = generateDocuments(count);
+        System.out.printf("%d documents%n", count);
+        System.out.printf("%-10s %12s %12s%n", "manager", "write us/doc", "read us/doc");
+        for (int round = 0; round < ROUNDS; round++) {
+            // The first round warms up the JIT
+            boolean report = round == ROUNDS - 1;
+            Path files = Files.createTempDirectory("files");
+            run("files", new DocumentPersistenceManager(files.toFile()), documents, report);
+            delete(files);
+            Path segments = Files.createTempDirectory("segments");
+            SegmentPersistenceManager segmentManager = new SegmentPersistenceManager(segments.toFile(), 4L << 20, 0.5);
+            run("segments", segmentManager, documents, report);
+            segmentManager.close();
+            delete(segments);
+        }
+    }
+
+    private static void run(String name, PersistenceManager<URI, Document> pm, List<Document> documents,
+            boolean report) throws IOException {
+        long start = System.nanoTime();
+        for (Document doc : documents) {
+            pm.serialize(doc.getKey(), doc);
+        }
+        long writeNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (Document doc : documents) {
+            pm.deserialize(doc.getKey());
+        }
+        long readNanos = System.nanoTime() - start;
+        if (report) {
+            System.out.printf("%-10s %12.1f %12.1f%n", name, writeNanos / 1e3 / documents.size(),
+                    readNanos / 1e3 / documents.size());
+        }
+    }
+
+    private static List<Document> generateDocuments(int count) {
+        Random random = new Random(1320);
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int j = 0; j < 300; j++) {
+                text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            URI uri = URI.create("http://www.bench.com/documents/doc" + i);
+            Document doc = new DocumentImpl(uri, text.toString(), null);
+            doc.setMetadataValue("number", Integer.toString(i));
+            documents.add(doc);
+        }
+        return documents;
+    }
+
+    private static void delete(Path directory) throws IOException {
+        // DocumentPersistenceManager removes folders left empty, which can include the directory itself
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
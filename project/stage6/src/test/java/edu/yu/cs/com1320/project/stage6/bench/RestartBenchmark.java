@@ -0,0 +1,84 @@
+package edu.yu.cs.com1320.project.stage6.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import edu.yu.cs.com1320.project.stage6.DocumentStore.DocumentFormat;
+import edu.yu.cs.com1320.project.stage6.impl.DocumentStoreImpl;
+import edu.yu.cs.com1320.project.stage6.impl.WriteAheadLog;
+
+/**
+ * Times restarting a DocumentStoreImpl from its write ahead log alone, which indexes every document again, and from a
+ * checkpoint of its indexes with an empty log. Pass the number of documents (default 20000).
+ *
+ * Run from the stage6 directory after "mvn test-compile":
+ * java -cp target/classes:target/test-classes edu.yu.cs.com1320.project.stage6.bench.RestartBenchmark [documents]
+ */
+public class RestartBenchmark {
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        System.out.printf("%d documents%n", count);
+        System.out.printf("%-12s %12s %14s%n", "restart from", "ms", "bytes on disk");
+        for (int round = 0; round < ROUNDS; round++) {
+            // Only the last round is reported, the others warm up the JIT
+            boolean report = round == ROUNDS - 1;
+            Path dir = Files.createTempDirectory("restart");
+            File logFile = new File(dir.toFile(), "wal.log");
+            WriteAheadLog log = new WriteAheadLog(logFile, WriteAheadLog.FsyncPolicy.NONE);
+            DocumentStoreImpl store = new DocumentStoreImpl(dir.toFile());
+            store.setWriteAheadLog(log);
+            Random random = new Random(1320);
+            for (int i = 0; i < count; i++) {
+                URI uri = URI.create("http://www.bench.com/doc" + i);
+                store.put(new ByteArrayInputStream(text(random).getBytes()), uri, DocumentFormat.TXT);
+                store.setMetadata(uri, "author", "author" + (i % 100));
+            }
+            log.close();
+            long bytes = logFile.length();
+            store = null;
+            // So collecting the stores already built isn't timed
+            System.gc();
+            long start = System.nanoTime();
+            log = new WriteAheadLog(logFile, WriteAheadLog.FsyncPolicy.NONE);
+            store = new DocumentStoreImpl(dir.toFile());
+            store.setWriteAheadLog(log);
+            long logNanos = System.nanoTime() - start;
+            store.checkpoint();
+            log.close();
+            long checkpointBytes = new File(logFile.getPath() + ".checkpoint").length();
+            store = null;
+            System.gc();
+            start = System.nanoTime();
+            log = new WriteAheadLog(logFile, WriteAheadLog.FsyncPolicy.NONE);
+            store = new DocumentStoreImpl(dir.toFile());
+            store.setWriteAheadLog(log);
+            long checkpointNanos = System.nanoTime() - start;
+            log.close();
+            if (report) {
+                System.out.printf("%-12s %12.1f %14d%n", "log", logNanos / 1e6, bytes);
+                System.out.printf("%-12s %12.1f %14d%n", "checkpoint", checkpointNanos / 1e6, checkpointBytes);
+            }
+            try (Stream<Path> paths = Files.walk(dir)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    // About 100 words drawn from a vocabulary of 20000 with a Zipf-like skew
+    private static String text(Random random) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            text.append("word").append((int) Math.pow(20000, random.nextDouble())).append(' ');
+        }
+        return text.toString();
+    }
+}
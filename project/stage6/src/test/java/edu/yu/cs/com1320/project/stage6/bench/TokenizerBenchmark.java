@@ -0,0 +1,75 @@
+package edu.yu.cs.com1320.project.stage6.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import edu.yu.cs.com1320.project.stage6.impl.Tokenizer;
+
+/**
+ * Compares the ingestion throughput of the original regex + split word counting with Tokenizer.
+ * Pass a text file to tokenize it, or a size in megabytes to generate text of that size (default 8).
+ *
+ * Run from the stage6 directory after "mvn test-compile":
+ * java -cp target/classes:target/test-classes edu.yu.cs.com1320.project.stage6.bench.TokenizerBenchmark [file|megabytes]
+ */
+public class TokenizerBenchmark {
+    private static final String[] WORDS = { "the", "search", "engine", "document's", "index", "trie", "heap", "B-tree",
+            "memory", "disk", "query", "prefix", "keyword", "metadata", "undo", "stack", "(2024)", "value", "node,", "key." };
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) throws IOException {
+        String text;
+        if (args.length > 0 && !args[0].matches("\\d+")) {
+            text = Files.readString(Path.of(args[0]));
+        } else {
+            text = generateText(args.length > 0 ? Integer.parseInt(args[0]) : 8);
+        }
+        double megabytes = text.length() / (1024.0 * 1024.0);
+        System.out.printf("text: %.1f MB%n", megabytes);
+        // Warm up both before timing
+        for (int i = 0; i < 3; i++) {
+            regexCountWords(text);
+            Tokenizer.countWords(text);
+        }
+        long regexNanos = 0;
+        long tokenizerNanos = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            regexCountWords(text);
+            regexNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            Tokenizer.countWords(text);
+            tokenizerNanos += System.nanoTime() - start;
+        }
+        report("regex + split", regexNanos, megabytes);
+        report("Tokenizer", tokenizerNanos, megabytes);
+    }
+
+    private static void report(String name, long nanos, double megabytes) {
+        double seconds = nanos / 1e9 / ROUNDS;
+        System.out.printf("%-14s %8.1f ms/doc  %8.1f MB/s%n", name, seconds * 1000, megabytes / seconds);
+    }
+
+    // Word counting as DocumentImpl did it before Tokenizer
+    private static Map<String, Integer> regexCountWords(String txt) {
+        Map<String, Integer> words = new HashMap<>();
+        String formattedTxt = txt.replaceAll("[^A-Za-z0-9\s]", "");
+        for (String word : formattedTxt.split(" ")) {
+            words.merge(word, 1, Integer::sum);
+        }
+        return words;
+    }
+
+    private static String generateText(int megabytes) {
+        Random random = new Random(1320);
+        StringBuilder text = new StringBuilder(megabytes * 1024 * 1024);
+        while (text.length() < megabytes * 1024 * 1024) {
+            text.append(WORDS[random.nextInt(WORDS.length)]).append(random.nextInt(12) == 0 ? '\n' : ' ');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,103 @@
+package edu.yu.cs.com1320.project.stage6.bench;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import edu.yu.cs.com1320.project.Trie;
+import edu.yu.cs.com1320.project.impl.RadixTrieImpl;
+import edu.yu.cs.com1320.project.impl.TrieImpl;
+
+/**
+ * Compares the retained heap of TrieImpl and RadixTrieImpl after indexing the same vocabulary.
+ * Pass a text file to use its words as the vocabulary, or a word count to generate an English-like vocabulary of that size.
+ *
+ * Run from the stage6 directory after "mvn test-compile":
+ * java -cp target/classes:target/test-classes edu.yu.cs.com1320.project.stage6.bench.TrieMemoryBenchmark [file|wordCount]
+ */
+public class TrieMemoryBenchmark {
+    private static final String[] ONSETS = { "", "b", "br", "c", "ch", "cl", "d", "dr", "f", "fl", "g", "gr", "h", "j",
+            "k", "l", "m", "n", "p", "pl", "pr", "qu", "r", "s", "sh", "sl", "st", "t", "th", "tr", "v", "w", "wh", "z" };
+    private static final String[] VOWELS = { "a", "e", "i", "o", "u", "ai", "ea", "ee", "ie", "oo", "ou", "y" };
+    private static final String[] CODAS = { "", "", "n", "r", "s", "t", "l", "m", "nd", "ng", "nt", "ck", "st", "rd" };
+    private static final String[] SUFFIXES = { "", "", "", "s", "ed", "ing", "er", "ly", "tion", "ness", "ment", "able" };
+
+    public static void main(String[] args) throws IOException {
+        List<String> vocabulary;
+        if (args.length > 0 && !args[0].matches("\\d+")) {
+            vocabulary = readVocabulary(Path.of(args[0]));
+        } else {
+            vocabulary = generateVocabulary(args.length > 0 ? Integer.parseInt(args[0]) : 200_000);
+        }
+        long chars = 0;
+        for (String word : vocabulary) {
+            chars += word.length();
+        }
+        System.out.printf("vocabulary: %,d words, %,d characters%n", vocabulary.size(), chars);
+        report("TrieImpl", () -> new TrieImpl<>(), vocabulary, chars);
+        report("RadixTrieImpl", () -> new RadixTrieImpl<>(), vocabulary, chars);
+    }
+
+    private static void report(String name, Supplier<Trie<URI>> factory, List<String> vocabulary, long chars) {
+        URI uri = URI.create("http://www.example.com/doc");
+        long before = usedHeap();
+        Trie<URI> trie = factory.get();
+        for (String word : vocabulary) {
+            trie.put(word, uri);
+        }
+        long bytes = usedHeap() - before;
+        System.out.printf("%-14s %,14d bytes  %8.1f bytes/word  %6.1f bytes/char%n", name, bytes,
+                (double) bytes / vocabulary.size(), (double) bytes / chars);
+        // Keep the trie reachable until it has been measured
+        if (trie.get(vocabulary.get(0)).isEmpty()) {
+            throw new IllegalStateException();
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static List<String> readVocabulary(Path file) throws IOException {
+        Set<String> words = new LinkedHashSet<>();
+        for (String token : Files.readString(file).split("\\s+")) {
+            String word = token.replaceAll("[^A-Za-z0-9]", "");
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return new ArrayList<>(words);
+    }
+
+    // Syllable-based words with English-like lengths and shared prefixes/suffixes
+    private static List<String> generateVocabulary(int size) {
+        Random random = new Random(1320);
+        Set<String> words = new LinkedHashSet<>();
+        while (words.size() < size) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 1 + random.nextInt(4);
+            for (int i = 0; i < syllables; i++) {
+                word.append(ONSETS[random.nextInt(ONSETS.length)]);
+                word.append(VOWELS[random.nextInt(VOWELS.length)]);
+                word.append(CODAS[random.nextInt(CODAS.length)]);
+            }
+            word.append(SUFFIXES[random.nextInt(SUFFIXES.length)]);
+            if (random.nextInt(10) == 0) {
+                word.setCharAt(0, Character.toUpperCase(word.charAt(0)));
+            }
+            words.add(word.toString());
+        }
+        return new ArrayList<>(words);
+    }
+}